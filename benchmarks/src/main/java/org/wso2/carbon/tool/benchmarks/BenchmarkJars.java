@@ -0,0 +1,66 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * a Java class which generates synthetic JAR files for the benchmarks
+ */
+public class BenchmarkJars {
+
+    /**
+     * Creates a JAR file with the specified number of packages and class file entries per package
+     *
+     * @param jarFile           the {@link Path} of the JAR file to be created
+     * @param packages          the number of packages
+     * @param classesPerPackage the number of class file entries per package
+     * @param entrySize         the size of each class file entry, in bytes
+     * @return the {@link Path} of the created JAR file
+     * @throws IOException if an I/O error occurs when writing the JAR file
+     */
+    public static Path create(Path jarFile, int packages, int classesPerPackage, int entrySize) throws IOException {
+        Random random = new Random(packages * 31L + classesPerPackage);
+        byte[] content = new byte[entrySize];
+        try (OutputStream outputStream = Files.newOutputStream(jarFile);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, new Manifest())) {
+            for (int packageCount = 0; packageCount < packages; packageCount++) {
+                String packagePath = String.format("org/wso2/carbon/benchmark/module%d/package%d/",
+                        (packageCount % 16), packageCount);
+                jarOutputStream.putNextEntry(new JarEntry(packagePath));
+                jarOutputStream.closeEntry();
+                for (int classCount = 0; classCount < classesPerPackage; classCount++) {
+                    random.nextBytes(content);
+                    jarOutputStream.putNextEntry(new JarEntry(packagePath + "Class" + classCount + ".class"));
+                    jarOutputStream.write(content);
+                    jarOutputStream.closeEntry();
+                }
+            }
+        }
+        return jarFile;
+    }
+
+}
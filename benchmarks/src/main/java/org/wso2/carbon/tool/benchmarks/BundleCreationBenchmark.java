@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.Constants;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Manifest;
+
+/**
+ * a JMH benchmark which measures the writing of an OSGi bundle and the end-to-end conversion of a JAR file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleCreationBenchmark {
+
+    @Param({ "1000", "20000" }) public int entries;
+    @Param({ "64", "4096" }) public int entrySize;
+
+    private Path directory;
+    private Path targetDirectory;
+    private Path jarFile;
+    private Path bundle;
+    private Manifest manifest;
+
+    @Setup(Level.Trial) public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bundle-creation-benchmark");
+        targetDirectory = Files.createDirectory(directory.resolve("target"));
+        Path sourceDirectory = Files.createDirectory(directory.resolve("source"));
+        jarFile = BenchmarkJars.create(sourceDirectory.resolve("benchmark.jar"), (entries / 50), 50, entrySize);
+        bundle = targetDirectory.resolve("benchmark_bundle.jar");
+
+        manifest = new Manifest();
+        manifest.getMainAttributes().putValue(Constants.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLIC_NAME, "benchmark");
+    }
+
+    @TearDown(Level.Trial) public void tearDown() throws IOException {
+        BundleGeneratorUtils.delete(directory);
+    }
+
+    @Benchmark public Path createBundle() throws IOException, JarToBundleConverterException {
+        BundleGeneratorUtils.createBundle(jarFile, bundle, manifest);
+        return bundle;
+    }
+
+    @Benchmark public ConversionResult convertFromJarToBundle() throws IOException, JarToBundleConverterException {
+        return BundleGeneratorUtils.convertFromJarToBundle(jarFile, targetDirectory, new Manifest(), "", true);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.PackageIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a JMH benchmark which measures the package indexing of class file entry names and the generation of the
+ * Export-Package header value
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportPackageBenchmark {
+
+    @Param({ "100", "5000" }) public int packages;
+    @Param({ "50" }) public int classesPerPackage;
+
+    private String[] entryNames;
+    private List<String> packageNames;
+
+    @Setup(Level.Trial) public void setUp() {
+        entryNames = new String[packages * classesPerPackage];
+        packageNames = new ArrayList<>();
+        int entryCount = 0;
+        for (int packageCount = 0; packageCount < packages; packageCount++) {
+            String packagePath = String.format("org/wso2/carbon/benchmark/module%d/package%d", (packageCount % 16),
+                    packageCount);
+            packageNames.add(packagePath.replace('/', '.'));
+            for (int classCount = 0; classCount < classesPerPackage; classCount++) {
+                entryNames[entryCount++] = packagePath + "/Class" + classCount + ".class";
+            }
+        }
+    }
+
+    @Benchmark public PackageIndex indexPackages() {
+        PackageIndex packageIndex = new PackageIndex();
+        for (String entryName : entryNames) {
+            packageIndex.add(entryName);
+        }
+        return packageIndex;
+    }
+
+    @Benchmark public String generateExportPackageList() {
+        return BundleGeneratorUtils.generateExportPackageList(packageNames);
+    }
+
+}
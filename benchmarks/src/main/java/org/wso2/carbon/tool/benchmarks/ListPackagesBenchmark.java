@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.ZipCentralDirectoryReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a JMH benchmark which compares reading the JAR file entry names through the zip {@code FileSystem} against reading
+ * them directly from the central directory, and measures the package listing built upon the latter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListPackagesBenchmark {
+
+    @Param({ "1000", "20000" }) public int entries;
+    @Param({ "64", "4096" }) public int entrySize;
+
+    private Path directory;
+    private Path jarFile;
+
+    @Setup(Level.Trial) public void setUp() throws IOException {
+        directory = Files.createTempDirectory("list-packages-benchmark");
+        jarFile = BenchmarkJars.create(directory.resolve("benchmark.jar"), (entries / 50), 50, entrySize);
+    }
+
+    @TearDown(Level.Trial) public void tearDown() throws IOException {
+        BundleGeneratorUtils.delete(directory);
+    }
+
+    @Benchmark public List<Path> zipFileSystemWalk() throws IOException, JarToBundleConverterException {
+        return BundleGeneratorUtils.listZipFileContent(jarFile);
+    }
+
+    @Benchmark public List<String> centralDirectoryScan() throws IOException {
+        return ZipCentralDirectoryReader.listEntryNames(jarFile);
+    }
+
+    @Benchmark public List<String> listPackages() throws IOException, JarToBundleConverterException {
+        return BundleGeneratorUtils.listPackages(jarFile);
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.sonatype.plexus.build.incremental.BuildContext;
+import org.wso2.carbon.tool.components.BundleConverter;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Manifest;
+
+/**
+ * a Maven goal which converts the resolved JAR file dependencies of the project to OSGi bundles in-process, rather
+ * than in a JVM forked per invocation
+ * <p>
+ * The {@code BundleConverter} of each configuration is shared by the executions of the goal within the build, in
+ * all modules and on all build threads, so that its worker threads and its cache of JAR file analyses are reused. The
+ * dependencies whose OSGi bundle is up to date, as reported by the incremental {@code BuildContext} of the build, are
+ * not converted again.
+ */
+@Mojo(name = "convert-dependencies", defaultPhase = LifecyclePhase.PACKAGE,
+        requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class ConvertDependenciesMojo extends AbstractMojo {
+
+    /**
+     * the converters shared by the executions of the goal within the build, keyed by their configuration, including
+     * the compression settings read for each execution, which affect the content of the OSGi bundles
+     */
+    private static final Map<String, BundleConverter> CONVERTERS = new ConcurrentHashMap<>();
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true) private MavenProject project;
+
+    @Component private BuildContext buildContext;
+
+    /**
+     * the directory into which the OSGi bundles are placed
+     */
+    @Parameter(property = "jarToBundle.outputDirectory", defaultValue = "${project.build.directory}/bundles")
+    private File outputDirectory;
+
+    /**
+     * the prefix, if any, of the symbolic names and file names of the OSGi bundles
+     */
+    @Parameter(property = "jarToBundle.extensionPrefix", defaultValue = "") private String extensionPrefix;
+
+    /**
+     * the version of the OSGi bundles
+     */
+    @Parameter(property = "jarToBundle.bundleVersion", defaultValue = Constants.DEFAULT_BUNDLE_VERSION)
+    private String bundleVersion;
+
+    /**
+     * true if the OSGi bundles are to be named and versioned after the Maven coordinates and manifest of their JAR
+     * files rather than after the JAR file names and the bundle version, else false
+     */
+    @Parameter(property = "jarToBundle.metadataNaming", defaultValue = "false") private boolean metadataNaming;
+
+    /**
+     * true if the entries of each JAR file are to be copied to the root of its OSGi bundle rather than the JAR file
+     * being embedded in it, else false
+     */
+    @Parameter(property = "jarToBundle.flatten", defaultValue = "false") private boolean flatten;
+
+    /**
+     * the number of dependencies converted concurrently, or zero for one per available processor
+     */
+    @Parameter(property = "jarToBundle.workers", defaultValue = "0") private int workers;
+
+    /**
+     * the scopes of the dependencies to be converted
+     */
+    @Parameter(defaultValue = "compile,runtime") private List<String> scopes;
+
+    /**
+     * the dependencies not to be converted, as {@code groupId:artifactId}
+     */
+    @Parameter private List<String> excludes;
+
+    /**
+     * true if a failure to convert a dependency is to fail the build, else false
+     */
+    @Parameter(property = "jarToBundle.failOnError", defaultValue = "true") private boolean failOnError;
+
+    /**
+     * true if the conversion is to be skipped, else false
+     */
+    @Parameter(property = "jarToBundle.skip", defaultValue = "false") private boolean skip;
+
+    @Override public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping the conversion of the dependencies to OSGi bundles.");
+            return;
+        }
+        Path targetDirectory = outputDirectory.toPath();
+        try {
+            Files.createDirectories(targetDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException(String.format("Unable to create the output directory[%s].",
+                    targetDirectory), e);
+        }
+
+        // the dependencies converted to the same OSGi bundle name would overwrite each other, hence the first is kept
+        String prefix = (extensionPrefix != null) ? extensionPrefix : "";
+        BundleCompression compression;
+        try {
+            compression = BundleCompression.getDefault();
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        BundleConverter converter = getConverter(prefix, compression);
+        Map<String, Artifact> bundles = new HashMap<>();
+        List<Path> outdatedJarFiles = new ArrayList<>();
+        int upToDate = 0;
+        int skipped = 0;
+        for (Artifact artifact : project.getArtifacts()) {
+            File file = artifact.getFile();
+            if ((!isIncluded(artifact)) || (file == null) || !(file.isFile()) || !(file.getName().endsWith(".jar"))) {
+                getLog().debug(String.format("Skipping the dependency[%s].", artifact));
+                continue;
+            }
+            String bundleFileName;
+            try {
+                // the OSGi bundle is named by the converter which writes it, after the metadata of the JAR file if so
+                // configured
+                bundleFileName = converter.getBundleFileName(file.toPath());
+            } catch (IOException | JarToBundleConverterException e) {
+                // the conversion of the dependency reports the failure
+                getLog().debug(String.format("Unable to name the OSGi bundle of the dependency[%s]: %s", artifact,
+                        e.getMessage()));
+                outdatedJarFiles.add(file.toPath());
+                continue;
+            }
+            if (bundles.containsKey(bundleFileName)) {
+                getLog().warn(String.format("Skipping the dependency[%s], as the dependency[%s] is converted to the "
+                        + "same OSGi bundle[%s].", artifact, bundles.get(bundleFileName), bundleFileName));
+                skipped++;
+                continue;
+            }
+            bundles.put(bundleFileName, artifact);
+            if (buildContext.isUptodate(new File(outputDirectory, bundleFileName), file)) {
+                getLog().debug(String.format("The OSGi bundle[%s] of the dependency[%s] is up to date.",
+                        bundleFileName, artifact));
+                upToDate++;
+            } else {
+                outdatedJarFiles.add(file.toPath());
+            }
+        }
+
+        int converted = 0;
+        List<ConversionResult> failures = new ArrayList<>();
+        for (CompletableFuture<ConversionResult> future : converter.convertAll(outdatedJarFiles, targetDirectory,
+                true)) {
+            ConversionResult result = future.join();
+            if (result.getStatus() == ConversionResult.Status.FAILED) {
+                getLog().error(result.toString());
+                failures.add(result);
+            } else {
+                getLog().debug(result.toString());
+                if (result.getStatus() == ConversionResult.Status.SKIPPED) {
+                    skipped++;
+                } else {
+                    converted++;
+                }
+            }
+        }
+        buildContext.refresh(outputDirectory);
+        getLog().info(String.format("Converted %d dependencies to OSGi bundles in %s, %d up to date, %d skipped, "
+                + "%d failure(s).", converted, targetDirectory, upToDate, skipped, failures.size()));
+
+        if ((failOnError) && !(failures.isEmpty())) {
+            throw new MojoExecutionException(String.format("Failed to convert %d dependencies to OSGi bundles, "
+                    + "such as[%s].", failures.size(), failures.get(0).getJarFile()));
+        }
+    }
+
+    /**
+     * Returns true if the dependency is of a converted scope and is not excluded
+     *
+     * @param artifact the {@link Artifact} of the dependency
+     * @return true if the dependency is to be converted, else false
+     */
+    private boolean isIncluded(Artifact artifact) {
+        if (!scopes.contains(artifact.getScope())) {
+            return false;
+        }
+        String key = artifact.getGroupId() + ":" + artifact.getArtifactId();
+        return (excludes == null) || !(excludes.contains(key));
+    }
+
+    /**
+     * Returns the converter of the configuration of this execution, shared by the executions of the same
+     * configuration within the build
+     *
+     * @param prefix      the prefix, if any, of the OSGi bundles
+     * @param compression the {@link BundleCompression} settings of the OSGi bundles
+     * @return the {@link BundleConverter} of the configuration
+     */
+    private BundleConverter getConverter(String prefix, BundleCompression compression) {
+        int parallelism = (workers > 0) ? workers : Runtime.getRuntime().availableProcessors();
+        // an execution under different compression system properties, such as those set by another plugin, gets a
+        // converter of its own
+        String key = String.join("|", Arrays.asList(prefix, bundleVersion, Integer.toString(parallelism),
+                Boolean.toString(metadataNaming), Boolean.toString(flatten), Constants.BUNDLE_FORMAT_VERSION,
+                compression.getSettings()));
+        // the worker threads of the converters are daemon threads, hence the converters need not be closed
+        return CONVERTERS.computeIfAbsent(key, configuration -> new BundleConverter(prefix, bundleVersion,
+                new Manifest(), parallelism, metadataNaming, flatten, compression));
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+public class ConvertDependenciesMojoTest {
+    private static final String POM = "src/test/resources/unit/convert-dependencies/pom.xml";
+
+    @Rule public MojoRule mojoRule = new MojoRule();
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void filterScopesAndExcludesTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Set<Artifact> artifacts = new LinkedHashSet<>(Arrays.asList(
+                createArtifact(source, "compiled", Artifact.SCOPE_COMPILE),
+                createArtifact(source, "runtime", Artifact.SCOPE_RUNTIME),
+                createArtifact(source, "tested", Artifact.SCOPE_TEST),
+                createArtifact(source, "provided", Artifact.SCOPE_PROVIDED),
+                createArtifact(source, "excluded", Artifact.SCOPE_COMPILE)));
+
+        lookupMojo(target, artifacts).execute();
+
+        assertTrue(Files.exists(target.resolve("compiled_1.0.0.jar")));
+        assertTrue(Files.exists(target.resolve("runtime_1.0.0.jar")));
+        assertFalse(Files.exists(target.resolve("tested_1.0.0.jar")));
+        assertFalse(Files.exists(target.resolve("provided_1.0.0.jar")));
+        assertFalse(Files.exists(target.resolve("excluded_1.0.0.jar")));
+    }
+
+    @Test public void skipUpToDateBundlesTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Artifact artifact = createArtifact(source, "library", Artifact.SCOPE_COMPILE);
+        Set<Artifact> artifacts = new LinkedHashSet<>(Arrays.asList(artifact));
+        long now = System.currentTimeMillis();
+        assertTrue(artifact.getFile().setLastModified(now - 100_000));
+
+        lookupMojo(target, artifacts).execute();
+        File bundle = target.resolve("library_1.0.0.jar").toFile();
+        assertTrue(bundle.isFile());
+
+        // a bundle newer than its dependency is not converted again
+        long bundleTime = now - 50_000;
+        assertTrue(bundle.setLastModified(bundleTime));
+        lookupMojo(target, artifacts).execute();
+        assertEquals(bundleTime, bundle.lastModified());
+
+        // a bundle older than its dependency is converted again
+        assertTrue(artifact.getFile().setLastModified(now));
+        lookupMojo(target, artifacts).execute();
+        assertTrue(bundle.lastModified() > bundleTime);
+    }
+
+    @Test public void skipUpToDateMetadataNamedBundlesTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Artifact artifact = createArtifact(source, "library", Artifact.SCOPE_COMPILE);
+        Set<Artifact> artifacts = new LinkedHashSet<>(Arrays.asList(artifact));
+        long now = System.currentTimeMillis();
+        assertTrue(artifact.getFile().setLastModified(now - 100_000));
+
+        ConvertDependenciesMojo mojo = lookupMojo(target, artifacts);
+        mojoRule.setVariableValueToObject(mojo, "metadataNaming", true);
+        mojo.execute();
+        File bundle = target.resolve("org.example.library_2.0.0.SNAPSHOT.jar").toFile();
+        assertTrue(bundle.isFile());
+
+        // the up to date check looks for the bundle named after the metadata of the dependency
+        long bundleTime = now - 50_000;
+        assertTrue(bundle.setLastModified(bundleTime));
+        mojo = lookupMojo(target, artifacts);
+        mojoRule.setVariableValueToObject(mojo, "metadataNaming", true);
+        mojo.execute();
+        assertEquals(bundleTime, bundle.lastModified());
+    }
+
+    @Test public void skipDuplicateBundleNamesTest() throws Exception {
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Artifact first = createArtifact(temporaryFolder.newFolder("first").toPath(), "library",
+                Artifact.SCOPE_COMPILE, "first/First.class");
+        // another artifact of the same JAR file name, as artifacts of the same coordinates are equal
+        Artifact second = createArtifact("other-library", Artifact.SCOPE_RUNTIME, createArtifact(
+                temporaryFolder.newFolder("second").toPath(), "library", Artifact.SCOPE_RUNTIME,
+                "second/Second.class").getFile());
+
+        ConvertDependenciesMojo mojo = lookupMojo(target, new LinkedHashSet<>(Arrays.asList(first, second)));
+        List<String> messages = new ArrayList<>();
+        mojo.setLog(new SystemStreamLog() {
+            @Override public void info(CharSequence content) {
+                messages.add(content.toString());
+            }
+        });
+        mojo.execute();
+
+        // the first dependency of a bundle name is converted, the other is skipped rather than overwriting it
+        assertTrue(messages.get(messages.size() - 1).startsWith("Converted 1 dependencies"));
+        assertTrue(messages.get(messages.size() - 1).contains(", 1 skipped,"));
+        try (JarFile bundle = new JarFile(target.resolve("library_1.0.0.jar").toFile())) {
+            String exportedPackages = bundle.getManifest().getMainAttributes().getValue("Export-Package");
+            assertNotNull(exportedPackages);
+            assertTrue(exportedPackages.contains("first"));
+            assertFalse(exportedPackages.contains("second"));
+        }
+    }
+
+    @Test public void failOnErrorTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path corruptJar = Files.write(source.resolve("corrupt.jar"), "not a JAR file".getBytes(
+                StandardCharsets.UTF_8));
+        Set<Artifact> artifacts = new LinkedHashSet<>(Arrays.asList(createArtifact(source, "valid",
+                Artifact.SCOPE_COMPILE), createArtifact("corrupt", Artifact.SCOPE_COMPILE, corruptJar.toFile())));
+
+        try {
+            lookupMojo(target, artifacts).execute();
+            fail("The conversion of a corrupt dependency should have failed the build.");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage().contains("Failed to convert 1 dependencies"));
+        }
+
+        ConvertDependenciesMojo mojo = lookupMojo(target, artifacts);
+        mojoRule.setVariableValueToObject(mojo, "failOnError", false);
+        mojo.execute();
+        assertTrue(Files.exists(target.resolve("valid_1.0.0.jar")));
+        assertFalse(Files.exists(target.resolve("corrupt_1.0.0.jar")));
+    }
+
+    private ConvertDependenciesMojo lookupMojo(Path target, Set<Artifact> artifacts) throws Exception {
+        ConvertDependenciesMojo mojo = (ConvertDependenciesMojo) mojoRule.lookupMojo("convert-dependencies",
+                new File(POM));
+        MavenProject project = new MavenProject();
+        project.setArtifacts(artifacts);
+        mojoRule.setVariableValueToObject(mojo, "project", project);
+        mojoRule.setVariableValueToObject(mojo, "buildContext", new DefaultBuildContext());
+        mojoRule.setVariableValueToObject(mojo, "outputDirectory", target.toFile());
+        return mojo;
+    }
+
+    private static Artifact createArtifact(Path directory, String artifactId, String scope, String... entryNames)
+            throws IOException {
+        Path jarFile = directory.resolve(artifactId + ".jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        try (OutputStream outputStream = Files.newOutputStream(jarFile);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, manifest)) {
+            jarOutputStream.putNextEntry(new JarEntry("META-INF/maven/org.example/" + artifactId + "/pom.properties"));
+            jarOutputStream.write(String.format("groupId=org.example%nartifactId=%s%nversion=2.0-SNAPSHOT%n",
+                    artifactId).getBytes(StandardCharsets.UTF_8));
+            jarOutputStream.closeEntry();
+            for (String entryName : (entryNames.length > 0) ? entryNames : new String[] { "org/example/A.class" }) {
+                jarOutputStream.putNextEntry(new JarEntry(entryName));
+                jarOutputStream.write(entryName.getBytes(StandardCharsets.UTF_8));
+                jarOutputStream.closeEntry();
+            }
+        }
+        return createArtifact(artifactId, scope, jarFile.toFile());
+    }
+
+    private static Artifact createArtifact(String artifactId, String scope, File file) {
+        Artifact artifact = new DefaultArtifact("org.example", artifactId, "2.0-SNAPSHOT", scope, "jar", null,
+                new DefaultArtifactHandler("jar"));
+        artifact.setFile(file);
+        return artifact;
+    }
+
+}
@@ -0,0 +1,801 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.components;
+
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionJournal;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.DigestStore;
+import org.wso2.carbon.tool.util.JarAnalysis;
+import org.wso2.carbon.tool.util.P2RepositoryWriter;
+import org.wso2.carbon.tool.util.PackageExportIndex;
+import org.wso2.carbon.tool.util.StagedPipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which converts a batch of JAR files to OSGi bundles using a fixed pool of worker threads
+ * <p>
+ * In incremental mode, the content digest of each converted JAR file is persisted in the target directory. Only the
+ * JAR files whose content or conversion settings changed since the previous batch are converted, and the OSGi bundles
+ * of JAR files which are no longer part of the batch are removed. Hence, in incremental mode the target directory is
+ * expected to hold only the OSGi bundles of this batch.
+ */
+public class BatchBundleGenerator {
+    private static final Logger LOGGER = Logger.getLogger(BatchBundleGenerator.class.getName());
+    private static final ThreadLocal<byte[]> PREFETCH_BUFFERS = ThreadLocal.withInitial(() -> new byte[256 * 1024]);
+
+    private final Path targetDirectory;
+    private final String extensionPrefix;
+    private final int workers;
+    private boolean incremental;
+    private boolean journaled;
+    private boolean deduplicated;
+    private boolean p2Repository;
+    private boolean packageIndex;
+    private boolean metadataNaming;
+    private boolean flatten;
+    private BundleCompression compression = BundleCompression.getDefault();
+    private int[] stageWorkers;
+
+    /**
+     * a source of JAR files, which passes each JAR file to the consumer as it is discovered
+     */
+    public interface JarFileSource {
+
+        /**
+         * Passes each JAR file of the source to the {@code Consumer}
+         *
+         * @param consumer the {@link Consumer} to which each JAR file is to be passed
+         * @throws IOException if an I/O error occurs when discovering the JAR files
+         */
+        void forEach(Consumer<Path> consumer) throws IOException;
+    }
+
+    /**
+     * the state shared by the conversions of the JAR files of a batch
+     */
+    private static class Batch {
+        private final DigestStore digestStore;
+        private final ConversionJournal journal;
+        private final P2RepositoryWriter p2Repository;
+        private final PackageExportIndex packageIndex;
+        private final List<Path> jarFiles = new ArrayList<>();
+        /**
+         * the first job of each distinct JAR file content, by content digest, if deduplicated
+         */
+        private final Map<String, Job> originals = new ConcurrentHashMap<>();
+        /**
+         * the analysis of each distinct JAR file content, by content digest, if deduplicated, which is claimed by the
+         * first job to start analyzing that content and completed with {@code null} if the analysis failed
+         */
+        private final Map<String, CompletableFuture<JarAnalysis>> analyses = new ConcurrentHashMap<>();
+        /**
+         * the job owning each OSGi bundle file name, which is claimed on discovery if the name follows from the JAR
+         * file name, hence by the first JAR file discovered, and otherwise by the first JAR file to be written
+         */
+        private final Map<String, Job> bundleOwners = new ConcurrentHashMap<>();
+
+        private Batch(DigestStore digestStore, ConversionJournal journal, P2RepositoryWriter p2Repository,
+                PackageExportIndex packageIndex) {
+            this.digestStore = digestStore;
+            this.journal = journal;
+            this.p2Repository = p2Repository;
+            this.packageIndex = packageIndex;
+        }
+    }
+
+    /**
+     * the state of the conversion of a single JAR file, as it passes through the read, analysis and write steps
+     */
+    private static class Job {
+        private final Path jarFile;
+        private final long startTime = System.currentTimeMillis();
+        private final ConversionMetrics metrics = new ConversionMetrics();
+        // computed once, either when the JAR file is read or when another JAR file of its bundle name compares to it
+        private volatile String contentDigest;
+        private DigestStore.Record previous;
+        private Job original;
+        private Manifest manifest;
+        private volatile JarAnalysis analysis;
+        private volatile ConversionResult result;
+        private boolean journaled;
+        // the bundle of a copy is written, and added to the p2 repository and the package index, by another job
+        private boolean copy;
+
+        private Job(Path jarFile) {
+            this.jarFile = jarFile;
+        }
+
+        @Override public String toString() {
+            return jarFile.toString();
+        }
+    }
+
+    /**
+     * Constructs a new batch OSGi bundle generator
+     *
+     * @param targetDirectory the directory into which the created OSGi bundles need to be placed
+     * @param extensionPrefix prefix, if any, for the bundles
+     * @param workers         the number of JAR files to be converted concurrently
+     */
+    public BatchBundleGenerator(Path targetDirectory, String extensionPrefix, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of workers must be a positive integer.");
+        }
+        this.targetDirectory = targetDirectory;
+        this.extensionPrefix = (extensionPrefix != null) ? extensionPrefix : "";
+        this.workers = workers;
+    }
+
+    /**
+     * Sets whether only the JAR files which changed since the previous batch are to be converted
+     *
+     * @param incremental true if the conversion is to be incremental, else false
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets whether the completion of each JAR file is to be appended to a journal in the target directory, so that a
+     * batch which did not finish, such as due to the process being killed, is continued by the next batch
+     * <p>
+     * The journal is deleted once the batch finishes. The next batch skips the JAR files completed by the unfinished
+     * batch, provided that the conversion settings, and the size and modification time of the JAR files, are
+     * unchanged and their OSGi bundles exist. JAR files which failed are retried.
+     *
+     * @param journaled true if the batch is to be journaled, else false
+     */
+    public void setJournaled(boolean journaled) {
+        this.journaled = journaled;
+    }
+
+    /**
+     * Sets whether JAR files of identical content are to be converted once within a batch
+     * <p>
+     * The content digest of each JAR file is computed when it is read. A JAR file whose content is already being
+     * analyzed waits for and reuses the package and import analysis of that content, and is skipped if the OSGi
+     * bundle of the first JAR file of that content, which has the same name, was already written by the batch.
+     *
+     * @param deduplicated true if JAR files of identical content are to be converted once, else false
+     */
+    public void setDeduplicated(boolean deduplicated) {
+        this.deduplicated = deduplicated;
+    }
+
+    /**
+     * Sets whether the p2 artifact and metadata repository of the OSGi bundles of the batch is to be written to the
+     * target directory, as its {@code artifacts.jar} and {@code content.jar} files
+     * <p>
+     * Each OSGi bundle is added to the repository as it is produced, using the manifest computed for it. Only the
+     * OSGi bundles which were not written by the batch, such as those of unchanged JAR files in incremental mode, are
+     * read to obtain their manifests.
+     *
+     * @param p2Repository true if the p2 repository is to be written, else false
+     */
+    public void setP2Repository(boolean p2Repository) {
+        this.p2Repository = p2Repository;
+    }
+
+    /**
+     * Sets whether the index of the packages exported by the OSGi bundles of the batch is to be written to the target
+     * directory, as its {@code package-index.json} file, reporting the split packages and duplicate exports
+     * <p>
+     * Each OSGi bundle is added to the index as it is produced, using the manifest computed for it. Only the OSGi
+     * bundles which were not written by the batch are read to obtain their manifests. The index is written once the
+     * batch finishes.
+     *
+     * @param packageIndex true if the package index is to be written, else false
+     */
+    public void setPackageIndex(boolean packageIndex) {
+        this.packageIndex = packageIndex;
+    }
+
+    /**
+     * Sets whether the OSGi bundles are to be named and versioned after the Maven coordinates and manifest of their
+     * JAR files rather than after the JAR file names
+     * <p>
+     * The name of an OSGi bundle then follows from the analysis of its JAR file, hence the bundle names are claimed,
+     * and their clashes detected, as the OSGi bundles are written rather than as the JAR files are discovered.
+     *
+     * @param metadataNaming true if the metadata of the JAR files is to be used, else false
+     */
+    public void setMetadataNaming(boolean metadataNaming) {
+        this.metadataNaming = metadataNaming;
+    }
+
+    /**
+     * Sets whether the entries of each JAR file are to be copied to the root of its OSGi bundle rather than the JAR
+     * file being embedded in it
+     *
+     * @param flatten true if the OSGi bundles are to be flattened, else false
+     */
+    public void setFlattened(boolean flatten) {
+        this.flatten = flatten;
+    }
+
+    /**
+     * Sets how the entries of the OSGi bundles are compressed, which defaults to the settings of the compression
+     * system properties
+     *
+     * @param compression the {@link BundleCompression} settings of the OSGi bundles
+     */
+    public void setCompression(BundleCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Sets the number of worker threads of each stage of a pipelined conversion, in which the reading, the analysis
+     * and the writing of different JAR files overlap
+     * <p>
+     * The stages are connected by bounded queues, hence a slow stage holds back the stages before it. Unless set,
+     * each JAR file is converted from start to end by one of the workers.
+     *
+     * @param readers   the number of threads which read the JAR files, computing their digests in incremental mode
+     * @param analyzers the number of threads which scan the packages and imports of the JAR files
+     * @param writers   the number of threads which write the OSGi bundles
+     */
+    public void setPipeline(int readers, int analyzers, int writers) {
+        if ((readers < 1) || (analyzers < 1) || (writers < 1)) {
+            throw new IllegalArgumentException("The number of threads of each stage must be a positive integer.");
+        }
+        this.stageWorkers = new int[] { readers, analyzers, writers };
+    }
+
+    /**
+     * Converts the specified JAR files to OSGi bundles, scheduling the largest JAR files first
+     * <p>
+     * A failure to convert one JAR file does not prevent the conversion of the others, but is reported in its
+     * {@code ConversionResult}.
+     *
+     * @param jarFiles the JAR files to be converted
+     * @return a {@link List} of {@link ConversionResult} instances, one per JAR file, in the order of scheduling
+     * @throws IOException          if an I/O error occurs when reading or writing the digest store
+     * @throws InterruptedException if interrupted while waiting for the conversions to complete
+     */
+    public List<ConversionResult> convert(List<Path> jarFiles) throws IOException, InterruptedException {
+        // the fixed thread pool dequeues tasks in submission order, hence the largest JAR files start first
+        return convert(sortBySizeDescending(jarFiles)::forEach);
+    }
+
+    /**
+     * Converts the JAR files supplied by the {@code JarFileSource} to OSGi bundles, in the order of supply
+     * <p>
+     * Each JAR file is scheduled for conversion as soon as it is supplied, hence the discovery of JAR files overlaps
+     * with their conversion. A failure to convert one JAR file does not prevent the conversion of the others, but is
+     * reported in its {@code ConversionResult}.
+     *
+     * @param jarFileSource the {@link JarFileSource} supplying the JAR files to be converted
+     * @return a {@link List} of {@link ConversionResult} instances, one per JAR file, in the order of supply
+     * @throws IOException          if an I/O error occurs when supplying the JAR files or when reading or writing the
+     *                              digest store, the journal, the p2 repository or the package index
+     * @throws InterruptedException if interrupted while waiting for the conversions to complete
+     */
+    public List<ConversionResult> convert(JarFileSource jarFileSource) throws IOException, InterruptedException {
+        DigestStore digestStore = (incremental) ? DigestStore.load(targetDirectory) : null;
+        ConversionJournal journal = (journaled) ? ConversionJournal.open(targetDirectory, getSettings()) : null;
+        P2RepositoryWriter p2RepositoryWriter = null;
+        List<ConversionResult> results;
+        try {
+            if (p2Repository) {
+                p2RepositoryWriter = new P2RepositoryWriter(targetDirectory, Constants.P2_REPOSITORY_NAME);
+            }
+            Batch batch = new Batch(digestStore, journal, p2RepositoryWriter,
+                    (packageIndex) ? new PackageExportIndex() : null);
+            results = (stageWorkers != null) ?
+                    convertPipelined(jarFileSource, batch) :
+                    convertConcurrently(jarFileSource, batch);
+            if (p2RepositoryWriter != null) {
+                p2RepositoryWriter.finish();
+            }
+            if (batch.packageIndex != null) {
+                batch.packageIndex.write(targetDirectory.resolve(Constants.PACKAGE_INDEX_FILE));
+            }
+            if (digestStore != null) {
+                removeOrphans(digestStore, batch.jarFiles);
+            }
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+            if (p2RepositoryWriter != null) {
+                p2RepositoryWriter.close();
+            }
+        }
+
+        if (digestStore != null) {
+            digestStore.save();
+        }
+        if (journal != null) {
+            journal.complete();
+        }
+        return results;
+    }
+
+    /**
+     * Converts the JAR files supplied by the {@code JarFileSource}, each from start to end by one of the workers
+     *
+     * @param jarFileSource the {@link JarFileSource} supplying the JAR files to be converted
+     * @param batch         the {@link Batch} of the JAR files
+     * @return a {@link List} of {@link ConversionResult} instances, one per JAR file, in the order of supply
+     * @throws IOException          if an I/O error occurs when supplying the JAR files
+     * @throws InterruptedException if interrupted while waiting for the conversions to complete
+     */
+    private List<ConversionResult> convertConcurrently(JarFileSource jarFileSource, Batch batch)
+            throws IOException, InterruptedException {
+        List<Future<ConversionResult>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            jarFileSource.forEach(jarFile -> {
+                Job job = new Job(jarFile);
+                batch.jarFiles.add(jarFile);
+                claimBundleFileName(job, batch);
+                futures.add(executor.submit(() -> {
+                    read(job, batch, false);
+                    analyze(job, batch);
+                    write(job, batch);
+                    return job.result;
+                }));
+            });
+
+            List<ConversionResult> results = new ArrayList<>();
+            for (Future<ConversionResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // conversion failures are captured within the tasks, hence this is unexpected
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts the JAR files supplied by the {@code JarFileSource} in a pipeline of read, analysis and write stages
+     *
+     * @param jarFileSource the {@link JarFileSource} supplying the JAR files to be converted
+     * @param batch         the {@link Batch} of the JAR files
+     * @return a {@link List} of {@link ConversionResult} instances, one per JAR file, in the order of supply
+     * @throws IOException          if an I/O error occurs when supplying the JAR files
+     * @throws InterruptedException if interrupted while waiting for the conversions to complete
+     */
+    private List<ConversionResult> convertPipelined(JarFileSource jarFileSource, Batch batch)
+            throws IOException, InterruptedException {
+        // each queue holds enough JAR files to keep the workers of its stage busy while the previous stage stalls
+        StagedPipeline<Job> pipeline = new StagedPipeline<Job>("bundle-pipeline")
+                .addStage("read", stageWorkers[0], 2 * stageWorkers[0], job -> read(job, batch, true))
+                .addStage("analyze", stageWorkers[1], 2 * stageWorkers[1], job -> analyze(job, batch))
+                .addStage("write", stageWorkers[2], 2 * stageWorkers[2], job -> write(job, batch));
+        List<Job> jobs = new ArrayList<>();
+        pipeline.start();
+        try {
+            jarFileSource.forEach(jarFile -> {
+                Job job = new Job(jarFile);
+                batch.jarFiles.add(jarFile);
+                claimBundleFileName(job, batch);
+                jobs.add(job);
+                try {
+                    pipeline.put(job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while queueing JAR file " + jarFile);
+                }
+            });
+            pipeline.finish();
+        } catch (CancellationException e) {
+            pipeline.cancel();
+            throw new InterruptedException(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            pipeline.cancel();
+            throw e;
+        }
+
+        List<ConversionResult> results = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            results.add(job.result);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the JAR file of the job, computing its digest in incremental mode, and completes the job as skipped if the
+     * JAR file was completed by an unfinished batch, or if the JAR file and the conversion settings are unchanged
+     * since its previous conversion
+     *
+     * @param job      the {@link Job} of the JAR file
+     * @param batch    the {@link Batch} of the JAR file
+     * @param prefetch true if a JAR file which is not digested is to be read ahead of its analysis, so that the
+     *                 analysis and the writing find it in the page cache
+     */
+    private void read(Job job, Batch batch, boolean prefetch) {
+        long stageStartTime = ConversionMetrics.now();
+        DigestStore digestStore = batch.digestStore;
+        try {
+            if (batch.journal != null) {
+                job.result = batch.journal.getCompleted(job.jarFile);
+                job.journaled = (job.result != null);
+            }
+            if (job.result != null) {
+                if (digestStore != null) {
+                    // the digest store of the unfinished batch was not saved
+                    digestStore.put(job.jarFile, new DigestStore.Record(DigestStore.digest(job.jarFile),
+                            DigestStore.digest(getSettings()), job.result.getBundle().getFileName().toString()));
+                }
+            } else if ((digestStore != null) || (deduplicated)) {
+                job.contentDigest = DigestStore.digest(job.jarFile);
+                if (digestStore != null) {
+                    job.previous = digestStore.get(job.jarFile);
+                    String settingsDigest = DigestStore.digest(getSettings());
+                    DigestStore.Record previous = job.previous;
+                    if ((previous != null) && (previous.getContentDigest().equals(job.contentDigest)) && (previous
+                            .getSettingsDigest().equals(settingsDigest)) && (Files
+                            .exists(targetDirectory.resolve(previous.getBundleFileName())))) {
+                        job.result = new ConversionResult(job.jarFile,
+                                targetDirectory.resolve(previous.getBundleFileName()),
+                                ConversionResult.Status.SKIPPED, (System.currentTimeMillis() - job.startTime),
+                                "JAR file and conversion settings are unchanged.");
+                    }
+                }
+                if ((deduplicated) && (job.result == null)) {
+                    job.original = batch.originals.putIfAbsent(job.contentDigest, job);
+                }
+            } else if (prefetch) {
+                prefetch(job.jarFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(job, e);
+        } finally {
+            job.metrics.record(ConversionMetrics.Stage.READ, stageStartTime);
+        }
+    }
+
+    /**
+     * Scans the packages and imports of the JAR file of the job, unless the job is complete
+     * <p>
+     * If deduplicated, the analysis of a content which another thread is already analyzing is waited for and reused.
+     * The analysis of a content is claimed only by the thread which then analyzes it at once, hence a thread never
+     * waits for an analysis which is queued behind it.
+     *
+     * @param job   the {@link Job} of the JAR file
+     * @param batch the {@link Batch} of the JAR file
+     */
+    private void analyze(Job job, Batch batch) {
+        if (job.result != null) {
+            return;
+        }
+        CompletableFuture<JarAnalysis> claimedAnalysis = null;
+        if ((deduplicated) && (job.contentDigest != null)) {
+            claimedAnalysis = new CompletableFuture<>();
+            CompletableFuture<JarAnalysis> pendingAnalysis = batch.analyses.putIfAbsent(job.contentDigest,
+                    claimedAnalysis);
+            if (pendingAnalysis != null) {
+                claimedAnalysis = null;
+                JarAnalysis analysis = pendingAnalysis.join();
+                if (analysis != null) {
+                    LOGGER.fine(String.format("Reusing the analysis of an identical JAR file for JAR file[%s].",
+                            job.jarFile));
+                    job.analysis = analysis;
+                    return;
+                }
+            }
+        }
+        try {
+            job.analysis = JarAnalysis.analyze(job.jarFile, job.metrics);
+        } catch (IOException | RuntimeException e) {
+            fail(job, e);
+        } finally {
+            if (claimedAnalysis != null) {
+                claimedAnalysis.complete(job.analysis);
+            }
+        }
+    }
+
+    /**
+     * Writes the OSGi bundle of the JAR file of the job, unless the job is complete, records its digest in
+     * incremental mode, adds it to the p2 repository and the package index if requested and journals its outcome
+     * <p>
+     * The OSGi bundle of a JAR file identical to another JAR file of the batch is added by the job of that JAR file,
+     * which may not have written it yet.
+     *
+     * @param job   the {@link Job} of the JAR file
+     * @param batch the {@link Batch} of the JAR file
+     */
+    private void write(Job job, Batch batch) {
+        if (job.result == null) {
+            convert(job, batch);
+        }
+        if ((batch.p2Repository != null) && (job.result.getStatus() != ConversionResult.Status.FAILED)
+                && (!job.copy)) {
+            try {
+                // the manifest computed by the conversion describes the bundle only if the bundle was written
+                if (job.result.getStatus() == ConversionResult.Status.CREATED) {
+                    batch.p2Repository.add(job.result.getBundle(), job.manifest);
+                } else {
+                    batch.p2Repository.add(job.result.getBundle());
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(job, e);
+            }
+        }
+        if ((batch.packageIndex != null) && (job.result.getStatus() != ConversionResult.Status.FAILED)
+                && (!job.copy)) {
+            try {
+                if (job.result.getStatus() == ConversionResult.Status.CREATED) {
+                    batch.packageIndex.add(job.result.getBundle(), job.manifest);
+                } else {
+                    batch.packageIndex.add(job.result.getBundle());
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(job, e);
+            }
+        }
+        if ((batch.journal != null) && (!job.journaled)) {
+            try {
+                batch.journal.record(job.result);
+            } catch (IOException e) {
+                // the JAR file is converted again by the next batch, should this batch not finish
+                LOGGER.info(String.format("Failed to journal JAR file[%s]: %s", job.jarFile, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Claims the OSGi bundle file name of a discovered JAR file for its job, if the name follows from the JAR file
+     * name alone, so that of the JAR files of the same name in different directories, the first discovered owns the
+     * name regardless of the order in which the workers complete
+     *
+     * @param job   the {@link Job} of the discovered JAR file
+     * @param batch the {@link Batch} of the JAR file
+     */
+    private void claimBundleFileName(Job job, Batch batch) {
+        Path jarFileName = job.jarFile.getFileName();
+        if ((!metadataNaming) && (jarFileName != null)) {
+            batch.bundleOwners.putIfAbsent(BundleGeneratorUtils.getBundleFileName(jarFileName.toString(),
+                    extensionPrefix, Constants.DEFAULT_BUNDLE_VERSION), job);
+        }
+    }
+
+    /**
+     * Returns the failed result of a JAR file whose OSGi bundle file name is owned by another JAR file of different
+     * content, such as a JAR file of the same name in another directory of a recursive traversal, rather than letting
+     * one OSGi bundle silently replace the other
+     * <p>
+     * A JAR file identical to the owner is skipped, as the owner writes their OSGi bundle.
+     *
+     * @param job   the {@link Job} of the JAR file
+     * @param batch the {@link Batch} of the JAR file
+     * @return a failed {@link ConversionResult} of the JAR file, a skipped one if it is identical to the owner, or
+     * {@code null} if the job owns its bundle file name
+     * @throws IOException if an I/O error occurs when comparing the content of the JAR files
+     */
+    private ConversionResult getClashResult(Job job, Batch batch) throws IOException {
+        Path jarFileName = job.jarFile.getFileName();
+        if (jarFileName == null) {
+            return null;
+        }
+        String bundleFileName = BundleGeneratorUtils.getBundleFileName(jarFileName.toString(), extensionPrefix,
+                Constants.DEFAULT_BUNDLE_VERSION, metadataNaming, job.analysis);
+        Job owner = batch.bundleOwners.putIfAbsent(bundleFileName, job);
+        if ((owner == null) || (owner == job)) {
+            return null;
+        }
+        // identical JAR files produce identical OSGi bundles
+        if (getContentDigest(job).equals(getContentDigest(owner))) {
+            return new ConversionResult(job.jarFile, targetDirectory.resolve(bundleFileName),
+                    ConversionResult.Status.SKIPPED, (System.currentTimeMillis() - job.startTime),
+                    String.format("Identical to JAR file[%s], which owns the OSGi bundle.", owner.jarFile));
+        }
+        String message = String.format("The OSGi bundle[%s] clashes with that of JAR file[%s].", bundleFileName,
+                owner.jarFile);
+        LOGGER.info(String.format("Failed to convert JAR file[%s]: %s", job.jarFile, message));
+        return new ConversionResult(job.jarFile, null, ConversionResult.Status.FAILED,
+                (System.currentTimeMillis() - job.startTime), message);
+    }
+
+    /**
+     * Returns the content digest of the JAR file of the job, computing it on first use
+     *
+     * @param job the {@link Job} of the JAR file
+     * @return the {@link String} content digest of the JAR file
+     * @throws IOException if an I/O error occurs when reading the JAR file
+     */
+    private static String getContentDigest(Job job) throws IOException {
+        String contentDigest = job.contentDigest;
+        if (contentDigest == null) {
+            // concurrent computations of the digest yield the same value
+            contentDigest = DigestStore.digest(job.jarFile);
+            job.contentDigest = contentDigest;
+        }
+        return contentDigest;
+    }
+
+    /**
+     * Writes the OSGi bundle of the JAR file of the job, unless its bundle file name is owned by a JAR file of
+     * different content, and records its digest in incremental mode
+     *
+     * @param job   the {@link Job} of the JAR file
+     * @param batch the {@link Batch} of the JAR file
+     */
+    private void convert(Job job, Batch batch) {
+        DigestStore digestStore = batch.digestStore;
+        try {
+            ConversionResult result = getClashResult(job, batch);
+            if ((result != null) && (result.getStatus() == ConversionResult.Status.FAILED)) {
+                job.result = result;
+                return;
+            }
+            result = (result != null) ? result : getDuplicateResult(job);
+            job.copy = (result != null);
+            job.manifest = new Manifest();
+            result = (result != null) ? result : BundleGeneratorUtils
+                    .convertFromJarToBundle(job.jarFile, targetDirectory, job.manifest, extensionPrefix,
+                            Constants.DEFAULT_BUNDLE_VERSION, (digestStore != null), metadataNaming, flatten,
+                            compression, job.analysis);
+            if (result.getMetrics() != null) {
+                job.metrics.addAll(result.getMetrics());
+            }
+            job.result = new ConversionResult(job.jarFile, result.getBundle(), result.getStatus(),
+                    (System.currentTimeMillis() - job.startTime), result.getMessage(), job.metrics);
+
+            Path bundleFileName = (result.getBundle() != null) ? result.getBundle().getFileName() : null;
+            if ((digestStore != null) && (bundleFileName != null)) {
+                digestStore.put(job.jarFile, new DigestStore.Record(job.contentDigest,
+                        DigestStore.digest(getSettings()), bundleFileName.toString()));
+                DigestStore.Record previous = job.previous;
+                if ((previous != null) && (!previous.getBundleFileName().equals(bundleFileName.toString()))) {
+                    // the bundle name depends on the conversion settings, hence the previous bundle may be stale
+                    Files.deleteIfExists(targetDirectory.resolve(previous.getBundleFileName()));
+                }
+            }
+        } catch (IOException | JarToBundleConverterException | RuntimeException e) {
+            fail(job, e);
+        }
+    }
+
+    /**
+     * Returns the result of a JAR file whose OSGi bundle was already written by the batch for a JAR file of the same
+     * content and name
+     *
+     * @param job the {@link Job} of the JAR file
+     * @return a skipped {@link ConversionResult} of the JAR file, or {@code null} if its OSGi bundle is to be written
+     */
+    private ConversionResult getDuplicateResult(Job job) {
+        ConversionResult originalResult = (job.original != null) ? job.original.result : null;
+        Path jarFileName = job.jarFile.getFileName();
+        if ((originalResult == null) || (originalResult.getStatus() != ConversionResult.Status.CREATED) || (jarFileName
+                == null)) {
+            return null;
+        }
+        Path bundle = targetDirectory.resolve(BundleGeneratorUtils.getBundleFileName(jarFileName.toString(),
+                extensionPrefix, Constants.DEFAULT_BUNDLE_VERSION, metadataNaming, job.analysis));
+        if (!bundle.equals(originalResult.getBundle())) {
+            return null;
+        }
+        return new ConversionResult(job.jarFile, bundle, ConversionResult.Status.SKIPPED,
+                (System.currentTimeMillis() - job.startTime),
+                String.format("Identical to JAR file[%s], whose OSGi bundle was written.", job.original.jarFile));
+    }
+
+    /**
+     * Completes the job as failed
+     *
+     * @param job the {@link Job} of the JAR file
+     * @param e   the cause of the failure
+     */
+    private static void fail(Job job, Exception e) {
+        String message = String.format("Failed to convert JAR file[%s]: %s", job.jarFile, e.getMessage());
+        LOGGER.info(message);
+        job.result = new ConversionResult(job.jarFile, null, ConversionResult.Status.FAILED,
+                (System.currentTimeMillis() - job.startTime), e.getMessage());
+    }
+
+    /**
+     * Reads the file sequentially, discarding its content, so that it is in the page cache when read again
+     *
+     * @param file the file to be read
+     * @throws IOException if an I/O error occurs when reading the file
+     */
+    private static void prefetch(Path file) throws IOException {
+        byte[] buffer = PREFETCH_BUFFERS.get();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            while (inputStream.read(buffer) != -1) {
+                // the content is not needed
+            }
+        }
+    }
+
+    /**
+     * Removes the OSGi bundles, and the digest records, of the JAR files which are not part of the batch
+     *
+     * @param digestStore the {@link DigestStore} of the target directory
+     * @param jarFiles    the JAR files of the batch
+     * @throws IOException if an I/O error occurs when deleting an OSGi bundle
+     */
+    private void removeOrphans(DigestStore digestStore, List<Path> jarFiles) throws IOException {
+        for (Map.Entry<String, DigestStore.Record> orphan : digestStore.retainAll(jarFiles).entrySet()) {
+            String bundleFileName = orphan.getValue().getBundleFileName();
+            Path bundle = targetDirectory.resolve(bundleFileName);
+            // JAR files of the same name share their OSGi bundle
+            if ((!digestStore.isReferenced(bundleFileName)) && (Files.deleteIfExists(bundle))) {
+                LOGGER.info(String.format("Removed the OSGi bundle[%s] of the removed JAR file[%s].", bundle,
+                        orphan.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Returns a {@code String} representation of the settings which affect the content of the generated bundles
+     *
+     * @return a {@link String} representation of the conversion settings
+     */
+    private String getSettings() {
+        return String.format("format=%s;prefix=%s;flatten=%s;metadataNaming=%s;%s", Constants.BUNDLE_FORMAT_VERSION,
+                extensionPrefix, flatten, metadataNaming, compression.getSettings());
+    }
+
+    /**
+     * Returns a copy of the {@code List} of files sorted by file size, in descending order
+     *
+     * @param files the files to be sorted
+     * @return a copy of the {@link List} of files sorted by file size, in descending order
+     */
+    static List<Path> sortBySizeDescending(List<Path> files) {
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path file : files) {
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                // unreadable files are scheduled last and reported as failures during conversion
+                size = -1;
+            }
+            sizes.put(file, size);
+        }
+        List<Path> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing((Path file) -> sizes.get(file)).reversed());
+        return sorted;
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.components;
+
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.StagedPipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which converts the JAR files listed line by line in a file or a stream, such as the standard input,
+ * each to its own destination directory and with its own extension prefix, if specified
+ * <p>
+ * Each line holds the path of a JAR file, optionally followed by a tab and the destination directory of its OSGi
+ * bundle, and optionally followed by another tab and the extension prefix of the bundle. Empty lines and lines
+ * starting with {@code #} are ignored. A JAR file is scheduled for conversion as soon as its line is read, while the
+ * number of JAR files read ahead of their conversion is bounded, hence the list may be arbitrarily long, or still
+ * being produced. The listed JAR files are taken to have changed, hence their existing OSGi bundles are replaced.
+ */
+public class BulkBundleGenerator {
+    private static final Logger LOGGER = Logger.getLogger(BulkBundleGenerator.class.getName());
+    private static final String COMMENT_PREFIX = "#";
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private final Path defaultTargetDirectory;
+    private final String defaultExtensionPrefix;
+    private final int workers;
+    private boolean metadataNaming;
+    private boolean flatten;
+    private BundleCompression compression = BundleCompression.getDefault();
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a new bulk OSGi bundle generator
+     *
+     * @param defaultTargetDirectory the directory into which the OSGi bundles of the lines without a destination
+     *                               need to be placed, or {@code null} if every line is to specify its destination
+     * @param defaultExtensionPrefix the prefix, if any, of the OSGi bundles of the lines without a prefix
+     * @param workers                the number of JAR files to be converted concurrently
+     */
+    public BulkBundleGenerator(Path defaultTargetDirectory, String defaultExtensionPrefix, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of workers must be a positive integer.");
+        }
+        this.defaultTargetDirectory = defaultTargetDirectory;
+        this.defaultExtensionPrefix = (defaultExtensionPrefix != null) ? defaultExtensionPrefix : "";
+        this.workers = workers;
+    }
+
+    /**
+     * Sets whether the OSGi bundles are to be named and versioned after the Maven coordinates and manifest of their
+     * JAR files rather than after the JAR file names
+     *
+     * @param metadataNaming true if the metadata of the JAR files is to be used, else false
+     */
+    public void setMetadataNaming(boolean metadataNaming) {
+        this.metadataNaming = metadataNaming;
+    }
+
+    /**
+     * Sets whether the entries of each JAR file are to be copied to the root of its OSGi bundle rather than the JAR
+     * file being embedded in it
+     *
+     * @param flatten true if the OSGi bundles are to be flattened, else false
+     */
+    public void setFlattened(boolean flatten) {
+        this.flatten = flatten;
+    }
+
+    /**
+     * Sets how the entries of the OSGi bundles are compressed, which defaults to the settings of the compression
+     * system properties
+     *
+     * @param compression the {@link BundleCompression} settings of the OSGi bundles
+     */
+    public void setCompression(BundleCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Converts the JAR files listed by the reader until its end, passing the {@code ConversionResult} of each JAR file
+     * to the {@code Consumer} once converted
+     * <p>
+     * A failure to convert one JAR file, including a malformed line, is passed to the consumer as a result of the
+     * {@link ConversionResult.Status#FAILED} status. The consumer is called by the worker threads, in the order of
+     * completion.
+     *
+     * @param reader   the {@link BufferedReader} of the list of JAR files, which is not closed
+     * @param consumer the thread-safe {@link Consumer} to which the result of each JAR file is to be passed
+     * @return the number of JAR files listed
+     * @throws IOException          if an I/O error occurs when reading the list
+     * @throws InterruptedException if interrupted while waiting for the conversions to complete
+     */
+    public long convert(BufferedReader reader, Consumer<ConversionResult> consumer)
+            throws IOException, InterruptedException {
+        // the lines read ahead of their conversion are bounded, so that the reader is held back by the workers
+        Semaphore pending = new Semaphore(2 * workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers,
+                StagedPipeline.newThreadFactory("bundle-bulk"));
+        long jarFiles = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if ((line.trim().isEmpty()) || (line.startsWith(COMMENT_PREFIX))) {
+                    continue;
+                }
+                pending.acquire();
+                jarFiles++;
+                String listedJarFile = line;
+                executor.execute(() -> {
+                    try {
+                        consumer.accept(convert(listedJarFile));
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.fine(String.format("Waiting for the conversion of %d listed JAR file(s) to complete.",
+                        (2 * workers) - pending.availablePermits()));
+            }
+            LOGGER.info(String.format("Converted %d listed JAR file(s) using %d worker(s).", jarFiles, workers));
+            return jarFiles;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts the JAR file of a line of the list
+     *
+     * @param line the line of the list
+     * @return the {@link ConversionResult} of the JAR file, whose JAR file is {@code null} if the line does not hold a
+     * valid path
+     */
+    private ConversionResult convert(String line) {
+        long startTime = System.currentTimeMillis();
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+        Path jarFile = null;
+        try {
+            jarFile = Paths.get(fields[0].trim());
+            Path targetDirectory = ((fields.length > 1) && !(fields[1].trim().isEmpty())) ?
+                    Paths.get(fields[1].trim()) : defaultTargetDirectory;
+            String extensionPrefix = (fields.length > 2) ? fields[2].trim() : defaultExtensionPrefix;
+            if ((fields.length > 3) || (targetDirectory == null)) {
+                throw new JarToBundleConverterException(String.format("Invalid line[%s], expected a JAR file "
+                        + "optionally followed by a destination directory and an extension prefix, separated by "
+                        + "tabs.", line));
+            }
+            if (createdDirectories.add(targetDirectory.toAbsolutePath().normalize())) {
+                Files.createDirectories(targetDirectory);
+            }
+            return BundleGeneratorUtils.convertFromJarToBundle(jarFile, targetDirectory, new Manifest(),
+                    extensionPrefix, Constants.DEFAULT_BUNDLE_VERSION, true, metadataNaming, flatten, compression,
+                    null);
+        } catch (IOException | JarToBundleConverterException | RuntimeException e) {
+            String message = String.format("Failed to convert JAR file[%s]: %s", jarFile, e.getMessage());
+            LOGGER.info(message);
+            return new ConversionResult(jarFile, null, ConversionResult.Status.FAILED,
+                    (System.currentTimeMillis() - startTime), e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.components;
+
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.JarAnalysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * a Java class which converts JAR files to OSGi bundles in-process, for embedding the converter in another
+ * application
+ * <p>
+ * The extension prefix, bundle version, manifest template, parallelism, naming, layout and compression of the bundles
+ * are fixed on construction. The analysis of each JAR file is cached, keyed by its path, size and last modified time,
+ * hence a JAR file which is converted again unchanged is not rescanned. Instances of this class are thread-safe, and
+ * are expected to be reused and closed once no longer needed.
+ */
+public class BundleConverter implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(BundleConverter.class.getName());
+    private static final Pattern BUNDLE_VERSION_PATTERN = Pattern.compile("\\d+(\\.\\d+(\\.\\d+(\\.[\\w-]+)?)?)?");
+    private static final int MAXIMUM_CACHED_ANALYSES = 1024;
+
+    private final String extensionPrefix;
+    private final String bundleVersion;
+    private final Manifest manifestTemplate;
+    private final boolean metadataNaming;
+    private final boolean flatten;
+    private final BundleCompression compression;
+    private final ExecutorService executor;
+    private final Map<Path, CachedAnalysis> analyses = Collections
+            .synchronizedMap(new LinkedHashMap<Path, CachedAnalysis>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<Path, CachedAnalysis> eldest) {
+                    return size() > MAXIMUM_CACHED_ANALYSES;
+                }
+            });
+
+    /**
+     * the analysis of a JAR file, along with the size and last modified time of the JAR file when analyzed
+     */
+    private static class CachedAnalysis {
+        private final long size;
+        private final long lastModifiedTime;
+        private final JarAnalysis analysis;
+
+        private CachedAnalysis(long size, long lastModifiedTime, JarAnalysis analysis) {
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.analysis = analysis;
+        }
+    }
+
+    /**
+     * Constructs a new OSGi bundle converter with no extension prefix, the default bundle version, an empty manifest
+     * template and one worker thread per available processor
+     */
+    public BundleConverter() {
+        this("", Constants.DEFAULT_BUNDLE_VERSION, new Manifest(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new OSGi bundle converter
+     *
+     * @param extensionPrefix  prefix, if any, for the bundles
+     * @param bundleVersion    the OSGi bundle version, such as {@code 1.0.0}
+     * @param manifestTemplate the manifest whose attributes are to be included in each bundle manifest, unless
+     *                         overridden by the generated attributes
+     * @param parallelism      the number of JAR files to be converted concurrently by the asynchronous methods
+     */
+    public BundleConverter(String extensionPrefix, String bundleVersion, Manifest manifestTemplate,
+            int parallelism) {
+        this(extensionPrefix, bundleVersion, manifestTemplate, parallelism, false);
+    }
+
+    /**
+     * Constructs a new OSGi bundle converter
+     *
+     * @param extensionPrefix  prefix, if any, for the bundles
+     * @param bundleVersion    the OSGi bundle version, such as {@code 1.0.0}, unless metadata naming is enabled and a
+     *                         JAR file declares its version
+     * @param manifestTemplate the manifest whose attributes are to be included in each bundle manifest, unless
+     *                         overridden by the generated attributes
+     * @param parallelism      the number of JAR files to be converted concurrently by the asynchronous methods
+     * @param metadataNaming   true if the OSGi bundles are to be named and versioned after the Maven coordinates and
+     *                         manifest of their JAR files rather than after the JAR file names, else false
+     */
+    public BundleConverter(String extensionPrefix, String bundleVersion, Manifest manifestTemplate, int parallelism,
+            boolean metadataNaming) {
+        this(extensionPrefix, bundleVersion, manifestTemplate, parallelism, metadataNaming, false);
+    }
+
+    /**
+     * Constructs a new OSGi bundle converter, which compresses the bundles as set by the compression system properties
+     *
+     * @param extensionPrefix  prefix, if any, for the bundles
+     * @param bundleVersion    the OSGi bundle version, such as {@code 1.0.0}, unless metadata naming is enabled and a
+     *                         JAR file declares its version
+     * @param manifestTemplate the manifest whose attributes are to be included in each bundle manifest, unless
+     *                         overridden by the generated attributes
+     * @param parallelism      the number of JAR files to be converted concurrently by the asynchronous methods
+     * @param metadataNaming   true if the OSGi bundles are to be named and versioned after the Maven coordinates and
+     *                         manifest of their JAR files rather than after the JAR file names, else false
+     * @param flatten          true if the entries of each JAR file are to be copied to the root of its OSGi bundle
+     *                         rather than the JAR file being embedded in it, else false
+     */
+    public BundleConverter(String extensionPrefix, String bundleVersion, Manifest manifestTemplate, int parallelism,
+            boolean metadataNaming, boolean flatten) {
+        this(extensionPrefix, bundleVersion, manifestTemplate, parallelism, metadataNaming, flatten,
+                BundleCompression.getDefault());
+    }
+
+    /**
+     * Constructs a new OSGi bundle converter
+     *
+     * @param extensionPrefix  prefix, if any, for the bundles
+     * @param bundleVersion    the OSGi bundle version, such as {@code 1.0.0}, unless metadata naming is enabled and a
+     *                         JAR file declares its version
+     * @param manifestTemplate the manifest whose attributes are to be included in each bundle manifest, unless
+     *                         overridden by the generated attributes
+     * @param parallelism      the number of JAR files to be converted concurrently by the asynchronous methods
+     * @param metadataNaming   true if the OSGi bundles are to be named and versioned after the Maven coordinates and
+     *                         manifest of their JAR files rather than after the JAR file names, else false
+     * @param flatten          true if the entries of each JAR file are to be copied to the root of its OSGi bundle
+     *                         rather than the JAR file being embedded in it, else false
+     * @param compression      the {@link BundleCompression} settings of the bundles
+     */
+    public BundleConverter(String extensionPrefix, String bundleVersion, Manifest manifestTemplate, int parallelism,
+            boolean metadataNaming, boolean flatten, BundleCompression compression) {
+        if ((bundleVersion == null) || (!BUNDLE_VERSION_PATTERN.matcher(bundleVersion).matches())) {
+            throw new IllegalArgumentException(String.format("Invalid OSGi bundle version[%s].", bundleVersion));
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be a positive integer.");
+        }
+        this.extensionPrefix = (extensionPrefix != null) ? extensionPrefix : "";
+        this.bundleVersion = bundleVersion;
+        this.manifestTemplate = (manifestTemplate != null) ? new Manifest(manifestTemplate) : new Manifest();
+        this.metadataNaming = metadataNaming;
+        this.flatten = flatten;
+        this.compression = (compression != null) ? compression : BundleCompression.getDefault();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bundle-converter-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Converts the JAR file to an OSGi bundle in the target directory, on the calling thread
+     *
+     * @param jarFile         the JAR file to be converted
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @return the {@link ConversionResult} of the conversion
+     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
+     * @throws JarToBundleConverterException if the JAR file or the target directory is invalid
+     */
+    public ConversionResult convert(Path jarFile, Path targetDirectory, boolean overwrite)
+            throws IOException, JarToBundleConverterException {
+        long startTime = System.currentTimeMillis();
+        ConversionMetrics analysisMetrics = new ConversionMetrics();
+        JarAnalysis analysis = getAnalysis(jarFile, analysisMetrics);
+        ConversionResult result = BundleGeneratorUtils
+                .convertFromJarToBundle(jarFile, targetDirectory, new Manifest(manifestTemplate), extensionPrefix,
+                        bundleVersion, overwrite, metadataNaming, flatten, compression, analysis);
+
+        // the analysis was performed, or taken from the cache, before the conversion
+        ConversionMetrics metrics = result.getMetrics();
+        if (metrics != null) {
+            metrics.addAll(analysisMetrics);
+        }
+        return new ConversionResult(jarFile, result.getBundle(), result.getStatus(),
+                (System.currentTimeMillis() - startTime), result.getMessage(), metrics);
+    }
+
+    /**
+     * Returns the file name of the OSGi bundle into which the JAR file is converted
+     * <p>
+     * If metadata naming is enabled, the JAR file is analyzed, or its analysis taken from the cache, as the name of
+     * its OSGi bundle depends on its content.
+     *
+     * @param jarFile the JAR file
+     * @return the file name of the OSGi bundle of the JAR file
+     * @throws IOException                   if an I/O error occurs when reading the JAR file
+     * @throws JarToBundleConverterException if the JAR file does not exist
+     */
+    public String getBundleFileName(Path jarFile) throws IOException, JarToBundleConverterException {
+        Path jarFileName = jarFile.getFileName();
+        if (jarFileName == null) {
+            throw new JarToBundleConverterException("Path representing the JAR file name has zero elements.");
+        }
+        JarAnalysis analysis = (metadataNaming) ? getAnalysis(jarFile, new ConversionMetrics()) : null;
+        return BundleGeneratorUtils.getBundleFileName(jarFileName.toString(), extensionPrefix, bundleVersion,
+                metadataNaming, analysis);
+    }
+
+    /**
+     * Converts the JAR file to an OSGi bundle in the target directory, on a worker thread of this converter
+     *
+     * @param jarFile         the JAR file to be converted
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @return a {@link CompletableFuture} of the {@link ConversionResult}, which reports a failed conversion as a
+     * result of the {@link ConversionResult.Status#FAILED} status
+     */
+    public CompletableFuture<ConversionResult> convertAsync(Path jarFile, Path targetDirectory, boolean overwrite) {
+        return CompletableFuture.supplyAsync(() -> convertOrFail(jarFile, targetDirectory, overwrite), executor);
+    }
+
+    /**
+     * Converts the JAR files to OSGi bundles in the target directory, on the worker threads of this converter,
+     * starting with the largest JAR files
+     *
+     * @param jarFiles        the JAR files to be converted
+     * @param targetDirectory the directory into which the created OSGi bundles need to be placed
+     * @param overwrite       true if existing OSGi bundles of the same names are to be replaced, else false
+     * @return a {@link List} of {@link CompletableFuture}s of the {@link ConversionResult}s, in the order of the JAR
+     * files, each of which reports a failed conversion as a result of the {@link ConversionResult.Status#FAILED}
+     * status
+     */
+    public List<CompletableFuture<ConversionResult>> convertAll(List<Path> jarFiles, Path targetDirectory,
+            boolean overwrite) {
+        // the fixed thread pool dequeues tasks in submission order, hence the largest JAR files are submitted first
+        Map<Path, CompletableFuture<ConversionResult>> futures = new HashMap<>();
+        for (Path jarFile : BatchBundleGenerator.sortBySizeDescending(jarFiles)) {
+            if (!futures.containsKey(jarFile)) {
+                futures.put(jarFile, convertAsync(jarFile, targetDirectory, overwrite));
+            }
+        }
+        List<CompletableFuture<ConversionResult>> results = new ArrayList<>(jarFiles.size());
+        for (Path jarFile : jarFiles) {
+            results.add(futures.get(jarFile));
+        }
+        return results;
+    }
+
+    /**
+     * Stops the worker threads of this converter, once the submitted conversions complete
+     */
+    @Override public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Converts a single JAR file, capturing any failure in the returned {@code ConversionResult}
+     *
+     * @param jarFile         the JAR file to be converted
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @return the {@link ConversionResult} of the conversion
+     */
+    private ConversionResult convertOrFail(Path jarFile, Path targetDirectory, boolean overwrite) {
+        long startTime = System.currentTimeMillis();
+        try {
+            return convert(jarFile, targetDirectory, overwrite);
+        } catch (IOException | JarToBundleConverterException | RuntimeException e) {
+            LOGGER.fine(String.format("Failed to convert JAR file[%s]: %s", jarFile, e.getMessage()));
+            return new ConversionResult(jarFile, null, ConversionResult.Status.FAILED,
+                    (System.currentTimeMillis() - startTime), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the analysis of the JAR file, from the cache if the JAR file is unchanged since it was analyzed
+     *
+     * @param jarFile the JAR file to be analyzed
+     * @param metrics the {@link ConversionMetrics} into which the analysis stage durations are to be recorded
+     * @return the {@link JarAnalysis} of the JAR file
+     * @throws IOException                   if an I/O error occurs when reading the JAR file
+     * @throws JarToBundleConverterException if the JAR file does not exist
+     */
+    private JarAnalysis getAnalysis(Path jarFile, ConversionMetrics metrics)
+            throws IOException, JarToBundleConverterException {
+        if (!Files.isRegularFile(jarFile)) {
+            throw new JarToBundleConverterException(String.format("JAR file[%s] does not exist.", jarFile));
+        }
+        Path key = jarFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(jarFile, BasicFileAttributes.class);
+        long lastModifiedTime = attributes.lastModifiedTime().toMillis();
+
+        CachedAnalysis cached = analyses.get(key);
+        if ((cached != null) && (cached.size == attributes.size()) && (cached.lastModifiedTime
+                == lastModifiedTime)) {
+            return cached.analysis;
+        }
+        JarAnalysis analysis = JarAnalysis.analyze(jarFile, metrics);
+        analyses.put(key, new CachedAnalysis(attributes.size(), lastModifiedTime, analysis));
+        return analysis;
+    }
+
+}
@@ -19,75 +19,704 @@
 package org.wso2.carbon.tool.components;
 
 import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleCompression;
 import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.JarFileWalker;
+import org.wso2.carbon.tool.util.MappedFileReader;
+import org.wso2.carbon.tool.util.RunReport;
+import org.wso2.carbon.tool.util.Workspace;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.jar.Manifest;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 /**
  * the Java executor file for the Jar-to-OSGi-Bundle converter
  */
 public class BundleGenerator {
     private static final Logger LOGGER = Logger.getLogger(BundleGenerator.class.getName());
+    private static final String OPTION_PREFIX = "--";
+    private static final String WORKERS_OPTION = "workers";
+    private static final String INCREMENTAL_OPTION = "incremental";
+    private static final String JOURNAL_OPTION = "journal";
+    private static final String WATCH_OPTION = "watch";
+    private static final String QUIET_PERIOD_OPTION = "quiet-period";
+    private static final long DEFAULT_QUIET_PERIOD = 2000;
+    private static final String JSON_REPORT_OPTION = "report-json";
+    private static final String CSV_REPORT_OPTION = "report-csv";
+    private static final String RECURSIVE_OPTION = "recursive";
+    private static final String INCLUDE_OPTION = "include";
+    private static final String EXCLUDE_OPTION = "exclude";
+    private static final String MAPPED_IO_THRESHOLD_OPTION = "mapped-io-threshold";
+    private static final String WORKSPACE_OPTION = "workspace";
+    private static final String PIPELINE_OPTION = "pipeline";
+    private static final String DEDUPLICATE_OPTION = "deduplicate";
+    private static final String P2_REPOSITORY_OPTION = "p2-repository";
+    private static final String PACKAGE_INDEX_OPTION = "package-index";
+    private static final String STORE_EMBEDDED_JAR_OPTION = "store-embedded-jar";
+    private static final String DEFLATE_LEVEL_OPTION = "deflate-level";
+    private static final String PARALLEL_DEFLATE_THRESHOLD_OPTION = "parallel-deflate-threshold";
+    private static final String FLATTEN_OPTION = "flatten";
+    private static final String METADATA_NAMING_OPTION = "metadata-naming";
+    private static final String SERVE_OPTION = "serve";
+    private static final String PORT_OPTION = "port";
+    private static final String MAX_CONCURRENT_REQUESTS_OPTION = "max-concurrent-requests";
+    private static final String CONNECT_OPTION = "connect";
+    private static final String INPUT_OPTION = "input";
+    private static final String STANDARD_INPUT = "-";
+    private static final int INVALID_DEFLATE_LEVEL = -2;
+    private static final int MAXIMUM_PORT = 65535;
+    /**
+     * the options which are not supported by a request forwarded to the conversion server, as they either configure
+     * the JVM-wide settings or keep the request running indefinitely
+     */
+    private static final Set<String> SERVER_REJECTED_OPTIONS = new HashSet<>(Arrays.asList(
+            MAPPED_IO_THRESHOLD_OPTION, WORKSPACE_OPTION, WATCH_OPTION, SERVE_OPTION, PORT_OPTION,
+            MAX_CONCURRENT_REQUESTS_OPTION, CONNECT_OPTION));
+    /**
+     * the destinations which are currently being converted by requests forwarded to the conversion server
+     */
+    private static final Set<Path> DESTINATIONS_IN_PROGRESS = ConcurrentHashMap.newKeySet();
 
     /**
-     * Executes the JAR to OSGi bundle conversion process
+     * Executes the JAR to OSGi bundle conversion process, converting the source JAR file or directory to the
+     * destination as configured by the options, which are described in the README of the project.
      *
-     * @param args a {@link String} array providing the source and destination {@link String} path values
+     * @param args a {@link String} array providing the source and destination {@link String} path values, and
+     *             the options, if any
      */
     public static void main(String[] args) {
-        int sourceIndex = 0;
-        int destinationIndex = 1;
+        List<String> paths = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        parseArguments(Arrays.asList(args), paths, options);
 
-        if (args.length == 2) {
-            Path source = getPath(args[sourceIndex]);
-            Path destination = getPath(args[destinationIndex]);
-
-            if ((source != null) && (destination != null)) {
-                if ((Files.isReadable(source)) && (Files.isWritable(destination))) {
-                    if (Files.isDirectory(destination)) {
-                        try {
-                            if (!Files.isDirectory(source)) {
-                                BundleGeneratorUtils.convertFromJarToBundle(source, destination, new Manifest(), "");
-                            } else {
-                                List<Path> directoryContent = BundleGeneratorUtils.listFiles(source);
-                                for (Path aDirectoryItem : directoryContent) {
-                                    if (aDirectoryItem.toString().endsWith(".jar")) {
-                                        BundleGeneratorUtils
-                                                .convertFromJarToBundle(aDirectoryItem, destination, new Manifest(),
-                                                        "");
-                                    }
-                                }
-                            }
-                        } catch (IOException | JarToBundleConverterException e) {
-                            String message = "An error has occurred during the conversion. Please try again.";
-                            LOGGER.info(message);
-                            LOGGER.fine(e.getMessage());
-                        } catch (Exception e) {
-                            String message = "An error has occurred during the conversion.";
-                            LOGGER.info(message);
-                            LOGGER.fine(e.getMessage());
-                        }
-                    } else {
-                        String message = "The destination file path is not a directory.";
-                        LOGGER.info(message);
-                    }
+        if (options.containsKey(CONNECT_OPTION)) {
+            connect(paths, options);
+        } else if (applySettings(options)) {
+            if (options.containsKey(SERVE_OPTION)) {
+                serve(options);
+                return;
+            }
+            try {
+                convert(paths, options, new RunReport(), isReported(options));
+            } catch (IllegalArgumentException e) {
+                LOGGER.info(e.getMessage());
+            } catch (IOException | JarToBundleConverterException e) {
+                String message = "An error has occurred during the conversion. Please try again.";
+                LOGGER.info(message);
+                LOGGER.fine(e.getMessage());
+            } catch (Exception e) {
+                String message = "An error has occurred during the conversion.";
+                LOGGER.info(message);
+                LOGGER.fine(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Converts the JAR files specified by the arguments of a request forwarded to the conversion server
+     * <p>
+     * The options which configure the JVM-wide settings, such as the memory-mapped I/O threshold, are set when
+     * starting the server and are rejected here, as are the options which would keep the request running
+     * indefinitely. Requests of the same destination are not converted concurrently, as they would share its digest
+     * store and journal.
+     *
+     * @param arguments the arguments of the request, in the form of the command line arguments
+     * @return the {@link RunReport} of the conversion
+     * @throws IllegalArgumentException      if the arguments are invalid
+     * @throws IllegalStateException         if a request of the same destination is being converted
+     * @throws IOException                   if an I/O error occurs during the conversion
+     * @throws JarToBundleConverterException if an error occurs when converting a single JAR file
+     * @throws InterruptedException          if interrupted while waiting for the conversions to complete
+     */
+    static RunReport convertRequest(List<String> arguments)
+            throws IOException, JarToBundleConverterException, InterruptedException {
+        List<String> paths = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        parseArguments(arguments, paths, options);
+        for (String option : options.keySet()) {
+            if (SERVER_REJECTED_OPTIONS.contains(option)) {
+                throw new IllegalArgumentException(String.format("Option[%s] is not supported by a conversion "
+                        + "request, it is to be set when starting the server.", option));
+            }
+        }
+        if (STANDARD_INPUT.equals(options.get(INPUT_OPTION))) {
+            throw new IllegalArgumentException("The standard input is not supported by a conversion request, the "
+                    + "JAR files are to be listed in a file.");
+        }
+
+        int destinationIndex = (options.containsKey(INPUT_OPTION)) ? 0 : 1;
+        Path claimedDestination = (paths.size() == (destinationIndex + 1)) ?
+                Paths.get(paths.get(destinationIndex)).toAbsolutePath().normalize() : null;
+        if ((claimedDestination != null) && !(DESTINATIONS_IN_PROGRESS.add(claimedDestination))) {
+            throw new IllegalStateException(String.format("The destination[%s] is being converted by another "
+                    + "request.", claimedDestination));
+        }
+        try {
+            RunReport report = new RunReport();
+            convert(paths, options, report, true);
+            return report;
+        } finally {
+            if (claimedDestination != null) {
+                DESTINATIONS_IN_PROGRESS.remove(claimedDestination);
+            }
+        }
+    }
+
+    /**
+     * Splits the arguments into the paths and the options
+     *
+     * @param arguments the command line arguments
+     * @param paths     the {@link List} to which the paths are to be added
+     * @param options   the {@link Map} to which the options are to be added, with the value "true" for a flag
+     */
+    private static void parseArguments(List<String> arguments, List<String> paths, Map<String, String> options) {
+        for (String argument : arguments) {
+            if (argument.startsWith(OPTION_PREFIX)) {
+                int separatorIndex = argument.indexOf('=');
+                if (separatorIndex != -1) {
+                    options.put(argument.substring(OPTION_PREFIX.length(), separatorIndex),
+                            argument.substring(separatorIndex + 1));
                 } else {
-                    String message =
-                            "The source location and/or bundle destination may not have appropriate read/write "
-                                    + "permissions.";
-                    LOGGER.info(message);
+                    options.put(argument.substring(OPTION_PREFIX.length()), "true");
                 }
             } else {
-                String message = "Invalid file path(s). Please try again.";
-                LOGGER.info(message);
+                paths.add(argument);
+            }
+        }
+    }
+
+    /**
+     * Applies the options which configure the JVM-wide settings of the conversions
+     *
+     * @param options the command line options
+     * @return true if the values of the options are valid, else false
+     */
+    private static boolean applySettings(Map<String, String> options) {
+        long mappedIoThreshold = getPositiveLong(options, MAPPED_IO_THRESHOLD_OPTION,
+                MappedFileReader.getThreshold());
+        if (mappedIoThreshold <= 0) {
+            return false;
+        }
+        MappedFileReader.setThreshold(mappedIoThreshold);
+        if (options.containsKey(WORKSPACE_OPTION)) {
+            Workspace.setRoot(Paths.get(options.get(WORKSPACE_OPTION)));
+        }
+        return true;
+    }
+
+    /**
+     * Converts the source JAR file or directory to the destination as specified by the options
+     *
+     * @param paths      the source and destination {@link String} path values
+     * @param options    the command line options
+     * @param report     the {@link RunReport} to which the results are to be added
+     * @param bulkReport true if the results of a bulk conversion are to be added to the report, else false, so that
+     *                   the memory of a bulk conversion does not grow with the number of JAR files listed
+     * @throws IllegalArgumentException      if the paths or the options are invalid
+     * @throws IOException                   if an I/O error occurs during the conversion
+     * @throws JarToBundleConverterException if an error occurs when converting a single JAR file
+     * @throws InterruptedException          if interrupted while waiting for the conversions to complete
+     */
+    private static void convert(List<String> paths, Map<String, String> options, RunReport report,
+            boolean bulkReport) throws IOException, JarToBundleConverterException, InterruptedException {
+        if (options.containsKey(INPUT_OPTION)) {
+            convertBulk(paths, options, report, bulkReport);
+            return;
+        }
+        int sourceIndex = 0;
+        int destinationIndex = 1;
+
+        int workers = (int) getPositiveNumber(options, WORKERS_OPTION, 1);
+        boolean incremental = Boolean.parseBoolean(options.get(INCREMENTAL_OPTION));
+        boolean journaled = Boolean.parseBoolean(options.get(JOURNAL_OPTION));
+        boolean deduplicated = Boolean.parseBoolean(options.get(DEDUPLICATE_OPTION));
+        boolean p2Repository = Boolean.parseBoolean(options.get(P2_REPOSITORY_OPTION));
+        boolean packageIndex = Boolean.parseBoolean(options.get(PACKAGE_INDEX_OPTION));
+        boolean metadataNaming = Boolean.parseBoolean(options.get(METADATA_NAMING_OPTION));
+        boolean flatten = isFlattened(options);
+        BundleCompression compression = getCompression(options);
+        boolean watch = Boolean.parseBoolean(options.get(WATCH_OPTION));
+        long quietPeriod = getPositiveNumber(options, QUIET_PERIOD_OPTION, DEFAULT_QUIET_PERIOD);
+        int[] pipeline = getPipeline(options);
+        if ((paths.size() != 2) || (workers <= 0) || (quietPeriod <= 0) || (compression == null)
+                || ((pipeline != null) && (pipeline.length != 3))) {
+            throw new IllegalArgumentException("Invalid arguments. Please specify the source and destination paths "
+                    + "followed by valid options.");
+        }
+
+        Path source = getPath(paths.get(sourceIndex));
+        Path destination = getPath(paths.get(destinationIndex));
+        if ((source == null) || (destination == null)) {
+            throw new IllegalArgumentException("Invalid file path(s). Please try again.");
+        }
+        if (!(Files.isReadable(source)) || !(Files.isWritable(destination))) {
+            throw new IllegalArgumentException(
+                    "The source location and/or bundle destination may not have appropriate read/write "
+                            + "permissions.");
+        }
+        if (!Files.isDirectory(destination)) {
+            throw new IllegalArgumentException("The destination file path is not a directory.");
+        }
+        // the watcher observes the source directory alone, and converts each JAR file created within it
+        if ((watch) && (getJarFileWalker(source, destination, options) != null)) {
+            throw new IllegalArgumentException("The watch option cannot be combined with the recursive, include and "
+                    + "exclude options.");
+        }
+
+        if (!Files.isDirectory(source)) {
+            report.add(BundleGeneratorUtils.convertFromJarToBundle(source, destination, new Manifest(), "", false,
+                    metadataNaming, flatten, compression));
+            writeReports(report, options);
+        } else {
+            // the watcher records events from its creation, while the directory is converted
+            try (DirectoryWatcher watcher = (watch) ? new DirectoryWatcher(source, destination, "", quietPeriod) :
+                    null) {
+                if (watcher != null) {
+                    watcher.setMetadataNaming(metadataNaming);
+                    watcher.setFlattened(flatten);
+                    watcher.setCompression(compression);
+                }
+                try {
+                    convertBatch(source, destination, workers, incremental, journaled, deduplicated, p2Repository,
+                            packageIndex, metadataNaming, flatten, compression, pipeline,
+                            getJarFileWalker(source, destination, options), report);
+                } finally {
+                    writeReports(report, options);
+                }
+                if (watcher != null) {
+                    watcher.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the JAR files listed line by line in the input file, or the standard input, as they are read
+     *
+     * @param paths      the default destination {@link String} path value, if any
+     * @param options    the command line options
+     * @param report     the {@link RunReport} to which the results are to be added, if requested
+     * @param bulkReport true if the results are to be added to the report, else false
+     * @throws IllegalArgumentException if the paths or the options are invalid
+     * @throws IOException              if an I/O error occurs when reading the list or writing a report
+     * @throws InterruptedException     if interrupted while waiting for the conversions to complete
+     */
+    private static void convertBulk(List<String> paths, Map<String, String> options, RunReport report,
+            boolean bulkReport) throws IOException, InterruptedException {
+        int workers = (int) getPositiveNumber(options, WORKERS_OPTION, 1);
+        String input = options.get(INPUT_OPTION);
+        BundleCompression compression = getCompression(options);
+        if ((paths.size() > 1) || (workers <= 0) || (input.isEmpty()) || (compression == null)) {
+            throw new IllegalArgumentException("Invalid arguments. Please specify the list of JAR files, optionally "
+                    + "followed by the default destination path and valid options.");
+        }
+        Path destination = (paths.isEmpty()) ? null : Paths.get(paths.get(0));
+
+        Consumer<ConversionResult> consumer = result -> {
+            LOGGER.info(result.toString());
+            if (bulkReport) {
+                report.add(result);
+            }
+        };
+        BulkBundleGenerator bulkBundleGenerator = new BulkBundleGenerator(destination, "", workers);
+        bulkBundleGenerator.setMetadataNaming(Boolean.parseBoolean(options.get(METADATA_NAMING_OPTION)));
+        bulkBundleGenerator.setFlattened(isFlattened(options));
+        bulkBundleGenerator.setCompression(compression);
+        try (BufferedReader reader = (STANDARD_INPUT.equals(input)) ?
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)) :
+                Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8)) {
+            bulkBundleGenerator.convert(reader, consumer);
+        } finally {
+            if (bulkReport) {
+                writeReports(report, options);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the OSGi bundles are to be flattened, as specified by the flatten option or, if unspecified, the
+     * flatten system property
+     *
+     * @param options the command line options
+     * @return true if the OSGi bundles are to be flattened, else false
+     */
+    private static boolean isFlattened(Map<String, String> options) {
+        String value = options.get(FLATTEN_OPTION);
+        return (value != null) ? Boolean.parseBoolean(value) : Boolean.getBoolean(Constants.FLATTEN_PROPERTY);
+    }
+
+    /**
+     * Returns the compression settings of the OSGi bundles, as specified by the compression options or, if
+     * unspecified, the compression system properties
+     *
+     * @param options the command line options
+     * @return the {@link BundleCompression} settings, or {@code null} if the value of an option is invalid
+     * @throws IllegalArgumentException if the value of a compression system property is invalid
+     */
+    private static BundleCompression getCompression(Map<String, String> options) {
+        BundleCompression defaultCompression = BundleCompression.getDefault();
+        int deflateLevel = getDeflateLevel(options, defaultCompression.getLevel());
+        long parallelDeflateThreshold = getPositiveLong(options, PARALLEL_DEFLATE_THRESHOLD_OPTION,
+                defaultCompression.getParallelDeflateThreshold());
+        if ((deflateLevel == INVALID_DEFLATE_LEVEL) || (parallelDeflateThreshold < 0)) {
+            return null;
+        }
+        String embeddedJarStored = options.get(STORE_EMBEDDED_JAR_OPTION);
+        return new BundleCompression((embeddedJarStored != null) ? Boolean.parseBoolean(embeddedJarStored) :
+                defaultCompression.isEmbeddedJarStored(), deflateLevel, parallelDeflateThreshold);
+    }
+
+    /**
+     * Returns true if a report of the conversion is requested by the options
+     *
+     * @param options the command line options
+     * @return true if a JSON or CSV report is requested, else false
+     */
+    private static boolean isReported(Map<String, String> options) {
+        return (options.containsKey(JSON_REPORT_OPTION)) || (options.containsKey(CSV_REPORT_OPTION));
+    }
+
+    /**
+     * Starts the conversion server, which keeps converting the requests forwarded to it until the JVM exits
+     *
+     * @param options the command line options
+     */
+    private static void serve(Map<String, String> options) {
+        long port = getPort(options, PORT_OPTION);
+        long maxConcurrentRequests = getPositiveNumber(options, MAX_CONCURRENT_REQUESTS_OPTION,
+                Runtime.getRuntime().availableProcessors());
+        if ((port <= 0) || (maxConcurrentRequests <= 0)) {
+            return;
+        }
+        try {
+            ConversionServer server = new ConversionServer((int) port, (int) maxConcurrentRequests);
+            try {
+                server.start();
+            } catch (IOException e) {
+                server.close();
+                throw e;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        } catch (IOException e) {
+            String message = "An error has occurred when starting the conversion server.";
+            LOGGER.info(message);
+            LOGGER.fine(e.getMessage());
+        }
+    }
+
+    /**
+     * Forwards the paths and the options to the conversion server, resolving the paths against the current
+     * directory, and prints the report of the conversion
+     *
+     * @param paths   the source and destination {@link String} path values
+     * @param options the command line options
+     */
+    private static void connect(List<String> paths, Map<String, String> options) {
+        String connect = options.remove(CONNECT_OPTION);
+        long port = (Boolean.parseBoolean(connect)) ? Constants.DEFAULT_SERVER_PORT :
+                getPort(Collections.singletonMap(CONNECT_OPTION, connect), CONNECT_OPTION);
+        if (port <= 0) {
+            return;
+        }
+        List<String> arguments = new ArrayList<>();
+        for (String path : paths) {
+            arguments.add(Paths.get(path).toAbsolutePath().toString());
+        }
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            if ((option.getKey().equals(JSON_REPORT_OPTION)) || (option.getKey().equals(CSV_REPORT_OPTION))
+                    || ((option.getKey().equals(INPUT_OPTION)) && !(STANDARD_INPUT.equals(value)))) {
+                value = Paths.get(value).toAbsolutePath().toString();
+            }
+            arguments.add(OPTION_PREFIX + option.getKey() + "=" + value);
+        }
+        try {
+            System.out.print(ConversionClient.convert((int) port, arguments));
+        } catch (IOException e) {
+            String message = "An error has occurred when forwarding the conversion to the conversion server.";
+            LOGGER.info(message);
+            LOGGER.info(e.getMessage());
+        }
+    }
+
+    /**
+     * Converts the JAR files of the source directory using the specified number of concurrent workers and reports
+     * the outcome of each conversion
+     * <p>
+     * The JAR files discovered by a {@code JarFileWalker} are converted as they are discovered, while the JAR files
+     * directly within the source directory are listed first, so that the largest of them are converted first. A
+     * failure to convert one JAR file is reported without stopping the conversion of the others. If journaled, the
+     * completion of each JAR file is journaled in the destination, so that a run which did not finish is continued by
+     * the next run.
+     *
+     * @param source         the source directory
+     * @param destination    the directory into which the created OSGi bundles need to be placed
+     * @param workers        the number of concurrent workers
+     * @param incremental    true if only the JAR files which changed since the previous conversion are to be
+     *                       converted
+     * @param journaled      true if the completion of each JAR file is to be journaled in the destination
+     * @param deduplicated   true if JAR files of identical content are to be converted once
+     * @param p2Repository   true if the p2 repository of the OSGi bundles is to be written to the destination
+     * @param packageIndex   true if the index of the packages exported by the OSGi bundles is to be written to the
+     *                       destination
+     * @param metadataNaming true if the OSGi bundles are to be named and versioned after the metadata of their JAR
+     *                       files, else false
+     * @param flatten        true if the entries of the JAR files are to be copied to the root of their OSGi bundles,
+     *                       else false
+     * @param compression    the {@link BundleCompression} settings of the OSGi bundles
+     * @param pipeline       the number of threads of the read, analysis and write stages, or {@code null} if the
+     *                       conversion is not pipelined
+     * @param walker         the {@link JarFileWalker} discovering the JAR files, or {@code null} if only the JAR
+     *                       files directly within the source directory are to be converted
+     * @param report         the {@link RunReport} to which the results are to be added
+     * @throws IOException          if an I/O error occurs when traversing the source directory or when reading or
+     *                              writing the digest store, the journal, the p2 repository or the package index
+     * @throws InterruptedException if interrupted while waiting for the conversions to complete
+     */
+    private static void convertBatch(Path source, Path destination, int workers, boolean incremental,
+            boolean journaled, boolean deduplicated, boolean p2Repository, boolean packageIndex,
+            boolean metadataNaming, boolean flatten, BundleCompression compression, int[] pipeline,
+            JarFileWalker walker, RunReport report) throws IOException, InterruptedException {
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(destination, "", workers);
+        batchBundleGenerator.setIncremental(incremental);
+        batchBundleGenerator.setJournaled(journaled);
+        batchBundleGenerator.setDeduplicated(deduplicated);
+        batchBundleGenerator.setP2Repository(p2Repository);
+        batchBundleGenerator.setPackageIndex(packageIndex);
+        batchBundleGenerator.setMetadataNaming(metadataNaming);
+        batchBundleGenerator.setFlattened(flatten);
+        batchBundleGenerator.setCompression(compression);
+        if (pipeline != null) {
+            batchBundleGenerator.setPipeline(pipeline[0], pipeline[1], pipeline[2]);
+        }
+        List<ConversionResult> results;
+        if (walker != null) {
+            results = batchBundleGenerator.convert(walker::walk);
+        } else {
+            List<Path> jarFiles = new ArrayList<>();
+            for (Path aDirectoryItem : BundleGeneratorUtils.listFiles(source)) {
+                if (aDirectoryItem.toString().endsWith(".jar")) {
+                    jarFiles.add(aDirectoryItem);
+                }
+            }
+            results = batchBundleGenerator.convert(jarFiles);
+        }
+
+        report.addAll(results);
+        int failures = 0;
+        for (ConversionResult result : results) {
+            LOGGER.info(result.toString());
+            if (result.getStatus() == ConversionResult.Status.FAILED) {
+                failures++;
+            }
+        }
+        LOGGER.info(String.format("Converted %d JAR file(s) using %d worker(s), %d failure(s).", results.size(),
+                workers, failures));
+    }
+
+    /**
+     * Returns a {@code JarFileWalker} of the source directory if a recursive or filtered traversal is requested
+     *
+     * @param source      the source directory
+     * @param destination the destination directory, which is skipped if nested within the source directory
+     * @param options     the command line options
+     * @return a {@link JarFileWalker} of the source directory, or {@code null} if neither a recursive nor a filtered
+     * traversal is requested
+     */
+    private static JarFileWalker getJarFileWalker(Path source, Path destination, Map<String, String> options) {
+        boolean recursive = Boolean.parseBoolean(options.get(RECURSIVE_OPTION));
+        List<String> includes = getList(options, INCLUDE_OPTION);
+        List<String> excludes = getList(options, EXCLUDE_OPTION);
+        if ((!recursive) && (includes.isEmpty()) && (excludes.isEmpty())) {
+            return null;
+        }
+        JarFileWalker walker = new JarFileWalker(source, recursive, includes, excludes);
+        walker.skipDirectory(destination);
+        return walker;
+    }
+
+    /**
+     * Returns the comma separated values of the option
+     *
+     * @param options the command line options
+     * @param option  the name of the option
+     * @return a {@link List} of the non-empty values of the option, empty if the option is unspecified
+     */
+    private static List<String> getList(Map<String, String> options, String option) {
+        List<String> values = new ArrayList<>();
+        String value = options.get(option);
+        if (value != null) {
+            for (String aValue : value.split(",")) {
+                if (!aValue.trim().isEmpty()) {
+                    values.add(aValue.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the number of threads of the read, analysis and write stages specified by the pipeline option
+     *
+     * @param options the command line options
+     * @return an array of the three positive thread counts, {@code null} if the option is unspecified, or an empty
+     * array if the value is invalid
+     */
+    private static int[] getPipeline(Map<String, String> options) {
+        if (!options.containsKey(PIPELINE_OPTION)) {
+            return null;
+        }
+        List<String> values = getList(options, PIPELINE_OPTION);
+        int[] pipeline = new int[values.size()];
+        try {
+            for (int index = 0; index < pipeline.length; index++) {
+                pipeline[index] = Integer.parseInt(values.get(index));
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.fine(e.getMessage());
+            pipeline = new int[0];
+        }
+        if ((pipeline.length != 3) || (Arrays.stream(pipeline).anyMatch(threads -> threads < 1))) {
+            LOGGER.info(String.format("Invalid value[%s] of option[%s].", options.get(PIPELINE_OPTION),
+                    PIPELINE_OPTION));
+            return new int[0];
+        }
+        return pipeline;
+    }
+
+    /**
+     * Returns the deflate level specified by the deflate level option
+     *
+     * @param options      the command line options
+     * @param defaultLevel the level to be returned if the option is unspecified
+     * @return the deflate level, the default level if the option is unspecified, or {@code INVALID_DEFLATE_LEVEL} if
+     * the value is invalid
+     */
+    private static int getDeflateLevel(Map<String, String> options, int defaultLevel) {
+        String value = options.get(DEFLATE_LEVEL_OPTION);
+        if (value == null) {
+            return defaultLevel;
+        }
+        try {
+            int level = Integer.parseInt(value);
+            if ((level >= Deflater.NO_COMPRESSION) && (level <= Deflater.BEST_COMPRESSION)) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.fine(e.getMessage());
+        }
+        LOGGER.info(String.format("Invalid value[%s] of option[%s].", value, DEFLATE_LEVEL_OPTION));
+        return INVALID_DEFLATE_LEVEL;
+    }
+
+    /**
+     * Writes the run report in the formats requested by the options, if any
+     *
+     * @param report  the {@link RunReport} to be written
+     * @param options the command line options
+     * @throws IOException if an I/O error occurs when writing a report
+     */
+    private static void writeReports(RunReport report, Map<String, String> options) throws IOException {
+        String jsonReport = options.get(JSON_REPORT_OPTION);
+        if (jsonReport != null) {
+            report.writeJson(Paths.get(jsonReport));
+            LOGGER.info(String.format("Wrote the conversion report[%s].", jsonReport));
+        }
+        String csvReport = options.get(CSV_REPORT_OPTION);
+        if (csvReport != null) {
+            report.writeCsv(Paths.get(csvReport));
+            LOGGER.info(String.format("Wrote the conversion report[%s].", csvReport));
+        }
+    }
+
+    /**
+     * Returns the port specified by the option
+     *
+     * @param options the command line options
+     * @param option  the name of the option
+     * @return the port specified by the option, the default port if unspecified, or -1 if the value is invalid
+     */
+    private static long getPort(Map<String, String> options, String option) {
+        long port = getPositiveNumber(options, option, Constants.DEFAULT_SERVER_PORT);
+        if (port > MAXIMUM_PORT) {
+            LOGGER.info(String.format("Invalid value[%s] of option[%s].", options.get(option), option));
+            return -1;
+        }
+        return port;
+    }
+
+    /**
+     * Returns the positive number specified by the option
+     *
+     * @param options      the command line options
+     * @param option       the name of the option
+     * @param defaultValue the value to be returned if the option is unspecified
+     * @return the positive number specified by the option, the default value if unspecified, or -1 if the value is
+     * invalid
+     */
+    private static long getPositiveNumber(Map<String, String> options, String option, long defaultValue) {
+        return getPositiveNumber(options, option, defaultValue, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the positive size specified by the option, which unlike a count may exceed the range of an int
+     *
+     * @param options      the command line options
+     * @param option       the name of the option
+     * @param defaultValue the value to be returned if the option is unspecified
+     * @return the positive size specified by the option, the default value if unspecified, or -1 if the value is
+     * invalid
+     */
+    private static long getPositiveLong(Map<String, String> options, String option, long defaultValue) {
+        return getPositiveNumber(options, option, defaultValue, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the positive number, up to the maximum, specified by the option
+     *
+     * @param options      the command line options
+     * @param option       the name of the option
+     * @param defaultValue the value to be returned if the option is unspecified
+     * @param maximum      the largest valid value
+     * @return the positive number specified by the option, the default value if unspecified, or -1 if the value is
+     * invalid
+     */
+    private static long getPositiveNumber(Map<String, String> options, String option, long defaultValue,
+            long maximum) {
+        String value = options.get(option);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long number = Long.parseLong(value);
+            if ((number > 0) && (number <= maximum)) {
+                return number;
             }
+        } catch (NumberFormatException e) {
+            LOGGER.fine(e.getMessage());
         }
+        LOGGER.info(String.format("Invalid value[%s] of option[%s].", value, option));
+        return -1;
     }
 
     /**
@@ -0,0 +1,175 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.components;
+
+import org.wso2.carbon.tool.util.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which forwards a conversion to a {@code ConversionServer} running on the loopback address
+ * <p>
+ * A conversion rejected with the status 503, because the server is converting its maximum number of requests, is
+ * retried after the delay specified by the {@code Retry-After} header of the response, up to
+ * {@value Constants#SERVER_MAX_RETRIES} times. The token of the server, which each request carries, is read from the
+ * token file of the server, hence the client is to be run by the user running the server.
+ */
+public class ConversionClient {
+    private static final Logger LOGGER = Logger.getLogger(ConversionClient.class.getName());
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+
+    /**
+     * Forwards the arguments of a conversion to the conversion server and returns its report
+     *
+     * @param port      the port on which the conversion server listens
+     * @param arguments the command line arguments of the conversion, whose paths are absolute
+     * @return the JSON report of the conversion
+     * @throws IOException if the server cannot be reached, or if it rejects or fails the conversion, in which case
+     *                     the message of the exception holds the response of the server
+     */
+    public static String convert(int port, List<String> arguments) throws IOException {
+        return convert(port, arguments, Constants.SERVER_MAX_RETRIES);
+    }
+
+    /**
+     * Forwards the arguments of a conversion to the conversion server and returns its report, retrying the
+     * conversion while the server is busy
+     *
+     * @param port       the port on which the conversion server listens
+     * @param arguments  the command line arguments of the conversion, whose paths are absolute
+     * @param maxRetries the maximum number of times a conversion rejected by a busy server is retried
+     * @return the JSON report of the conversion
+     * @throws IOException if the server cannot be reached, or if it rejects or fails the conversion, in which case
+     *                     the message of the exception holds the response of the server
+     */
+    public static String convert(int port, List<String> arguments, int maxRetries) throws IOException {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port,
+                Constants.SERVER_CONVERT_PATH);
+        String token = readToken(port);
+        for (int retry = 0; ; retry++) {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            long retryDelay;
+            try {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+                connection.setRequestProperty(Constants.SERVER_TOKEN_HEADER, token);
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    outputStream.write(String.join("\n", arguments).getBytes(StandardCharsets.UTF_8));
+                }
+
+                int status = connection.getResponseCode();
+                InputStream inputStream = (status == STATUS_OK) ? connection.getInputStream() :
+                        connection.getErrorStream();
+                String response = (inputStream != null) ? read(inputStream) : "";
+                if (status == STATUS_OK) {
+                    return response;
+                }
+                if ((status != STATUS_SERVICE_UNAVAILABLE) || (retry >= maxRetries)) {
+                    throw new IOException(String.format("The conversion server responded with status %d: %s",
+                            status, response.trim()));
+                }
+                retryDelay = getRetryDelay(connection.getHeaderField("Retry-After"));
+            } finally {
+                connection.disconnect();
+            }
+
+            LOGGER.fine(String.format("The conversion server is busy, retrying in %d second(s).", retryDelay));
+            try {
+                TimeUnit.SECONDS.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry the conversion.");
+            }
+        }
+    }
+
+    /**
+     * Reads the token of the conversion server listening on the specified port from its token file
+     *
+     * @param port the port on which the conversion server listens
+     * @return the {@link String} token of the server
+     * @throws IOException if the token file cannot be read, such as when no server listens on the port or the server
+     *                     is run by another user
+     */
+    public static String readToken(int port) throws IOException {
+        Path tokenFile = ConversionServer.getTokenFile(port);
+        try {
+            return new String(Files.readAllBytes(tokenFile), StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            throw new IOException(String.format("Unable to read the token file[%s] of the conversion server on port "
+                    + "%d.", tokenFile, port), e);
+        }
+    }
+
+    /**
+     * Returns the delay before retrying a conversion, from the {@code Retry-After} header of the response
+     *
+     * @param retryAfter the value of the {@code Retry-After} header, in seconds, or null if absent
+     * @return the delay in seconds
+     */
+    private static long getRetryDelay(String retryAfter) {
+        if (retryAfter != null) {
+            try {
+                long delay = Long.parseLong(retryAfter.trim());
+                if (delay >= 0) {
+                    return delay;
+                }
+            } catch (NumberFormatException e) {
+                // the header holds an HTTP date rather than a number of seconds
+                LOGGER.fine(String.format("Ignoring the Retry-After header[%s].", retryAfter));
+            }
+        }
+        return Constants.DEFAULT_SERVER_RETRY_DELAY_SECONDS;
+    }
+
+    /**
+     * Reads the input stream to its end and closes it
+     *
+     * @param inputStream the {@link InputStream} to be read
+     * @return the UTF-8 content of the input stream
+     * @throws IOException if an I/O error occurs when reading
+     */
+    private static String read(InputStream inputStream) throws IOException {
+        try (InputStream closedInputStream = inputStream) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = closedInputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.components;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.RunReport;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which serves JAR to OSGi bundle conversion requests on a loopback HTTP endpoint, so that the
+ * conversions of many build steps run in a single warm JVM rather than each paying the JVM startup and a cold JIT
+ * <p>
+ * A conversion request is a {@code POST} to {@value Constants#SERVER_CONVERT_PATH} whose body holds the command line
+ * arguments of the conversion, one per line, and whose response is the JSON report of the conversion. At most the
+ * specified number of requests are converted at a time, and a request beyond the limit is rejected with the status
+ * 503 and a {@code Retry-After} header, upon which the {@link ConversionClient} retries it. The
+ * {@value Constants#SERVER_HEALTH_PATH} and {@value Constants#SERVER_METRICS_PATH} endpoints report the state of the
+ * server and the counters of the requests and conversions it served, in response to a {@code GET}.
+ * <p>
+ * Any local process may connect to the loopback address, hence every request is to carry the random token of the
+ * server in its {@value Constants#SERVER_TOKEN_HEADER} header. The token is written to a token file readable by the
+ * user running the server alone, from which the {@link ConversionClient} reads it. A request carrying an
+ * {@code Origin} header, as sent by a web browser on behalf of a web page, is rejected.
+ */
+public class ConversionServer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ConversionServer.class.getName());
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_BAD_REQUEST = 400;
+    private static final int STATUS_FORBIDDEN = 403;
+    private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+    private static final int STATUS_CONFLICT = 409;
+    private static final int STATUS_INTERNAL_SERVER_ERROR = 500;
+    private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+
+    private static final int TOKEN_LENGTH = 32;
+
+    private final HttpServer server;
+    private final byte[] token;
+    private Path tokenFile;
+    private final ExecutorService executor;
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong[] jarFiles = new AtomicLong[ConversionResult.Status.values().length];
+
+    /**
+     * Constructs a conversion server bound to the loopback address
+     *
+     * @param port                  the port on which to listen, or zero for an ephemeral port
+     * @param maxConcurrentRequests the maximum number of requests to be converted at a time
+     * @throws IOException if the server cannot be bound to the port
+     */
+    public ConversionServer(int port, int maxConcurrentRequests) throws IOException {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("The maximum number of concurrent requests must be positive.");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.permits = new Semaphore(maxConcurrentRequests);
+        byte[] randomBytes = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(randomBytes);
+        this.token = Base64.getUrlEncoder().withoutPadding().encode(randomBytes);
+        for (int index = 0; index < jarFiles.length; index++) {
+            jarFiles[index] = new AtomicLong();
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // requests beyond the limit are accepted by a thread of their own, only to be rejected at once
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext(Constants.SERVER_CONVERT_PATH, this::handleConvert);
+        server.createContext(Constants.SERVER_HEALTH_PATH, this::handleHealth);
+        server.createContext(Constants.SERVER_METRICS_PATH, this::handleMetrics);
+    }
+
+    /**
+     * Writes the token file of the server and starts serving the requests
+     *
+     * @throws IOException if an I/O error occurs when writing the token file
+     */
+    public void start() throws IOException {
+        tokenFile = writeTokenFile(getTokenFile(getPort()), token);
+        server.start();
+        LOGGER.info(String.format("Started the conversion server on[%s], converting at most %d request(s) at a "
+                + "time.", server.getAddress(), maxConcurrentRequests));
+    }
+
+    /**
+     * Returns the port on which the server listens
+     *
+     * @return the port on which the server listens
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the token file of the server listening on the specified port, which is placed in the directory set by
+     * the {@value Constants#SERVER_TOKEN_DIRECTORY_PROPERTY} system property, or else the home directory of the user
+     *
+     * @param port the port on which the server listens
+     * @return the {@link Path} of the token file
+     */
+    public static Path getTokenFile(int port) {
+        String directory = System.getProperty(Constants.SERVER_TOKEN_DIRECTORY_PROPERTY,
+                System.getProperty("user.home"));
+        return Paths.get(directory, Constants.SERVER_TOKEN_FILE_PREFIX + port + Constants.SERVER_TOKEN_FILE_SUFFIX);
+    }
+
+    /**
+     * Stops the server, without waiting for the requests being converted, and deletes its token file
+     */
+    @Override public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        if (tokenFile != null) {
+            try {
+                Files.deleteIfExists(tokenFile);
+            } catch (IOException e) {
+                LOGGER.fine(String.format("Failed to delete the token file[%s]: %s", tokenFile, e.getMessage()));
+            }
+        }
+        LOGGER.info("Stopped the conversion server.");
+    }
+
+    /**
+     * Writes the token to a new token file which only its owner may read and write, replacing the token file left
+     * behind by a server which did not stop cleanly
+     *
+     * @param tokenFile the {@link Path} of the token file
+     * @param token     the token of the server
+     * @return the {@link Path} of the token file
+     * @throws IOException if an I/O error occurs when writing the token file
+     */
+    private static Path writeTokenFile(Path tokenFile, byte[] token) throws IOException {
+        Path directory = tokenFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Files.deleteIfExists(tokenFile);
+        if (Files.getFileStore(directory).supportsFileAttributeView("posix")) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tokenFile);
+            File file = tokenFile.toFile();
+            if (!(file.setReadable(false, false) && file.setReadable(true, true) && file.setWritable(false, false)
+                    && file.setWritable(true, true))) {
+                LOGGER.info(String.format("Failed to restrict the access to the token file[%s] to its owner.",
+                        tokenFile));
+            }
+        }
+        Files.write(tokenFile, token);
+        return tokenFile;
+    }
+
+    /**
+     * Rejects the request, unless it carries the token of the server and no {@code Origin} header, and is of the
+     * specified method
+     *
+     * @param exchange the {@link HttpExchange} of the request
+     * @param method   the HTTP method supported by the endpoint
+     * @return true if the request was rejected, else false
+     * @throws IOException if an I/O error occurs when writing the response
+     */
+    private boolean reject(HttpExchange exchange, String method) throws IOException {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, STATUS_FORBIDDEN, TEXT_CONTENT_TYPE, "Requests of web pages are not supported.\n");
+            return true;
+        }
+        String requestToken = exchange.getRequestHeaders().getFirst(Constants.SERVER_TOKEN_HEADER);
+        // the tokens are compared in constant time, so that the time of the comparison does not reveal the token
+        if ((requestToken == null) || !(MessageDigest.isEqual(token,
+                requestToken.getBytes(StandardCharsets.US_ASCII)))) {
+            respond(exchange, STATUS_FORBIDDEN, TEXT_CONTENT_TYPE, String.format("The request does not carry the "
+                    + "token of the server, as read from its token file.%n"));
+            return true;
+        }
+        if (!method.equals(exchange.getRequestMethod())) {
+            respond(exchange, STATUS_METHOD_NOT_ALLOWED, TEXT_CONTENT_TYPE, String.format("Only %s is supported.%n",
+                    method));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Converts the JAR files specified by the arguments in the request body, one per line
+     *
+     * @param exchange the {@link HttpExchange} of the request
+     * @throws IOException if an I/O error occurs when reading the request or writing the response
+     */
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        if (reject(exchange, "POST")) {
+            return;
+        }
+        requests.incrementAndGet();
+        if (!permits.tryAcquire()) {
+            rejectedRequests.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(
+                    Constants.DEFAULT_SERVER_RETRY_DELAY_SECONDS));
+            respond(exchange, STATUS_SERVICE_UNAVAILABLE, TEXT_CONTENT_TYPE, String.format(
+                    "The server is converting the maximum of %d request(s).%n", maxConcurrentRequests));
+            return;
+        }
+        int status;
+        String contentType = TEXT_CONTENT_TYPE;
+        String body;
+        try {
+            List<String> arguments = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        arguments.add(line);
+                    }
+                }
+            }
+            LOGGER.fine(String.format("Converting the request%s", arguments));
+
+            RunReport report = BundleGenerator.convertRequest(arguments);
+            for (ConversionResult result : report.getResults()) {
+                jarFiles[result.getStatus().ordinal()].incrementAndGet();
+            }
+            StringWriter response = new StringWriter();
+            report.writeJson(response);
+            status = STATUS_OK;
+            contentType = JSON_CONTENT_TYPE;
+            body = response.toString();
+        } catch (IllegalArgumentException e) {
+            failedRequests.incrementAndGet();
+            status = STATUS_BAD_REQUEST;
+            body = e.getMessage() + "\n";
+        } catch (IllegalStateException e) {
+            failedRequests.incrementAndGet();
+            status = STATUS_CONFLICT;
+            body = e.getMessage() + "\n";
+        } catch (IOException | JarToBundleConverterException | InterruptedException | RuntimeException e) {
+            failedRequests.incrementAndGet();
+            LOGGER.info("An error has occurred during the conversion of a request.");
+            LOGGER.fine(String.valueOf(e));
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            status = STATUS_INTERNAL_SERVER_ERROR;
+            body = String.format("An error has occurred during the conversion: %s%n", e);
+        } finally {
+            // releases the permit before responding, so that a client which sends its next request as soon as it
+            // reads the response is not rejected
+            permits.release();
+        }
+        respond(exchange, status, contentType, body);
+    }
+
+    /**
+     * Reports that the server is up, along with the number of requests being converted
+     *
+     * @param exchange the {@link HttpExchange} of the request
+     * @throws IOException if an I/O error occurs when writing the response
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (reject(exchange, "GET")) {
+            return;
+        }
+        respond(exchange, STATUS_OK, JSON_CONTENT_TYPE, String.format(Locale.ROOT,
+                "{\"status\": \"UP\", \"activeRequests\": %d, \"maxConcurrentRequests\": %d}%n",
+                (maxConcurrentRequests - permits.availablePermits()), maxConcurrentRequests));
+    }
+
+    /**
+     * Reports the counters of the requests and the conversions served, and the memory usage of the JVM
+     *
+     * @param exchange the {@link HttpExchange} of the request
+     * @throws IOException if an I/O error occurs when writing the response
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (reject(exchange, "GET")) {
+            return;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        StringBuilder metrics = new StringBuilder("{");
+        metrics.append(String.format(Locale.ROOT, "\"uptimeMillis\": %d, \"activeRequests\": %d, "
+                        + "\"maxConcurrentRequests\": %d, \"requests\": %d, \"rejectedRequests\": %d, "
+                        + "\"failedRequests\": %d", (System.currentTimeMillis() - startTime),
+                (maxConcurrentRequests - permits.availablePermits()), maxConcurrentRequests, requests.get(),
+                rejectedRequests.get(), failedRequests.get()));
+        for (ConversionResult.Status status : ConversionResult.Status.values()) {
+            metrics.append(String.format(Locale.ROOT, ", \"%sJarFiles\": %d", status.name().toLowerCase(Locale.ROOT),
+                    jarFiles[status.ordinal()].get()));
+        }
+        metrics.append(String.format(Locale.ROOT, ", \"heapUsedBytes\": %d, \"heapMaxBytes\": %d}%n",
+                (runtime.totalMemory() - runtime.freeMemory()), runtime.maxMemory()));
+        respond(exchange, STATUS_OK, JSON_CONTENT_TYPE, metrics.toString());
+    }
+
+    /**
+     * Writes the response and closes the exchange
+     *
+     * @param exchange    the {@link HttpExchange} of the request
+     * @param status      the HTTP status code
+     * @param contentType the content type of the body
+     * @param body        the body of the response
+     * @throws IOException if an I/O error occurs when writing the response
+     */
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content);
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.components;
+
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which watches a source directory and converts the JAR files created or modified within it to OSGi
+ * bundles, as they arrive
+ * <p>
+ * A JAR file is converted only after no event has been received for it during the quiet period and its size has
+ * remained unchanged, so that partially written JAR files are not converted. The OSGi bundles of deleted JAR files
+ * are removed from the target directory.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DirectoryWatcher.class.getName());
+
+    private final Path sourceDirectory;
+    private final Path targetDirectory;
+    private final String extensionPrefix;
+    private final long quietPeriod;
+    private final WatchService watchService;
+    private boolean metadataNaming;
+    private boolean flatten;
+    private BundleCompression compression = BundleCompression.getDefault();
+    private final Map<Path, PendingJarFile> pendingJarFiles = new HashMap<>();
+    /**
+     * the OSGi bundles created for the JAR files, as the bundle name of a deleted JAR file cannot be derived from its
+     * metadata
+     */
+    private final Map<Path, Path> bundles = new HashMap<>();
+
+    /**
+     * a Java class which holds the state of a JAR file awaiting conversion
+     */
+    private static class PendingJarFile {
+        private long lastEventTime;
+        private long size;
+
+        private PendingJarFile(long lastEventTime, long size) {
+            this.lastEventTime = lastEventTime;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Constructs a new directory watcher and starts watching the source directory for events
+     * <p>
+     * Events are recorded from construction onwards, hence JAR files which arrive while the existing content of the
+     * source directory is being converted are not missed.
+     *
+     * @param sourceDirectory the directory to be watched
+     * @param targetDirectory the directory into which the created OSGi bundles need to be placed
+     * @param extensionPrefix prefix, if any, for the bundles
+     * @param quietPeriod     the time, in milliseconds, for which a JAR file must remain unchanged prior to conversion
+     * @throws IOException if an I/O error occurs when registering the source directory
+     */
+    public DirectoryWatcher(Path sourceDirectory, Path targetDirectory, String extensionPrefix, long quietPeriod)
+            throws IOException {
+        this.sourceDirectory = sourceDirectory;
+        this.targetDirectory = targetDirectory;
+        this.extensionPrefix = (extensionPrefix != null) ? extensionPrefix : "";
+        this.quietPeriod = quietPeriod;
+        this.watchService = sourceDirectory.getFileSystem().newWatchService();
+        sourceDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Sets whether the OSGi bundles are to be named and versioned after the Maven coordinates and manifest of their
+     * JAR files rather than after the JAR file names
+     *
+     * @param metadataNaming true if the metadata of the JAR files is to be used, else false
+     */
+    public void setMetadataNaming(boolean metadataNaming) {
+        this.metadataNaming = metadataNaming;
+    }
+
+    /**
+     * Sets whether the entries of each JAR file are to be copied to the root of its OSGi bundle rather than the JAR
+     * file being embedded in it
+     *
+     * @param flatten true if the OSGi bundles are to be flattened, else false
+     */
+    public void setFlattened(boolean flatten) {
+        this.flatten = flatten;
+    }
+
+    /**
+     * Sets how the entries of the OSGi bundles are compressed, which defaults to the settings of the compression
+     * system properties
+     *
+     * @param compression the {@link BundleCompression} settings of the OSGi bundles
+     */
+    public void setCompression(BundleCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Processes the events of the source directory until the watcher is closed or the calling thread is interrupted
+     *
+     * @throws IOException          if an I/O error occurs when listing the source directory
+     * @throws InterruptedException if interrupted while waiting for events
+     */
+    public void run() throws IOException, InterruptedException {
+        LOGGER.info(String.format("Watching the source directory[%s] for JAR files.", sourceDirectory));
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey watchKey = watchService.poll(Math.max(quietPeriod / 2, 1), TimeUnit.MILLISECONDS);
+                if (watchKey != null) {
+                    processEvents(watchKey);
+                    if (!watchKey.reset()) {
+                        LOGGER.info(String.format("The source directory[%s] is no longer accessible.",
+                                sourceDirectory));
+                        return;
+                    }
+                }
+                convertSettledJarFiles();
+            }
+            throw new InterruptedException();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.fine(String.format("Stopped watching the source directory[%s].", sourceDirectory));
+        }
+    }
+
+    /**
+     * Stops watching the source directory
+     *
+     * @throws IOException if an I/O error occurs when closing the watch service
+     */
+    @Override public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Records the JAR file events of the {@code WatchKey}
+     *
+     * @param watchKey the signalled {@link WatchKey}
+     * @throws IOException if an I/O error occurs when listing the source directory
+     */
+    private void processEvents(WatchKey watchKey) throws IOException {
+        long now = System.currentTimeMillis();
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events may have been lost, hence every JAR file of the source directory is re-examined
+                for (Path aDirectoryItem : BundleGeneratorUtils.listFiles(sourceDirectory)) {
+                    if (isJarFile(aDirectoryItem)) {
+                        pendingJarFiles.put(aDirectoryItem, new PendingJarFile(now, -1));
+                    }
+                }
+                continue;
+            }
+
+            Path jarFile = sourceDirectory.resolve((Path) event.context());
+            if (!isJarFile(jarFile)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                pendingJarFiles.remove(jarFile);
+                removeBundle(jarFile);
+            } else {
+                PendingJarFile pendingJarFile = pendingJarFiles.get(jarFile);
+                if (pendingJarFile == null) {
+                    pendingJarFiles.put(jarFile, new PendingJarFile(now, -1));
+                } else {
+                    pendingJarFile.lastEventTime = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the pending JAR files which have remained unchanged during the quiet period
+     */
+    private void convertSettledJarFiles() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, PendingJarFile>> iterator = pendingJarFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingJarFile> entry = iterator.next();
+            Path jarFile = entry.getKey();
+            PendingJarFile pendingJarFile = entry.getValue();
+            if ((now - pendingJarFile.lastEventTime) < quietPeriod) {
+                continue;
+            }
+
+            long size;
+            try {
+                size = Files.size(jarFile);
+            } catch (IOException e) {
+                // the JAR file was removed or replaced, and a subsequent event is processed accordingly
+                iterator.remove();
+                continue;
+            }
+            if (size != pendingJarFile.size) {
+                // the JAR file may still be written without emitting events, hence waits for another quiet period
+                pendingJarFile.size = size;
+                pendingJarFile.lastEventTime = now;
+                continue;
+            }
+
+            iterator.remove();
+            try {
+                ConversionResult result = BundleGeneratorUtils
+                        .convertFromJarToBundle(jarFile, targetDirectory, new Manifest(), extensionPrefix, true,
+                                metadataNaming, flatten, compression);
+                LOGGER.info(result.toString());
+                if (result.getBundle() != null) {
+                    bundles.put(jarFile, result.getBundle());
+                }
+            } catch (IOException | JarToBundleConverterException | RuntimeException e) {
+                LOGGER.info(String.format("Failed to convert JAR file[%s]: %s", jarFile, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Removes the OSGi bundle of the deleted JAR file, if any
+     * <p>
+     * The OSGi bundle of a JAR file which was not converted by this watcher is found by the name of the JAR file,
+     * unless metadata naming is enabled, in which case the name of the OSGi bundle depends on the content of the
+     * deleted JAR file, and the OSGi bundle is left in place rather than risking the removal of that of another JAR
+     * file.
+     *
+     * @param jarFile the deleted JAR file
+     */
+    private void removeBundle(Path jarFile) {
+        Path jarFileName = jarFile.getFileName();
+        Path bundle = bundles.remove(jarFile);
+        if ((bundle == null) && (jarFileName != null)) {
+            if (metadataNaming) {
+                LOGGER.info(String.format("The OSGi bundle of the deleted JAR file[%s] is unknown, as it is named "
+                        + "after the metadata of the JAR file, hence it is not removed.", jarFile));
+                return;
+            }
+            bundle = targetDirectory
+                    .resolve(BundleGeneratorUtils.getBundleFileName(jarFileName.toString(), extensionPrefix));
+        }
+        if (bundle != null) {
+            try {
+                if (Files.deleteIfExists(bundle)) {
+                    LOGGER.info(String.format("Removed the OSGi bundle[%s] of the deleted JAR file[%s].", bundle,
+                            jarFile));
+                }
+            } catch (IOException e) {
+                LOGGER.info(String.format("Failed to remove the OSGi bundle[%s]: %s", bundle, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the {@code Path} refers to a JAR file, by its name
+     *
+     * @param path the {@link Path} to be checked
+     * @return true if the {@link Path} refers to a JAR file, else false
+     */
+    private static boolean isJarFile(Path path) {
+        return path.toString().endsWith(".jar");
+    }
+
+}
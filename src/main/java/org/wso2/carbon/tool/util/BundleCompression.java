@@ -0,0 +1,149 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.util.zip.Deflater;
+
+/**
+ * a Java class which holds the settings of how the entries of the OSGi bundles are compressed
+ * <p>
+ * The embedded JAR file, and any nested JAR file, is already compressed, hence deflating it again costs CPU time for
+ * almost no reduction in size. It may instead be stored, with its CRC computed in a separate pass over the JAR file,
+ * which is far cheaper than deflating it. The other entries are deflated at the configured level, and deflated entries
+ * of at least the parallel deflate threshold size are deflated in parallel. Instances of this class are immutable,
+ * and are held by each conversion.
+ */
+public class BundleCompression {
+
+    private final boolean embeddedJarStored;
+    private final int level;
+    private final long parallelDeflateThreshold;
+
+    /**
+     * Constructs new compression settings
+     *
+     * @param embeddedJarStored        true if the embedded JAR file, and any nested JAR file, is to be stored rather
+     *                                 than deflated, else false
+     * @param level                    the level at which the deflated entries are deflated, from 0 to 9, or -1 for
+     *                                 the default level
+     * @param parallelDeflateThreshold the size from which deflated entries are deflated in parallel, in bytes, or
+     *                                 zero if no entry is to be deflated in parallel
+     */
+    public BundleCompression(boolean embeddedJarStored, int level, long parallelDeflateThreshold) {
+        if (!isValidLevel(level)) {
+            throw new IllegalArgumentException("The deflate level must be from 0 to 9, or -1 for the default level.");
+        }
+        if (parallelDeflateThreshold < 0) {
+            throw new IllegalArgumentException("The parallel deflate threshold must not be negative.");
+        }
+        this.embeddedJarStored = embeddedJarStored;
+        this.level = level;
+        this.parallelDeflateThreshold = parallelDeflateThreshold;
+    }
+
+    /**
+     * Returns the default compression settings, as set by the compression system properties, if any
+     *
+     * @return the default {@link BundleCompression} settings
+     * @throws IllegalArgumentException if the value of a compression system property is invalid
+     */
+    public static BundleCompression getDefault() {
+        String levelValue = System.getProperty(Constants.DEFLATE_LEVEL_PROPERTY);
+        int level = Deflater.DEFAULT_COMPRESSION;
+        if (levelValue != null) {
+            try {
+                level = Integer.parseInt(levelValue.trim());
+            } catch (NumberFormatException e) {
+                level = Integer.MIN_VALUE;
+            }
+            if (!isValidLevel(level)) {
+                throw new IllegalArgumentException(String.format("Invalid value[%s] of system property[%s], the "
+                        + "deflate level must be from 0 to 9, or -1 for the default level.", levelValue,
+                        Constants.DEFLATE_LEVEL_PROPERTY));
+            }
+        }
+        long threshold = Long.getLong(Constants.PARALLEL_DEFLATE_THRESHOLD_PROPERTY,
+                Constants.DEFAULT_PARALLEL_DEFLATE_THRESHOLD);
+        if (threshold < 0) {
+            throw new IllegalArgumentException(String.format("Invalid value[%d] of system property[%s], the parallel "
+                    + "deflate threshold must not be negative.", threshold,
+                    Constants.PARALLEL_DEFLATE_THRESHOLD_PROPERTY));
+        }
+        return new BundleCompression(Boolean.getBoolean(Constants.STORE_EMBEDDED_JAR_PROPERTY), level, threshold);
+    }
+
+    /**
+     * Returns true if the embedded JAR file, and any nested JAR file, is stored rather than deflated
+     *
+     * @return true if the embedded JAR files are stored, else false
+     */
+    public boolean isEmbeddedJarStored() {
+        return embeddedJarStored;
+    }
+
+    /**
+     * Returns the level at which the deflated entries are deflated
+     *
+     * @return the deflate level, from 0 to 9, or -1 for the default level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the size from which deflated entries are deflated in parallel
+     *
+     * @return the size from which deflated entries are deflated in parallel, in bytes, or zero if no entry is
+     * deflated in parallel
+     */
+    public long getParallelDeflateThreshold() {
+        return parallelDeflateThreshold;
+    }
+
+    /**
+     * Returns true if a deflated entry of the specified size is to be deflated in parallel
+     *
+     * @param size the size of the entry, in bytes
+     * @return true if the entry is to be deflated in parallel, else false
+     */
+    public boolean isParallel(long size) {
+        return (parallelDeflateThreshold > 0) && (size >= parallelDeflateThreshold);
+    }
+
+    /**
+     * Returns a {@code String} representation of the settings which affect the content of the generated bundles
+     *
+     * @return a {@link String} representation of the compression settings
+     */
+    public String getSettings() {
+        // deflating in parallel produces a different, but equally valid, deflate stream
+        return String.format("stored=%s;level=%d;parallel=%d", embeddedJarStored, level, parallelDeflateThreshold);
+    }
+
+    /**
+     * Returns true if the deflate level is valid
+     *
+     * @param level the deflate level
+     * @return true if the level is from 0 to 9, or -1 for the default level, else false
+     */
+    private static boolean isValidLevel(int level) {
+        return (level >= Deflater.DEFAULT_COMPRESSION) && (level <= Deflater.BEST_COMPRESSION);
+    }
+
+}
@@ -21,9 +21,7 @@ package org.wso2.carbon.tool.util;
 import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.URI;
-import java.nio.charset.Charset;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -37,31 +35,45 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.logging.Logger;
+import java.util.zip.ZipFile;
 
 /**
  * a Java class which contains utility methods utilized during the process of
  * converting a JAR file to an OSGi bundle
+ * <p>
+ * By default, the symbolic name and file name of an OSGi bundle are derived from the JAR file name and the bundle is
+ * of the requested version. If metadata naming is enabled, the symbolic name and version declared by the
+ * {@link JarMetadata} of the JAR file are used instead, where declared.
  */
 public class BundleGeneratorUtils {
     private static final Logger LOGGER = Logger.getLogger(BundleGeneratorUtils.class.getName());
-    private static final Path JAR_TO_BUNDLE_DIRECTORY = Paths.get("jarsToBundles");
+    /**
+     * the OSGi bundles which are currently being created, used to prevent concurrent conversions from
+     * writing to the same bundle
+     */
+    private static final Set<Path> BUNDLES_IN_PROGRESS = ConcurrentHashMap.newKeySet();
 
     /**
-     * if exists, deletes the temporary directory which holds the unarchived bundle directories during the
-     * conversion from JAR files to OSGi bundles
+     * Converts a specified JAR file to an OSGi bundle at the specified destination
+     *
+     * @param jarFile         the JAR file to be bundled
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param manifest        the OSGi bundle manifest file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @return the {@link ConversionResult} of the conversion
+     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
+     * @throws JarToBundleConverterException if the {@link Path} representing the JAR file has no elements or if an
+     *                                       error occurs when generating the bundle
      */
-    static {
-        try {
-            if (Files.exists(JAR_TO_BUNDLE_DIRECTORY)) {
-                delete(JAR_TO_BUNDLE_DIRECTORY);
-            }
-        } catch (IOException e) {
-            String message = String.format("Failed to delete %s", JAR_TO_BUNDLE_DIRECTORY);
-            throw new RuntimeException(message);
-        }
+    public static ConversionResult convertFromJarToBundle(Path jarFile, Path targetDirectory, Manifest manifest,
+            String extensionPrefix) throws IOException, JarToBundleConverterException {
+        return convertFromJarToBundle(jarFile, targetDirectory, manifest, extensionPrefix, false);
     }
 
     /**
@@ -71,12 +83,89 @@ public class BundleGeneratorUtils {
      * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
      * @param manifest        the OSGi bundle manifest file
      * @param extensionPrefix prefix, if any, for the bundle
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @return the {@link ConversionResult} of the conversion
      * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
      * @throws JarToBundleConverterException if the {@link Path} representing the JAR file has no elements or if an
      *                                       error occurs when generating the bundle
      */
-    public static void convertFromJarToBundle(Path jarFile, Path targetDirectory, Manifest manifest,
-            String extensionPrefix) throws IOException, JarToBundleConverterException {
+    public static ConversionResult convertFromJarToBundle(Path jarFile, Path targetDirectory, Manifest manifest,
+            String extensionPrefix, boolean overwrite) throws IOException, JarToBundleConverterException {
+        return convertFromJarToBundle(jarFile, targetDirectory, manifest, extensionPrefix, overwrite, false);
+    }
+
+    /**
+     * Converts a specified JAR file to an OSGi bundle at the specified destination
+     *
+     * @param jarFile         the JAR file to be bundled
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param manifest        the OSGi bundle manifest file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @param metadataNaming  true if the OSGi bundle is to be named and versioned after the metadata of the JAR file,
+     *                        else false
+     * @return the {@link ConversionResult} of the conversion
+     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
+     * @throws JarToBundleConverterException if the {@link Path} representing the JAR file has no elements or if an
+     *                                       error occurs when generating the bundle
+     */
+    public static ConversionResult convertFromJarToBundle(Path jarFile, Path targetDirectory, Manifest manifest,
+            String extensionPrefix, boolean overwrite, boolean metadataNaming)
+            throws IOException, JarToBundleConverterException {
+        return convertFromJarToBundle(jarFile, targetDirectory, manifest, extensionPrefix, overwrite, metadataNaming,
+                false, BundleCompression.getDefault());
+    }
+
+    /**
+     * Converts a specified JAR file to an OSGi bundle at the specified destination
+     *
+     * @param jarFile         the JAR file to be bundled
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param manifest        the OSGi bundle manifest file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @param metadataNaming  true if the OSGi bundle is to be named and versioned after the metadata of the JAR file,
+     *                        else false
+     * @param flatten         true if the entries of the JAR file are to be copied to the root of the OSGi bundle
+     *                        rather than the JAR file being embedded in it, else false
+     * @param compression     the {@link BundleCompression} settings of the OSGi bundle
+     * @return the {@link ConversionResult} of the conversion
+     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
+     * @throws JarToBundleConverterException if the {@link Path} representing the JAR file has no elements or if an
+     *                                       error occurs when generating the bundle
+     */
+    public static ConversionResult convertFromJarToBundle(Path jarFile, Path targetDirectory, Manifest manifest,
+            String extensionPrefix, boolean overwrite, boolean metadataNaming, boolean flatten,
+            BundleCompression compression) throws IOException, JarToBundleConverterException {
+        return convertFromJarToBundle(jarFile, targetDirectory, manifest, extensionPrefix,
+                Constants.DEFAULT_BUNDLE_VERSION, overwrite, metadataNaming, flatten, compression, null);
+    }
+
+    /**
+     * Converts a specified JAR file to an OSGi bundle of the specified version at the specified destination
+     *
+     * @param jarFile         the JAR file to be bundled
+     * @param targetDirectory the directory into which the created OSGi bundle needs to be placed
+     * @param manifest        the OSGi bundle manifest file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @param bundleVersion   the OSGi bundle version, unless metadata naming is enabled and the JAR file declares its
+     *                        version
+     * @param overwrite       true if an existing OSGi bundle of the same name is to be replaced, else false
+     * @param metadataNaming  true if the OSGi bundle is to be named and versioned after the metadata of the JAR file,
+     *                        else false
+     * @param flatten         true if the entries of the JAR file are to be copied to the root of the OSGi bundle
+     *                        rather than the JAR file being embedded in it, else false
+     * @param compression     the {@link BundleCompression} settings of the OSGi bundle
+     * @param analysis        the {@link JarAnalysis} of the JAR file content, if already known, else {@code null}
+     * @return the {@link ConversionResult} of the conversion
+     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
+     * @throws JarToBundleConverterException if the {@link Path} representing the JAR file has no elements or if an
+     *                                       error occurs when generating the bundle
+     */
+    public static ConversionResult convertFromJarToBundle(Path jarFile, Path targetDirectory, Manifest manifest,
+            String extensionPrefix, String bundleVersion, boolean overwrite, boolean metadataNaming, boolean flatten,
+            BundleCompression compression, JarAnalysis analysis) throws IOException, JarToBundleConverterException {
+        long startTime = System.currentTimeMillis();
         // checks for validity of the arguments
         if (!Files.isDirectory(targetDirectory)) {
             String message = "Path target directory does not point to a directory.";
@@ -97,25 +186,35 @@ public class BundleGeneratorUtils {
                     manifest = new Manifest();
                 }
 
-                String exportedPackages = BundleGeneratorUtils
-                        .generateExportPackageList(BundleGeneratorUtils.listPackages(jarFile));
-                fileName = fileName.replaceAll("-", "_");
+                ConversionMetrics metrics = new ConversionMetrics();
+                if (analysis == null) {
+                    analysis = JarAnalysis.analyze(jarFile, metrics);
+                }
+                List<String> nestedJars = analysis.getNestedJars();
+                String exportedPackages = BundleGeneratorUtils.generateExportPackageList(analysis.getPackages());
+                String importedPackages = generateImportPackageList(analysis.getImportedPackages());
+                String bundleName = getBundleName(fileName, metadataNaming, analysis);
+                String pluginName = getBundleFileName(fileName, extensionPrefix, bundleVersion, metadataNaming,
+                        analysis);
+                bundleVersion = getBundleVersion(bundleVersion, metadataNaming, analysis);
 
-                fileName = fileName.substring(0, fileName.length() - 4);
-                String symbolicName = extensionPrefix + fileName;
-                String pluginName = extensionPrefix + fileName + "_1.0.0.jar";
+                String symbolicName = extensionPrefix + bundleName;
                 Path extensionBundle = Paths.get(targetDirectory.toString(), pluginName);
 
+                long stageStartTime = ConversionMetrics.now();
                 LOGGER.finest("Setting Manifest attributes.");
                 Attributes attributes = manifest.getMainAttributes();
                 attributes.putValue(Constants.MANIFEST_VERSION, "1.0");
                 attributes.putValue(Constants.BUNDLE_MANIFEST_VERSION, "2");
-                attributes.putValue(Constants.BUNDLE_NAME, fileName);
+                attributes.putValue(Constants.BUNDLE_NAME, bundleName);
                 attributes.putValue(Constants.BUNDLE_SYMBOLIC_NAME, symbolicName);
-                attributes.putValue(Constants.BUNDLE_VERSION, "1.0.0");
+                attributes.putValue(Constants.BUNDLE_VERSION, bundleVersion);
                 attributes.putValue(Constants.EXPORT_PACKAGE, exportedPackages);
-                attributes.putValue(Constants.BUNDLE_CLASSPATH, ".," + tempJarFilePathHolder.toString());
-                attributes.putValue(Constants.DYNAMIC_IMPORT_PACKAGE, "*");
+                attributes.putValue(Constants.BUNDLE_CLASSPATH, generateBundleClassPath(
+                        (flatten) ? null : tempJarFilePathHolder.toString(), nestedJars));
+                if (!importedPackages.isEmpty()) {
+                    attributes.putValue(Constants.IMPORT_PACKAGE, importedPackages);
+                }
                 LOGGER.finest(String.format("Finished setting Manifest attributes%n%s[%s], %s[%s], %s[%s]%n, %s[%s], "
                                 + "%s[%s], %s[%s], %s[%s], %s[%s]", Constants.MANIFEST_VERSION,
                         attributes.getValue(Constants.MANIFEST_VERSION), Constants.BUNDLE_MANIFEST_VERSION,
@@ -124,21 +223,40 @@ public class BundleGeneratorUtils {
                         attributes.getValue(Constants.BUNDLE_SYMBOLIC_NAME), Constants.BUNDLE_VERSION,
                         attributes.getValue(Constants.BUNDLE_VERSION), Constants.EXPORT_PACKAGE,
                         attributes.getValue(Constants.EXPORT_PACKAGE), Constants.BUNDLE_CLASSPATH,
-                        attributes.getValue(Constants.BUNDLE_CLASSPATH), Constants.DYNAMIC_IMPORT_PACKAGE,
-                        attributes.getValue(Constants.DYNAMIC_IMPORT_PACKAGE)));
-
-                if (!(Files.exists(extensionBundle))) {
-                    LOGGER.info(String.format("Creating the OSGi bundle for JAR file[%s]", jarFile.toString()));
-                    LOGGER.fine(String.format("Creating an OSGi bundle for JAR file[%s], at target directory[%s].",
-                            tempJarFilePathHolder.toString(), extensionBundle.toString()));
-                    BundleGeneratorUtils.createBundle(jarFile, extensionBundle, manifest);
-                    LOGGER.fine(String.format("Created an OSGi bundle for JAR file[%s], at target directory[%s].",
-                            tempJarFilePathHolder.toString(), extensionBundle.toString()));
-                    LOGGER.info(String.format("Created the OSGi bundle[%s] for JAR file[%s]", pluginName,
-                            jarFile.toString()));
-                } else {
-                    LOGGER.info(String.format("OSGi bundle[%s] already exists in the target directory.", pluginName));
+                        attributes.getValue(Constants.BUNDLE_CLASSPATH), Constants.IMPORT_PACKAGE,
+                        attributes.getValue(Constants.IMPORT_PACKAGE)));
+                metrics.record(ConversionMetrics.Stage.MANIFEST_BUILD, stageStartTime);
+
+                // claims the bundle so that no other concurrent conversion writes to the same bundle
+                Path claimedBundle = extensionBundle.toAbsolutePath().normalize();
+                if (!BUNDLES_IN_PROGRESS.add(claimedBundle)) {
+                    String message = String.format("OSGi bundle[%s] is being written by a concurrent conversion.",
+                            pluginName);
+                    LOGGER.info(message);
+                    return new ConversionResult(jarFile, extensionBundle, ConversionResult.Status.SKIPPED,
+                            (System.currentTimeMillis() - startTime), message, metrics);
                 }
+                try {
+                    if ((overwrite) || !(Files.exists(extensionBundle))) {
+                        LOGGER.info(String.format("Creating the OSGi bundle for JAR file[%s]", jarFile.toString()));
+                        LOGGER.fine(String.format("Creating an OSGi bundle for JAR file[%s], at target directory[%s].",
+                                tempJarFilePathHolder.toString(), extensionBundle.toString()));
+                        BundleWriter.write(jarFile, extensionBundle, manifest, nestedJars, flatten, compression,
+                                metrics);
+                        LOGGER.fine(String.format("Created an OSGi bundle for JAR file[%s], at target directory[%s].",
+                                tempJarFilePathHolder.toString(), extensionBundle.toString()));
+                        LOGGER.info(String.format("Created the OSGi bundle[%s] for JAR file[%s]", pluginName,
+                                jarFile.toString()));
+                        return new ConversionResult(jarFile, extensionBundle, ConversionResult.Status.CREATED,
+                                (System.currentTimeMillis() - startTime), null, metrics);
+                    }
+                } finally {
+                    BUNDLES_IN_PROGRESS.remove(claimedBundle);
+                }
+                String message = String.format("OSGi bundle[%s] already exists in the target directory.", pluginName);
+                LOGGER.info(message);
+                return new ConversionResult(jarFile, extensionBundle, ConversionResult.Status.SKIPPED,
+                        (System.currentTimeMillis() - startTime), message, metrics);
             } else {
                 String message = "Path jarFile does not point to a JAR file.";
                 throw new JarToBundleConverterException(message);
@@ -149,78 +267,157 @@ public class BundleGeneratorUtils {
         }
     }
 
+    /**
+     * Returns the file name of the OSGi bundle created for a JAR file of the specified name, without metadata naming
+     *
+     * @param jarFileName     the file name of the JAR file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @return the file name of the OSGi bundle created for a JAR file of the specified name
+     */
+    public static String getBundleFileName(String jarFileName, String extensionPrefix) {
+        return getBundleFileName(jarFileName, extensionPrefix, Constants.DEFAULT_BUNDLE_VERSION);
+    }
+
+    /**
+     * Returns the file name of the OSGi bundle of the specified version created for a JAR file of the specified name,
+     * without metadata naming
+     *
+     * @param jarFileName     the file name of the JAR file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @param bundleVersion   the OSGi bundle version
+     * @return the file name of the OSGi bundle created for a JAR file of the specified name
+     */
+    public static String getBundleFileName(String jarFileName, String extensionPrefix, String bundleVersion) {
+        return getBundleFileName(jarFileName, extensionPrefix, bundleVersion, false, null);
+    }
+
+    /**
+     * Returns the file name of the OSGi bundle of the specified version created for a JAR file of the specified name
+     * and content
+     *
+     * @param jarFileName     the file name of the JAR file
+     * @param extensionPrefix prefix, if any, for the bundle
+     * @param bundleVersion   the OSGi bundle version, unless metadata naming is enabled and the JAR file declares its
+     *                        version
+     * @param metadataNaming  true if the OSGi bundle is named and versioned after the metadata of the JAR file, else
+     *                        false
+     * @param analysis        the {@link JarAnalysis} of the JAR file content, which is required if metadata naming is
+     *                        enabled
+     * @return the file name of the OSGi bundle created for a JAR file of the specified name and content
+     */
+    public static String getBundleFileName(String jarFileName, String extensionPrefix, String bundleVersion,
+            boolean metadataNaming, JarAnalysis analysis) {
+        if ((metadataNaming) && (analysis == null)) {
+            // the name of a JAR file does not determine the name of its OSGi bundle
+            throw new IllegalArgumentException(String.format("The analysis of JAR file[%s] is required to name its "
+                    + "OSGi bundle after its metadata.", jarFileName));
+        }
+        return extensionPrefix + getBundleName(jarFileName, metadataNaming, analysis) + "_" + getBundleVersion(
+                bundleVersion, metadataNaming, analysis) + ".jar";
+    }
+
+    /**
+     * Returns the name of the OSGi bundle of a JAR file, without any prefix
+     *
+     * @param jarFileName    the file name of the JAR file
+     * @param metadataNaming true if the OSGi bundle is named after the metadata of the JAR file, else false
+     * @param analysis       the {@link JarAnalysis} of the JAR file content, or {@code null} if unknown
+     * @return the symbolic name declared by the JAR file if metadata naming is enabled, else the JAR file name without
+     * its extension and with '-' replaced by '_'
+     */
+    private static String getBundleName(String jarFileName, boolean metadataNaming, JarAnalysis analysis) {
+        if ((metadataNaming) && (analysis != null) && (analysis.getMetadata().getSymbolicName() != null)) {
+            return analysis.getMetadata().getSymbolicName();
+        }
+        String fileName = jarFileName.replaceAll("-", "_");
+        if (fileName.endsWith(".jar")) {
+            fileName = fileName.substring(0, fileName.length() - 4);
+        }
+        return fileName;
+    }
+
+    /**
+     * Returns the version of the OSGi bundle of a JAR file
+     *
+     * @param bundleVersion  the OSGi bundle version to be used unless declared by the JAR file
+     * @param metadataNaming true if the OSGi bundle is versioned after the metadata of the JAR file, else false
+     * @param analysis       the {@link JarAnalysis} of the JAR file content, or {@code null} if unknown
+     * @return the OSGi version declared by the JAR file if metadata naming is enabled, else the specified version
+     */
+    private static String getBundleVersion(String bundleVersion, boolean metadataNaming, JarAnalysis analysis) {
+        if ((metadataNaming) && (analysis != null) && (analysis.getMetadata().getVersion() != null)) {
+            return analysis.getMetadata().getVersion();
+        }
+        return bundleVersion;
+    }
+
     /**
      * Returns a comma separated {@code String} value of the concatenated package names from the {@code List<String>}
      *
      * @param packageNames a {@link List<String>} whose {@link String} package name values are to be concatenated
      * @return a comma separated {@link String} value of the concatenated package names from the {@code List<String>}
      */
-    private static String generateExportPackageList(List<String> packageNames) {
-        StringBuilder exportedPackages = new StringBuilder();
+    public static String generateExportPackageList(List<String> packageNames) {
         if (packageNames != null) {
-            for (int packageCount = 0; packageCount < packageNames.size(); packageCount++) {
-                exportedPackages.append(packageNames.get(packageCount));
-                if (packageCount != (packageNames.size() - 1)) {
-                    exportedPackages.append(",");
-                }
+            return String.join(",", packageNames);
+        }
+        return "";
+    }
+
+    /**
+     * Returns the {@code Bundle-ClassPath} header value of an OSGi bundle which embeds the JAR file and its nested JAR
+     * files
+     *
+     * @param jarFileName the file name of the embedded JAR file, or {@code null} if the entries of the JAR file are
+     *                    placed at the root of the bundle
+     * @param nestedJars  the entry names of the nested JAR files, which are placed at the same paths in the bundle
+     * @return the {@link String} value of the {@code Bundle-ClassPath} header
+     */
+    public static String generateBundleClassPath(String jarFileName, List<String> nestedJars) {
+        StringBuilder bundleClassPath = new StringBuilder(".");
+        if (jarFileName != null) {
+            bundleClassPath.append(',').append(jarFileName);
+        }
+        for (String nestedJar : nestedJars) {
+            bundleClassPath.append(',').append(nestedJar);
+        }
+        return bundleClassPath.toString();
+    }
+
+    /**
+     * Returns the {@code Import-Package} header value of the package names, each of which is imported optionally so
+     * that the bundle resolves even if a package referenced only by an unused code path is unavailable
+     *
+     * @param packageNames a {@link List<String>} of the package names to be imported
+     * @return a comma separated {@link String} value of the package imports, empty if there are none
+     */
+    public static String generateImportPackageList(List<String> packageNames) {
+        StringBuilder importedPackages = new StringBuilder();
+        for (String packageName : packageNames) {
+            if (importedPackages.length() > 0) {
+                importedPackages.append(',');
             }
+            importedPackages.append(packageName).append(Constants.OPTIONAL_RESOLUTION);
         }
-        return exportedPackages.toString();
+        return importedPackages.toString();
     }
 
     /**
      * Creates an OSGi bundle out of a JAR file
      *
      * @param jarFile    the JAR file to be bundled
-     * @param bundlePath the directory into which the created OSGi bundlePath needs to be placed into
-     * @param manifest   the OSGi bundlePath manifest file
-     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundlePath
-     * @throws JarToBundleConverterException if JAR file cannot be copied to the temporary directory or if an error
-     *                                       occurs when archiving the final bundlePath directory
+     * @param bundlePath the {@link Path} of the OSGi bundle to be created
+     * @param manifest   the OSGi bundle manifest file
+     * @throws IOException                   if an I/O error occurs while reading the JAR or generating the bundle
+     * @throws JarToBundleConverterException if the {@link Path} representing the JAR file has no elements or if the
+     *                                       manifest refers to null
      */
     public static void createBundle(Path jarFile, Path bundlePath, Manifest manifest)
             throws IOException, JarToBundleConverterException {
         Path tempJarFilePathHolder = jarFile.getFileName();
         if (tempJarFilePathHolder != null) {
             if (manifest != null) {
-                Path tempBundleHolder = Paths
-                        .get(JAR_TO_BUNDLE_DIRECTORY.toString(), ("" + System.currentTimeMillis() + Math.random()));
-                if (!Files.exists(tempBundleHolder)) {
-                    Files.createDirectories(tempBundleHolder);
-                }
-                Path manifestFile = Paths.get(tempBundleHolder.toString(), "MANIFEST.MF");
-                Path p2InfFile = Paths.get(tempBundleHolder.toString(), "p2.inf");
-                if (!Files.exists(p2InfFile)) {
-                    Files.createFile(p2InfFile);
-                }
-                try (OutputStream manifestOutputStream = Files.newOutputStream(manifestFile);
-                        OutputStream p2InfOutputStream = Files.newOutputStream(p2InfFile);
-                        FileSystem zipFileSystem = createZipFileSystem(bundlePath, true)) {
-                    manifest.write(manifestOutputStream);
-                    LOGGER.fine(String.format("Generated the OSGi bundlePath MANIFEST.MF for the JAR file[%s]",
-                            jarFile.toString()));
-                    p2InfOutputStream.write("instructions.configure=markStarted(started:true);"
-                            .getBytes(Charset.forName("UTF-8")));
-                    p2InfOutputStream.flush();
-                    LOGGER.fine(String.format("Generated the OSGi bundlePath p2.inf for the JAR file[%s]",
-                            jarFile.toString()));
-
-                    Path manifestFolderPath = zipFileSystem.getPath("META-INF");
-                    if (!Files.exists(manifestFolderPath)) {
-                        Files.createDirectories(manifestFolderPath);
-                    }
-                    Path manifestPathInBundle = zipFileSystem.getPath("META-INF", "MANIFEST.MF");
-                    Path p2InfPathInBundle = zipFileSystem.getPath("META-INF", "p2.inf");
-                    Files.copy(jarFile, zipFileSystem.getPath(tempJarFilePathHolder.toString()));
-                    Files.copy(manifestFile, manifestPathInBundle);
-                    Files.copy(p2InfFile, p2InfPathInBundle);
-
-                    // deletes the temporary holder of unarchived OSGi bundle
-                    /*Path tempBundleHolderParent = tempBundleHolder.getParent();
-                    if (tempBundleHolderParent != null) {
-                        delete(tempBundleHolderParent);
-                    }*/
-                }
+                BundleWriter.write(jarFile, bundlePath, manifest);
             } else {
                 String message = "Manifest cannot refer to null.";
                 throw new JarToBundleConverterException(message);
@@ -267,38 +464,117 @@ public class BundleGeneratorUtils {
     }
 
     /**
-     * Returns a {@code List} of {@code String} Java package names within the JAR file
+     * Returns a {@code List} of {@code String} Java package names within the JAR file and its nested JAR files, in
+     * lexicographical order
+     * <p>
+     * The entry names are read directly from the central directory of the JAR file, and streamed out of its nested
+     * JAR files.
      *
      * @param jarFile the JAR file of which the package name list is to be returned
-     * @return a {@link List} of {@link String} Java package names within the JAR file
+     * @return a {@link List} of {@link String} Java package names within the JAR file, in lexicographical order
      * @throws IOException                   if an I/O error occurs
-     * @throws JarToBundleConverterException if an error occurs when retrieving child content from the {@code jarFile}
+     * @throws JarToBundleConverterException if a non-existent {@link Path} instance or a {@link Path} instance of
+     *                                       invalid file format is given
      */
     public static List<String> listPackages(Path jarFile) throws IOException, JarToBundleConverterException {
-        List<String> exportedPackagesList = new ArrayList<>();
-        List<Path> content = BundleGeneratorUtils.listZipFileContent(jarFile);
-        content.forEach(zipChild -> {
-            String path = zipChild.toString();
-            if (!path.endsWith("/") && path.endsWith(".class")) {
-                //This is package that contains classes. Thus, exportedPackagesList
-                int index = path.lastIndexOf('/');
-                if (index != -1) {
-                    path = path.substring(1, index);
-                    path = path.replaceAll("/", ".");
-                    if (!exportedPackagesList.contains(path)) {
-                        exportedPackagesList.add(path);
+        if (!Files.exists(jarFile)) {
+            String message = "Path represented by the jarFile does not exist.";
+            throw new JarToBundleConverterException(message);
+        }
+        Path jarFileName = jarFile.getFileName();
+        if ((jarFileName == null) || (Files.isDirectory(jarFile)) || !(jarFileName.toString().endsWith(".zip")
+                || jarFileName.toString().endsWith(".jar"))) {
+            String message = "Path jarFile may not refer to a .zip or .jar file.";
+            throw new JarToBundleConverterException(message);
+        }
+
+        List<String> exportedPackagesList = indexPackages(jarFile, new ArrayList<>(), new ConversionMetrics())
+                .getPackages();
+
+        LOGGER.fine(String.format("Returning a List<String> of packages from the JAR file[%s].", jarFile.toString()));
+        return exportedPackagesList;
+    }
+
+    /**
+     * Returns the {@code PackageIndex} of the Java packages within the JAR file and its nested JAR files, recording
+     * the number of entries and packages and the bytes read
+     * <p>
+     * The entries of the JAR file are read from its central directory, while the entries of its nested JAR files are
+     * streamed out of the JAR file.
+     *
+     * @param jarFile    the JAR file whose packages are to be indexed
+     * @param nestedJars the {@link List} to which the entry names of the nested JAR files are to be added
+     * @param metrics    the {@link ConversionMetrics} into which the counters are to be recorded
+     * @return the {@link PackageIndex} of the Java packages within the JAR file and its nested JAR files
+     * @throws IOException if an I/O error occurs
+     */
+    static PackageIndex indexPackages(Path jarFile, List<String> nestedJars, ConversionMetrics metrics)
+            throws IOException {
+        return indexPackages(jarFile, nestedJars, null, metrics);
+    }
+
+    /**
+     * Returns the {@code PackageIndex} of the Java packages within the JAR file and its nested JAR files, recording
+     * the number of entries and packages and the bytes read, and collects the metadata entries of the JAR file
+     * <p>
+     * The metadata entries are read through the same file channel as the central directory of the JAR file. A nested
+     * JAR file of the name of the JAR file itself cannot be placed at the path of the embedded JAR file, hence it is
+     * neither listed nor indexed.
+     *
+     * @param jarFile           the JAR file whose packages are to be indexed
+     * @param nestedJars        the {@link List} to which the entry names of the nested JAR files are to be added
+     * @param metadataCollector the {@link JarMetadata.Collector} to which the metadata entries are to be added, or
+     *                          {@code null} if the metadata is not required
+     * @param metrics           the {@link ConversionMetrics} into which the counters are to be recorded
+     * @return the {@link PackageIndex} of the Java packages within the JAR file and its nested JAR files
+     * @throws IOException if an I/O error occurs
+     */
+    static PackageIndex indexPackages(Path jarFile, List<String> nestedJars, JarMetadata.Collector metadataCollector,
+            ConversionMetrics metrics) throws IOException {
+        PackageIndex packageIndex = new PackageIndex();
+        Path jarFileName = jarFile.getFileName();
+        String embeddedJarName = (jarFileName != null) ? jarFileName.toString() : null;
+        long[] entries = new long[1];
+        long bytesRead = ZipCentralDirectoryReader.read(jarFile, entry -> {
+            entries[0]++;
+            if (!entry.isDirectory()) {
+                if (NestedJarReader.isNestedJar(entry.getName())) {
+                    if (!entry.getName().equals(embeddedJarName)) {
+                        nestedJars.add(entry.getName());
                     }
+                } else {
+                    packageIndex.add(entry.getName());
                 }
             }
-        });
+        }, entry -> ((metadataCollector != null) && (JarMetadata.isMetadataEntry(entry))),
+                (entry, content) -> metadataCollector.add(entry.getName(), content));
 
-        LOGGER.fine(String.format("Returning a List<String> of packages from the JAR file[%s].", jarFile.toString()));
-        return exportedPackagesList;
+        if (!nestedJars.isEmpty()) {
+            try (ZipFile zipFile = new ZipFile(jarFile.toFile())) {
+                for (String nestedJar : nestedJars) {
+                    entries[0] += NestedJarReader.read(zipFile, nestedJar, (entry, inputStream) -> {
+                        if (!entry.isDirectory()) {
+                            packageIndex.add(entry.getName());
+                        }
+                    });
+                    bytesRead += zipFile.getEntry(nestedJar).getCompressedSize();
+                }
+            }
+            LOGGER.fine(String.format("Indexed %d nested JAR file(s) of JAR file[%s].", nestedJars.size(), jarFile));
+        }
+        metrics.addEntries(entries[0]);
+        metrics.addPackages(packageIndex.size());
+        metrics.addBytesRead(bytesRead);
+        return packageIndex;
     }
 
     /**
      * Returns a list of content in the .zip or .jar file corresponding to the {@code zipFilePath Path} instance, in the
      * form of {@code Path} instances
+     * <p>
+     * The content is listed as absolute {@code Path} instances of the default file system, whose name elements are
+     * those of the entries and of the parent directories they imply, along with the root, sorted by name. The listing
+     * is the same whether or not the file is large enough to be memory-mapped.
      *
      * @param zipFilePath the {@link Path} to the .zip or .jar file
      * @return a list of content in the .zip or .jar file in the form of a {@link List} of {@link Path} instances
@@ -308,12 +584,17 @@ public class BundleGeneratorUtils {
      *                                       file name has zero elements
      */
     public static List<Path> listZipFileContent(Path zipFilePath) throws IOException, JarToBundleConverterException {
-        List<Path> zipFileContent = new ArrayList<>();
+        Set<String> zipFileContent = new TreeSet<>();
         if (Files.exists(zipFilePath)) {
             Path zipFileName = zipFilePath.getFileName();
             if (zipFileName != null) {
                 if ((!Files.isDirectory(zipFilePath)) && (zipFileName.toString().endsWith(".zip") || zipFileName
                         .toString().endsWith(".jar"))) {
+                    if (MappedFileReader.isMapped(Files.size(zipFilePath))) {
+                        // avoids the heap copy of the central directory and the entry tree built by the zip file
+                        // system, for very large files
+                        return listMappedZipFileContent(zipFilePath);
+                    }
                     try (FileSystem zipFileSystem = createZipFileSystem(zipFilePath, false)) {
                         Path root = zipFileSystem.getPath("/");
 
@@ -321,13 +602,13 @@ public class BundleGeneratorUtils {
                         Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
                             @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
                                     throws IOException {
-                                zipFileContent.add(file);
+                                zipFileContent.add(file.toString());
                                 return FileVisitResult.CONTINUE;
                             }
 
                             @Override public FileVisitResult preVisitDirectory(Path directory,
                                     BasicFileAttributes attrs) throws IOException {
-                                zipFileContent.add(directory);
+                                zipFileContent.add(directory.toString());
                                 return FileVisitResult.CONTINUE;
                             }
                         });
@@ -341,6 +622,44 @@ public class BundleGeneratorUtils {
             String message = "Path represented by the zipFilePath does not exist.";
             throw new JarToBundleConverterException(message);
         }
+        return toPaths(zipFileContent);
+    }
+
+    /**
+     * Returns a list of content in the .zip or .jar file, read from its memory-mapped central directory, in the form
+     * of {@code Path} instances rooted at "/" which include the parent directories implied by the entry names
+     *
+     * @param zipFilePath the {@link Path} to the .zip or .jar file
+     * @return a list of content in the .zip or .jar file in the form of a {@link List} of {@link Path} instances
+     * @throws IOException if an I/O error occurs or if the file is not a valid .zip or .jar file
+     */
+    private static List<Path> listMappedZipFileContent(Path zipFilePath) throws IOException {
+        Set<String> names = new TreeSet<>();
+        names.add("/");
+        ZipCentralDirectoryReader.read(zipFilePath, entry -> {
+            String name = entry.getName();
+            int separatorIndex = name.indexOf('/');
+            while ((separatorIndex != -1) && (separatorIndex < name.length() - 1)) {
+                names.add("/" + name.substring(0, separatorIndex));
+                separatorIndex = name.indexOf('/', separatorIndex + 1);
+            }
+            names.add("/" + (name.endsWith("/") ? name.substring(0, name.length() - 1) : name));
+        });
+        return toPaths(names);
+    }
+
+    /**
+     * Returns the {@code Path} instances of the default file system of the names of the content of a .zip or .jar
+     * file, so that the content is listed alike whether read through a zip file system or from the central directory
+     *
+     * @param names the names of the content, rooted at "/", in the order in which they are to be listed
+     * @return a {@link List} of {@link Path} instances of the names
+     */
+    private static List<Path> toPaths(Set<String> names) {
+        List<Path> zipFileContent = new ArrayList<>(names.size());
+        for (String name : names) {
+            zipFileContent.add(Paths.get(name));
+        }
         return zipFileContent;
     }
 
@@ -0,0 +1,377 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * a Java class which writes an OSGi bundle in a single pass, streaming the manifest, the p2.inf file and the
+ * embedded JAR file directly into the bundle archive
+ * <p>
+ * The entries are compressed as configured by the {@link BundleCompression} settings of the conversion.
+ * <p>
+ * A flattened bundle holds the entries of the JAR file at its root rather than the JAR file itself. The compressed
+ * data of each entry is copied as-is, located through the central directory of the JAR file, so no entry is inflated
+ * or deflated other than the manifest, which is merged with the OSGi bundle manifest. The signature files of the JAR
+ * file are left out, as the merged manifest no longer matches them.
+ * <p>
+ * The bundle is written to a temporary file in the {@link Workspace} of the run, or alongside the bundle if the
+ * workspace is on another file store, which is then atomically renamed into place, hence a partially written bundle
+ * is never visible at the bundle path. JAR files of at least the
+ * {@link MappedFileReader} threshold size are copied into the bundle from a memory mapping.
+ */
+public class BundleWriter {
+    private static final Logger LOGGER = Logger.getLogger(BundleWriter.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * the copy buffer of each thread, reused across the bundles written by the thread
+     */
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final String META_INF_DIRECTORY = "META-INF/";
+    private static final String[] SIGNATURE_FILE_EXTENSIONS = { ".SF", ".RSA", ".DSA", ".EC" };
+
+    /**
+     * Writes an OSGi bundle which embeds the JAR file, compressed as configured by the default compression settings
+     *
+     * @param jarFile    the JAR file to be embedded in the bundle
+     * @param bundlePath the {@link Path} of the bundle to be written
+     * @param manifest   the OSGi bundle manifest
+     * @throws IOException if an I/O error occurs while reading the JAR file or writing the bundle
+     */
+    public static void write(Path jarFile, Path bundlePath, Manifest manifest) throws IOException {
+        write(jarFile, bundlePath, manifest, new ConversionMetrics());
+    }
+
+    /**
+     * Writes an OSGi bundle which embeds the JAR file, compressed as configured by the default compression settings,
+     * recording the durations of the writing stages and the bytes read and written
+     *
+     * @param jarFile    the JAR file to be embedded in the bundle
+     * @param bundlePath the {@link Path} of the bundle to be written
+     * @param manifest   the OSGi bundle manifest
+     * @param metrics    the {@link ConversionMetrics} into which the stage durations and counters are to be recorded
+     * @throws IOException if an I/O error occurs while reading the JAR file or writing the bundle
+     */
+    public static void write(Path jarFile, Path bundlePath, Manifest manifest, ConversionMetrics metrics)
+            throws IOException {
+        write(jarFile, bundlePath, manifest, Collections.emptyList(), false, BundleCompression.getDefault(), metrics);
+    }
+
+    /**
+     * Writes an OSGi bundle which embeds the JAR file and its nested JAR files, recording the durations of the
+     * writing stages and the bytes read and written
+     * <p>
+     * Each nested JAR file is streamed out of the JAR file into the bundle entry of the same path, so that it may be
+     * listed in the {@code Bundle-ClassPath}. If the bundle is flattened, the entries of the JAR file, including its
+     * nested JAR files, are copied to the bundle instead.
+     *
+     * @param jarFile     the JAR file to be embedded in the bundle
+     * @param bundlePath  the {@link Path} of the bundle to be written
+     * @param manifest    the OSGi bundle manifest
+     * @param nestedJars  the entry names of the nested JAR files of the JAR file to be placed in the bundle
+     * @param flatten     true if the entries of the JAR file are to be copied to the root of the bundle rather than
+     *                    the JAR file being embedded in the bundle, else false
+     * @param compression the {@link BundleCompression} settings of the bundle
+     * @param metrics     the {@link ConversionMetrics} into which the stage durations and counters are to be
+     *                    recorded
+     * @throws IOException if an I/O error occurs while reading the JAR file or writing the bundle
+     */
+    public static void write(Path jarFile, Path bundlePath, Manifest manifest, List<String> nestedJars,
+            boolean flatten, BundleCompression compression, ConversionMetrics metrics) throws IOException {
+        Path jarFileName = jarFile.getFileName();
+        Path bundleFileName = bundlePath.getFileName();
+        Path bundleDirectory = bundlePath.toAbsolutePath().getParent();
+        if ((jarFileName == null) || (bundleFileName == null) || (bundleDirectory == null)) {
+            throw new IOException("Paths of the JAR file and the bundle must have a file name.");
+        }
+
+        long stageStartTime = ConversionMetrics.now();
+        Path temporaryBundle = Files.createTempFile(Workspace.stagingDirectoryOf(bundleDirectory),
+                "." + bundleFileName.toString(), ".tmp");
+        try {
+            try (ZipArchiveWriter bundleWriter = new ZipArchiveWriter(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryBundle), BUFFER_SIZE))) {
+                if (flatten) {
+                    writeFlattened(jarFile, manifest, bundleWriter, compression, stageStartTime, metrics);
+                } else {
+                    writeEmbedded(jarFile, jarFileName.toString(), manifest, nestedJars, bundleWriter, compression,
+                            stageStartTime, metrics);
+                }
+                stageStartTime = ConversionMetrics.now();
+            }
+            metrics.addBytesWritten(Files.size(temporaryBundle));
+            moveIntoPlace(temporaryBundle, bundlePath);
+            metrics.record(ConversionMetrics.Stage.ARCHIVE_CLOSE, stageStartTime);
+        } finally {
+            Files.deleteIfExists(temporaryBundle);
+        }
+    }
+
+    /**
+     * Writes the manifest and the p2.inf file to the bundle, followed by the JAR file and its nested JAR files
+     *
+     * @param jarFile        the JAR file to be embedded in the bundle
+     * @param jarFileName    the file name of the JAR file, which is the name of its bundle entry
+     * @param manifest       the OSGi bundle manifest
+     * @param nestedJars     the entry names of the nested JAR files of the JAR file to be placed in the bundle
+     * @param bundleWriter   the {@link ZipArchiveWriter} of the bundle
+     * @param compression    the {@link BundleCompression} settings of the bundle
+     * @param stageStartTime the start time of the metadata write stage
+     * @param metrics        the {@link ConversionMetrics} into which the stage durations and counters are to be
+     *                       recorded
+     * @throws IOException if an I/O error occurs while reading the JAR file or writing the bundle
+     */
+    private static void writeEmbedded(Path jarFile, String jarFileName, Manifest manifest, List<String> nestedJars,
+            ZipArchiveWriter bundleWriter, BundleCompression compression, long stageStartTime,
+            ConversionMetrics metrics) throws IOException {
+        writeMetadata(jarFile, manifest, bundleWriter, compression);
+        metrics.record(ConversionMetrics.Stage.METADATA_WRITE, stageStartTime);
+
+        stageStartTime = ConversionMetrics.now();
+        byte[] buffer = BUFFERS.get();
+        long jarFileSize = Files.size(jarFile);
+        if (compression.isEmbeddedJarStored()) {
+            // the JAR file is read twice, the second time from the page cache
+            bundleWriter.putStored(jarFileName, jarFileSize, crc(jarFile, buffer),
+                    entryStream -> MappedFileReader.copy(jarFile, entryStream, buffer));
+        } else {
+            bundleWriter.putDeflated(jarFileName, compression.getLevel(), compression.isParallel(jarFileSize),
+                    entryStream -> MappedFileReader.copy(jarFile, entryStream, buffer));
+        }
+        metrics.addBytesRead(jarFileSize);
+        if (!nestedJars.isEmpty()) {
+            writeNestedJars(jarFile, nestedJars, bundleWriter, compression, buffer, metrics);
+        }
+        metrics.record(ConversionMetrics.Stage.JAR_COPY, stageStartTime);
+    }
+
+    /**
+     * Writes the manifest, merged with the manifest of the JAR file, and the p2.inf file to the bundle, followed by
+     * the entries of the JAR file, whose compressed data is copied without being inflated
+     *
+     * @param jarFile        the JAR file whose entries are to be copied to the bundle
+     * @param manifest       the OSGi bundle manifest, whose attributes take precedence over those of the JAR file
+     * @param bundleWriter   the {@link ZipArchiveWriter} of the bundle
+     * @param compression    the {@link BundleCompression} settings of the bundle
+     * @param stageStartTime the start time of the metadata write stage
+     * @param metrics        the {@link ConversionMetrics} into which the stage durations and counters are to be
+     *                       recorded
+     * @throws IOException if an I/O error occurs while reading the JAR file or writing the bundle, or if an entry of
+     *                     the JAR file is of an unsupported compression method
+     */
+    private static void writeFlattened(Path jarFile, Manifest manifest, ZipArchiveWriter bundleWriter,
+            BundleCompression compression, long stageStartTime, ConversionMetrics metrics) throws IOException {
+        List<ZipCentralDirectoryReader.Entry> entries = new ArrayList<>();
+        ZipCentralDirectoryReader.read(jarFile, entries::add);
+        byte[] buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(jarFile, StandardOpenOption.READ)) {
+            Manifest mergedManifest = new Manifest();
+            for (ZipCentralDirectoryReader.Entry entry : entries) {
+                if (entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                    mergedManifest = new Manifest(new ByteArrayInputStream(
+                            ZipCentralDirectoryReader.readContent(channel, entry, buffer)));
+                    break;
+                }
+            }
+            mergedManifest.getMainAttributes().putAll(manifest.getMainAttributes());
+            mergedManifest.getEntries().putAll(manifest.getEntries());
+            writeMetadata(jarFile, mergedManifest, bundleWriter, compression);
+            metrics.record(ConversionMetrics.Stage.METADATA_WRITE, stageStartTime);
+
+            stageStartTime = ConversionMetrics.now();
+            Set<String> written = new HashSet<>();
+            written.add(META_INF_DIRECTORY);
+            written.add(Constants.P2_INF_ENTRY);
+            int skipped = 0;
+            for (ZipCentralDirectoryReader.Entry entry : entries) {
+                String name = entry.getName();
+                if ((name.equalsIgnoreCase(JarFile.MANIFEST_NAME)) || (isSignatureFile(name)) || !(written
+                        .add(name))) {
+                    skipped++;
+                    continue;
+                }
+                if ((entry.getMethod() != ZipEntry.STORED) && (entry.getMethod() != ZipEntry.DEFLATED)) {
+                    throw new ZipException(String.format("Entry[%s] of JAR file[%s] is of the unsupported "
+                            + "compression method %d.", name, jarFile, entry.getMethod()));
+                }
+                bundleWriter.putRaw(name, entry.getMethod(), entry.getCrc(), entry.getCompressedSize(),
+                        entry.getSize(), entryStream -> ZipCentralDirectoryReader
+                                .copyEntryData(channel, entry, entryStream, buffer));
+            }
+            metrics.addBytesRead(channel.size());
+            LOGGER.fine(String.format("Copied %d entries of JAR file[%s] to the OSGi bundle, leaving out %d.",
+                    (entries.size() - skipped), jarFile, skipped));
+        }
+        metrics.record(ConversionMetrics.Stage.JAR_COPY, stageStartTime);
+    }
+
+    /**
+     * Writes the META-INF directory, the manifest and the p2.inf file to the bundle
+     *
+     * @param jarFile      the JAR file of the bundle
+     * @param manifest     the OSGi bundle manifest
+     * @param bundleWriter the {@link ZipArchiveWriter} of the bundle
+     * @param compression  the {@link BundleCompression} settings of the bundle
+     * @throws IOException if an I/O error occurs while writing the bundle
+     */
+    private static void writeMetadata(Path jarFile, Manifest manifest, ZipArchiveWriter bundleWriter,
+            BundleCompression compression) throws IOException {
+        int level = compression.getLevel();
+        bundleWriter.putEntry(META_INF_DIRECTORY, new byte[0], Deflater.NO_COMPRESSION);
+
+        ByteArrayOutputStream manifestContent = new ByteArrayOutputStream();
+        manifest.write(manifestContent);
+        bundleWriter.putEntry(JarFile.MANIFEST_NAME, manifestContent.toByteArray(), level);
+        LOGGER.fine(String.format("Generated the OSGi bundle MANIFEST.MF for the JAR file[%s]", jarFile));
+
+        bundleWriter.putEntry(Constants.P2_INF_ENTRY, Constants.P2_INF_CONTENT.getBytes(StandardCharsets.UTF_8),
+                level);
+        LOGGER.fine(String.format("Generated the OSGi bundle p2.inf for the JAR file[%s]", jarFile));
+    }
+
+    /**
+     * Returns true if the entry is a signature file of a signed JAR file
+     *
+     * @param name the name of the entry
+     * @return true if the entry is a signature file, else false
+     */
+    private static boolean isSignatureFile(String name) {
+        String upperCaseName = name.toUpperCase(Locale.ROOT);
+        if (!(upperCaseName.startsWith(META_INF_DIRECTORY)) || (upperCaseName.indexOf('/', META_INF_DIRECTORY
+                .length()) != -1)) {
+            return false;
+        }
+        if (upperCaseName.startsWith(META_INF_DIRECTORY + "SIG-")) {
+            return true;
+        }
+        for (String extension : SIGNATURE_FILE_EXTENSIONS) {
+            if (upperCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Streams the nested JAR files out of the JAR file into the bundle entries of the same paths
+     *
+     * @param jarFile      the JAR file which holds the nested JAR files
+     * @param nestedJars   the entry names of the nested JAR files
+     * @param bundleWriter the {@link ZipArchiveWriter} of the bundle
+     * @param compression  the {@link BundleCompression} settings of the bundle
+     * @param buffer       the buffer through which the nested JAR files are copied
+     * @param metrics      the {@link ConversionMetrics} into which the bytes read are to be recorded
+     * @throws IOException if an I/O error occurs while reading the JAR file or writing the bundle
+     */
+    private static void writeNestedJars(Path jarFile, List<String> nestedJars, ZipArchiveWriter bundleWriter,
+            BundleCompression compression, byte[] buffer, ConversionMetrics metrics) throws IOException {
+        try (ZipFile zipFile = new ZipFile(jarFile.toFile())) {
+            for (String nestedJar : nestedJars) {
+                ZipEntry nestedJarEntry = zipFile.getEntry(nestedJar);
+                if (nestedJarEntry == null) {
+                    throw new ZipException(String.format("Nested JAR file[%s] not found in %s", nestedJar, jarFile));
+                }
+                ZipArchiveWriter.Content content = entryStream -> {
+                    try (InputStream inputStream = zipFile.getInputStream(nestedJarEntry)) {
+                        int read;
+                        while ((read = inputStream.read(buffer)) != -1) {
+                            entryStream.write(buffer, 0, read);
+                        }
+                    }
+                };
+                // the CRC and size of the nested JAR file are known from the central directory of the JAR file
+                if ((compression.isEmbeddedJarStored()) && (nestedJarEntry.getSize() != -1) && (nestedJarEntry
+                        .getCrc() != -1)) {
+                    bundleWriter.putStored(nestedJar, nestedJarEntry.getSize(), nestedJarEntry.getCrc(), content);
+                } else {
+                    bundleWriter.putDeflated(nestedJar, compression.getLevel(),
+                            compression.isParallel(nestedJarEntry.getSize()), content);
+                }
+                metrics.addBytesRead(nestedJarEntry.getCompressedSize());
+            }
+        }
+        LOGGER.fine(String.format("Wrote %d nested JAR file(s) of JAR file[%s] to the OSGi bundle.",
+                nestedJars.size(), jarFile));
+    }
+
+    /**
+     * Returns the CRC-32 of the content of the file
+     *
+     * @param file   the file
+     * @param buffer the buffer through which the file is read
+     * @return the CRC-32 of the content of the file
+     * @throws IOException if an I/O error occurs when reading the file
+     */
+    private static long crc(Path file, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        MappedFileReader.copy(file, new OutputStream() {
+            @Override public void write(int value) {
+                crc.update(value);
+            }
+
+            @Override public void write(byte[] bytes, int offset, int length) {
+                crc.update(bytes, offset, length);
+            }
+        }, buffer);
+        return crc.getValue();
+    }
+
+    /**
+     * Renames the source file to the target, atomically if supported by the file system
+     *
+     * @param source the file to be renamed
+     * @param target the target {@link Path}
+     * @throws IOException if an I/O error occurs during the rename
+     */
+    static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOGGER.fine(String.format("Atomic move is not supported for %s, replacing the target instead.", target));
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
@@ -0,0 +1,473 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * a Java class which collects the Java packages referenced by a class file, by parsing its constant pool, the
+ * descriptors of its fields and methods and its annotations
+ * <p>
+ * Only the class, name and type, and method type constants, the member descriptors and the annotation attributes of
+ * the class and its members are inspected, hence no object is allocated per constant, and the class file buffer and
+ * the parse arrays are reused across class files. The types of annotations, and of their enum and class values, are
+ * referenced only by UTF-8 constants, hence would otherwise be missed. Every read is bounded by the length of the
+ * class file, so that a truncated class file is reported as invalid rather than parsed from the stale content of the
+ * reused buffer. Instances of this class are not thread-safe.
+ */
+public class ConstantPoolScanner {
+
+    private static final int MAGIC = 0xcafebabe;
+    private static final int HEADER_SIZE = 10;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    // the usage of a UTF-8 constant, as a class name or as a field or method descriptor
+    private static final byte CLASS_NAME = 1;
+    private static final byte DESCRIPTOR = 2;
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    /**
+     * the maximum nesting of annotations within annotation values, beyond which a class file is deemed malformed
+     */
+    private static final int MAXIMUM_ANNOTATION_DEPTH = 64;
+
+    // the names of the attributes which hold annotations, of classes, fields, methods and their parameters
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = ascii("RuntimeVisibleAnnotations");
+    private static final byte[] RUNTIME_INVISIBLE_ANNOTATIONS = ascii("RuntimeInvisibleAnnotations");
+    private static final byte[] RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS = ascii("RuntimeVisibleParameterAnnotations");
+    private static final byte[] RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS = ascii(
+            "RuntimeInvisibleParameterAnnotations");
+    private static final byte[] ANNOTATION_DEFAULT = ascii("AnnotationDefault");
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int[] offsets = new int[256];
+    private byte[] usages = new byte[256];
+    private byte[] bytes;
+    private int limit;
+
+    /**
+     * Reads the class file from the {@code InputStream} into the reusable buffer of this scanner, and adds the Java
+     * packages referenced by it to the {@code Set}, in dotted form
+     *
+     * @param inputStream the {@link InputStream} of the class file
+     * @param packages    the {@link Set} to which the referenced package names are to be added
+     * @return true if the class file was parsed, false if it is not a valid class file
+     * @throws IOException if an I/O error occurs when reading the class file
+     */
+    public boolean scan(InputStream inputStream, Set<String> packages) throws IOException {
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return scan(buffer, length, packages);
+    }
+
+    /**
+     * Adds the Java packages referenced by the class file to the {@code Set}, in dotted form
+     *
+     * @param classFile the buffer holding the class file
+     * @param length    the length of the class file, in bytes
+     * @param packages  the {@link Set} to which the referenced package names are to be added
+     * @return true if the class file was parsed, false if it is not a valid class file
+     */
+    public boolean scan(byte[] classFile, int length, Set<String> packages) {
+        bytes = classFile;
+        limit = Math.min(length, classFile.length);
+        try {
+            if ((limit < HEADER_SIZE) || (readInt(0) != MAGIC)) {
+                return false;
+            }
+            int count = readUnsignedShort(8);
+            if (offsets.length < count) {
+                offsets = new int[Integer.highestOneBit(count) << 1];
+                usages = new byte[offsets.length];
+            }
+
+            int position = HEADER_SIZE;
+            for (int index = 1; index < count; index++) {
+                offsets[index] = position;
+                usages[index] = 0;
+                int tag = readByte(position);
+                switch (tag) {
+                case CONSTANT_UTF8:
+                    position += 3 + readUnsignedShort(position + 1);
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    position += 3;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    position += 4;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELD_REF:
+                case CONSTANT_METHOD_REF:
+                case CONSTANT_INTERFACE_METHOD_REF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    position += 5;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // eight byte constants take up two constant pool entries
+                    position += 9;
+                    index++;
+                    offsets[index] = offsets[index - 1];
+                    usages[index] = 0;
+                    break;
+                default:
+                    return false;
+                }
+            }
+            // the constants, including the content of the UTF-8 constants, lie within the class file
+            if (position > limit) {
+                return false;
+            }
+
+            for (int index = 1; index < count; index++) {
+                int offset = offsets[index];
+                switch (bytes[offset]) {
+                case CONSTANT_CLASS:
+                    markUsage(readUnsignedShort(offset + 1), CLASS_NAME, count);
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                    markUsage(readUnsignedShort(offset + 1), DESCRIPTOR, count);
+                    break;
+                case CONSTANT_NAME_AND_TYPE:
+                    markUsage(readUnsignedShort(offset + 3), DESCRIPTOR, count);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    index++;
+                    break;
+                default:
+                    break;
+                }
+            }
+
+            // skips the access flags, this class, super class and interfaces to reach the fields and methods
+            position += 6;
+            position += 2 + 2 * readUnsignedShort(position);
+            for (int table = 0; table < 2; table++) {
+                int memberCount = readUnsignedShort(position);
+                position += 2;
+                for (int member = 0; member < memberCount; member++) {
+                    markUsage(readUnsignedShort(position + 4), DESCRIPTOR, count);
+                    position = scanAttributes(position + 6, count);
+                }
+            }
+            scanAttributes(position, count);
+
+            for (int index = 1; index < count; index++) {
+                if (usages[index] != 0) {
+                    int offset = offsets[index];
+                    int start = offset + 3;
+                    int end = start + readUnsignedShort(offset + 1);
+                    if ((usages[index] & CLASS_NAME) != 0) {
+                        // the class name of an array class is an array type descriptor
+                        if ((start < end) && (bytes[start] == '[')) {
+                            addDescriptorPackages(start, end, packages);
+                        } else {
+                            addPackage(start, end, packages);
+                        }
+                    }
+                    if ((usages[index] & DESCRIPTOR) != 0) {
+                        addDescriptorPackages(start, end, packages);
+                    }
+                }
+            }
+            return true;
+        } catch (IndexOutOfBoundsException e) {
+            // a truncated or otherwise malformed class file
+            return false;
+        } finally {
+            bytes = null;
+        }
+    }
+
+    /**
+     * Marks the annotation types and the enum and class value types of the annotation attributes within an
+     * attribute table, as descriptors
+     *
+     * @param position the position of the attribute count of the table
+     * @param count    the constant pool count
+     * @return the position after the attribute table
+     */
+    private int scanAttributes(int position, int count) {
+        int attributeCount = readUnsignedShort(position);
+        position += 2;
+        for (int attribute = 0; attribute < attributeCount; attribute++) {
+            int nameIndex = readUnsignedShort(position);
+            int length = readInt(position + 2);
+            int start = position + 6;
+            if ((length < 0) || (length > limit - start)) {
+                throw new IndexOutOfBoundsException("Attribute exceeds the class file.");
+            }
+            if ((isUtf8(nameIndex, RUNTIME_VISIBLE_ANNOTATIONS, count)) || (isUtf8(nameIndex,
+                    RUNTIME_INVISIBLE_ANNOTATIONS, count))) {
+                scanAnnotations(start, count);
+            } else if ((isUtf8(nameIndex, RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS, count)) || (isUtf8(nameIndex,
+                    RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS, count))) {
+                int parameterCount = readByte(start) & 0xff;
+                int annotationsPosition = start + 1;
+                for (int parameter = 0; parameter < parameterCount; parameter++) {
+                    annotationsPosition = scanAnnotations(annotationsPosition, count);
+                }
+            } else if (isUtf8(nameIndex, ANNOTATION_DEFAULT, count)) {
+                scanElementValue(start, count, 0);
+            }
+            position = start + length;
+        }
+        return position;
+    }
+
+    /**
+     * Marks the types referenced by a table of annotations
+     *
+     * @param position the position of the annotation count of the table
+     * @param count    the constant pool count
+     * @return the position after the table
+     */
+    private int scanAnnotations(int position, int count) {
+        int annotationCount = readUnsignedShort(position);
+        position += 2;
+        for (int annotation = 0; annotation < annotationCount; annotation++) {
+            position = scanAnnotation(position, count, 0);
+        }
+        return position;
+    }
+
+    /**
+     * Marks the type of an annotation and the types referenced by its element values
+     *
+     * @param position the position of the annotation
+     * @param count    the constant pool count
+     * @param depth    the nesting depth of the annotation within annotation values
+     * @return the position after the annotation
+     */
+    private int scanAnnotation(int position, int count, int depth) {
+        if (depth > MAXIMUM_ANNOTATION_DEPTH) {
+            throw new IndexOutOfBoundsException("Annotations are nested too deeply.");
+        }
+        markUsage(readUnsignedShort(position), DESCRIPTOR, count);
+        int pairCount = readUnsignedShort(position + 2);
+        position += 4;
+        for (int pair = 0; pair < pairCount; pair++) {
+            // skips the element name
+            position = scanElementValue(position + 2, count, depth);
+        }
+        return position;
+    }
+
+    /**
+     * Marks the types referenced by an annotation element value, that is the type of an enum constant, a class
+     * literal or a nested annotation, and those of the values of an array
+     *
+     * @param position the position of the element value
+     * @param count    the constant pool count
+     * @param depth    the nesting depth of the enclosing annotation within annotation values
+     * @return the position after the element value
+     */
+    private int scanElementValue(int position, int count, int depth) {
+        switch (readByte(position)) {
+        case 'e':
+            markUsage(readUnsignedShort(position + 1), DESCRIPTOR, count);
+            return position + 5;
+        case 'c':
+            markUsage(readUnsignedShort(position + 1), DESCRIPTOR, count);
+            return position + 3;
+        case '@':
+            return scanAnnotation(position + 1, count, depth + 1);
+        case '[':
+            int valueCount = readUnsignedShort(position + 1);
+            position += 3;
+            for (int value = 0; value < valueCount; value++) {
+                position = scanElementValue(position, count, depth);
+            }
+            return position;
+        default:
+            // a constant value
+            return position + 3;
+        }
+    }
+
+    /**
+     * Returns true if the constant at the specified index is a UTF-8 constant of the specified ASCII value
+     *
+     * @param index the constant pool index
+     * @param value the ASCII value
+     * @param count the constant pool count
+     * @return true if the constant is a UTF-8 constant of the value, else false
+     */
+    private boolean isUtf8(int index, byte[] value, int count) {
+        if ((index <= 0) || (index >= count) || (bytes[offsets[index]] != CONSTANT_UTF8)) {
+            return false;
+        }
+        int offset = offsets[index];
+        if (readUnsignedShort(offset + 1) != value.length) {
+            return false;
+        }
+        for (int position = 0; position < value.length; position++) {
+            if (bytes[offset + 3 + position] != value[position]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the UTF-8 constant at the specified index with its usage
+     *
+     * @param index the constant pool index of the UTF-8 constant
+     * @param usage the usage of the constant
+     * @param count the constant pool count
+     */
+    private void markUsage(int index, byte usage, int count) {
+        if ((index > 0) && (index < count) && (bytes[offsets[index]] == CONSTANT_UTF8)) {
+            usages[index] |= usage;
+        }
+    }
+
+    /**
+     * Adds the packages of the object types within a field or method descriptor, such as
+     * {@code (Ljava/lang/String;[Lorg/example/Type;)V}
+     *
+     * @param start    the position of the first byte of the descriptor
+     * @param end      the position after the last byte of the descriptor
+     * @param packages the {@link Set} to which the package names are to be added
+     */
+    private void addDescriptorPackages(int start, int end, Set<String> packages) {
+        int position = start;
+        while (position < end) {
+            if (bytes[position] == 'L') {
+                int nameStart = position + 1;
+                position = nameStart;
+                while ((position < end) && (bytes[position] != ';')) {
+                    position++;
+                }
+                addPackage(nameStart, position, packages);
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Adds the package of an internal class name, such as {@code org/example/Type}, in dotted form
+     *
+     * @param start    the position of the first byte of the class name
+     * @param end      the position after the last byte of the class name
+     * @param packages the {@link Set} to which the package name is to be added
+     */
+    private void addPackage(int start, int end, Set<String> packages) {
+        int separator = -1;
+        boolean ascii = true;
+        for (int position = start; position < end; position++) {
+            byte value = bytes[position];
+            if (value == '/') {
+                separator = position;
+            } else if (value < 0) {
+                ascii = false;
+            }
+        }
+        if (separator == -1) {
+            // a class of the default package cannot be imported
+            return;
+        }
+        String packageName = new String(bytes, start, separator - start,
+                (ascii) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        packages.add(packageName.replace('/', '.'));
+    }
+
+    /**
+     * Reads a byte of the class file
+     *
+     * @param position the position of the value
+     * @return the value
+     * @throws IndexOutOfBoundsException if the position is beyond the length of the class file
+     */
+    private byte readByte(int position) {
+        if ((position < 0) || (position >= limit)) {
+            throw new IndexOutOfBoundsException("Unexpected end of the class file.");
+        }
+        return bytes[position];
+    }
+
+    /**
+     * Reads a big-endian unsigned short
+     *
+     * @param position the position of the value
+     * @return the value
+     * @throws IndexOutOfBoundsException if the value extends beyond the length of the class file
+     */
+    private int readUnsignedShort(int position) {
+        return ((readByte(position) & 0xff) << 8) | (readByte(position + 1) & 0xff);
+    }
+
+    /**
+     * Reads a big-endian int
+     *
+     * @param position the position of the value
+     * @return the value
+     * @throws IndexOutOfBoundsException if the value extends beyond the length of the class file
+     */
+    private int readInt(int position) {
+        return (readUnsignedShort(position) << 16) | readUnsignedShort(position + 2);
+    }
+
+    /**
+     * Returns the bytes of an ASCII value
+     *
+     * @param value the ASCII value
+     * @return the bytes of the value
+     */
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
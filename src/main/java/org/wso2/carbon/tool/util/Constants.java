@@ -31,6 +31,59 @@ public class Constants {
     public static final String BUNDLE_VERSION = "Bundle-Version";
     public static final String EXPORT_PACKAGE = "Export-Package";
     public static final String BUNDLE_CLASSPATH = "Bundle-ClassPath";
-    public static final String DYNAMIC_IMPORT_PACKAGE = "DynamicImport-Package";
+    public static final String IMPORT_PACKAGE = "Import-Package";
+    public static final String OPTIONAL_RESOLUTION = ";resolution:=optional";
+
+    public static final String DEFAULT_BUNDLE_VERSION = "1.0.0";
+
+    //Bundle content constants
+    public static final String P2_INF_ENTRY = "META-INF/p2.inf";
+    public static final String P2_INF_CONTENT = "instructions.configure=markStarted(started:true);";
+    public static final String FLATTEN_PROPERTY = "jar.to.bundle.flatten";
+
+    //p2 repository constants
+    public static final String P2_ARTIFACTS_FILE = "artifacts.jar";
+    public static final String P2_CONTENT_FILE = "content.jar";
+    public static final String P2_REPOSITORY_NAME = "JAR to OSGi bundle conversion";
+
+    //Package index constants
+    public static final String PACKAGE_INDEX_FILE = "package-index.json";
+
+    //Incremental conversion constants
+    public static final String DIGEST_STORE_FILE = ".jar-to-bundle-digests";
+    /**
+     * the version of the bundle layout, to be incremented whenever a change to the converter alters the content of
+     * the generated bundles, so that incremental conversions regenerate them
+     */
+    public static final String BUNDLE_FORMAT_VERSION = "4";
+
+    //Batch journal constants
+    public static final String JOURNAL_FILE = ".jar-to-bundle-journal";
+
+    //Workspace constants
+    public static final String WORKSPACE_ROOT_PROPERTY = "jar.to.bundle.workspace.root";
+    public static final String DEFAULT_WORKSPACE_ROOT = "jar-to-bundle-workspaces";
+
+    //Compression constants
+    public static final String STORE_EMBEDDED_JAR_PROPERTY = "jar.to.bundle.compression.store.embedded.jar";
+    public static final String DEFLATE_LEVEL_PROPERTY = "jar.to.bundle.compression.level";
+    public static final String PARALLEL_DEFLATE_THRESHOLD_PROPERTY = "jar.to.bundle.compression.parallel.threshold";
+    public static final long DEFAULT_PARALLEL_DEFLATE_THRESHOLD = 0;
+
+    //Conversion server constants
+    public static final int DEFAULT_SERVER_PORT = 8781;
+    public static final String SERVER_CONVERT_PATH = "/convert";
+    public static final String SERVER_HEALTH_PATH = "/health";
+    public static final String SERVER_METRICS_PATH = "/metrics";
+    public static final int SERVER_MAX_RETRIES = 60;
+    public static final long DEFAULT_SERVER_RETRY_DELAY_SECONDS = 1;
+    public static final String SERVER_TOKEN_HEADER = "X-Conversion-Token";
+    public static final String SERVER_TOKEN_DIRECTORY_PROPERTY = "jar.to.bundle.server.token.directory";
+    public static final String SERVER_TOKEN_FILE_PREFIX = ".jar-to-bundle-server-";
+    public static final String SERVER_TOKEN_FILE_SUFFIX = ".token";
+
+    //Memory-mapped I/O constants
+    public static final String MAPPED_IO_THRESHOLD_PROPERTY = "jar.to.bundle.mapped.io.threshold";
+    public static final long DEFAULT_MAPPED_IO_THRESHOLD = 64L * 1024 * 1024;
 
 }
@@ -0,0 +1,225 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which appends the completion of each JAR file of a batch conversion to a journal in the target
+ * directory, so that a run which did not finish can be continued by the next run
+ * <p>
+ * Each line of the journal records the outcome, the size and the modification time of a JAR file, the name of its
+ * OSGi bundle and its path. The first line records the digest of the conversion settings, and the journal of a run
+ * with different settings is discarded. A JAR file is taken as done by the next run if it was converted or skipped,
+ * its size and modification time are unchanged and its OSGi bundle exists. Failed JAR files are retried. The
+ * journal is deleted once its run finishes. Instances of this class are thread-safe.
+ */
+public class ConversionJournal implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(ConversionJournal.class.getName());
+    private static final String SETTINGS_PREFIX = "settings\t";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int FIELDS = 5;
+
+    private final Path journalFile;
+    private final Path targetDirectory;
+    private final Map<String, String[]> completed = new ConcurrentHashMap<>();
+    private final OutputStream outputStream;
+
+    /**
+     * Constructs a new conversion journal
+     *
+     * @param journalFile     the journal file
+     * @param targetDirectory the directory into which the OSGi bundles are placed
+     * @param outputStream    the {@link OutputStream} appending to the journal file
+     */
+    private ConversionJournal(Path journalFile, Path targetDirectory, OutputStream outputStream) {
+        this.journalFile = journalFile;
+        this.targetDirectory = targetDirectory;
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Opens the journal of the target directory, continuing the journal of an unfinished run with the same
+     * conversion settings, if any
+     *
+     * @param targetDirectory the directory into which the OSGi bundles are placed
+     * @param settings        the conversion settings
+     * @return the {@link ConversionJournal} of the target directory
+     * @throws IOException if an I/O error occurs when reading or opening the journal
+     */
+    public static ConversionJournal open(Path targetDirectory, String settings) throws IOException {
+        Path journalFile = targetDirectory.resolve(Constants.JOURNAL_FILE);
+        String settingsLine = SETTINGS_PREFIX + DigestStore.digest(settings);
+        Map<String, String[]> completed = new ConcurrentHashMap<>();
+        boolean resumed = false;
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                resumed = settingsLine.equals(reader.readLine());
+                String line;
+                while ((resumed) && ((line = reader.readLine()) != null)) {
+                    String[] fields = line.split(FIELD_SEPARATOR, FIELDS);
+                    // the last line is incomplete if the previous run was killed while appending it
+                    if ((fields.length == FIELDS) && (!fields[0].equals(ConversionResult.Status.FAILED.name()))) {
+                        completed.put(fields[4], fields);
+                    } else {
+                        completed.remove(fields[fields.length - 1]);
+                    }
+                }
+            }
+            if (resumed) {
+                LOGGER.info(String.format("Continuing the unfinished run recorded in journal[%s], %d JAR file(s) "
+                        + "done.", journalFile, completed.size()));
+            } else {
+                LOGGER.info(String.format("Discarding journal[%s] of a run with different settings.", journalFile));
+            }
+        }
+
+        OutputStream outputStream = (resumed) ?
+                Files.newOutputStream(journalFile, StandardOpenOption.APPEND) :
+                Files.newOutputStream(journalFile);
+        ConversionJournal journal = new ConversionJournal(journalFile, targetDirectory, outputStream);
+        journal.completed.putAll(completed);
+        if (!resumed) {
+            journal.append(settingsLine);
+        } else if (!endsWithLineSeparator(journalFile)) {
+            // terminates the incomplete last line, so that the next line is not appended to it
+            journal.append("");
+        }
+        return journal;
+    }
+
+    /**
+     * Returns the result of the JAR file if it was completed by an unfinished run and is unchanged since
+     *
+     * @param jarFile the JAR file
+     * @return a skipped {@link ConversionResult} of the JAR file, or {@code null} if it is to be converted
+     * @throws IOException if an I/O error occurs when reading the attributes of the JAR file
+     */
+    public ConversionResult getCompleted(Path jarFile) throws IOException {
+        String[] fields = completed.get(getKey(jarFile));
+        if (fields == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(jarFile, BasicFileAttributes.class);
+        Path bundle = targetDirectory.resolve(fields[3]);
+        if ((fields[1].equals(Long.toString(attributes.size()))) && (fields[2]
+                .equals(Long.toString(attributes.lastModifiedTime().toMillis()))) && (Files.exists(bundle))) {
+            return new ConversionResult(jarFile, bundle, ConversionResult.Status.SKIPPED, 0,
+                    "Completed by an unfinished run.");
+        }
+        return null;
+    }
+
+    /**
+     * Appends the outcome of the conversion of a JAR file to the journal
+     *
+     * @param result the {@link ConversionResult} of the JAR file
+     * @throws IOException if an I/O error occurs when appending to the journal
+     */
+    public void record(ConversionResult result) throws IOException {
+        Path jarFile = result.getJarFile();
+        Path bundleFileName = (result.getBundle() != null) ? result.getBundle().getFileName() : null;
+        String size = "";
+        String lastModifiedTime = "";
+        if (Files.exists(jarFile)) {
+            BasicFileAttributes attributes = Files.readAttributes(jarFile, BasicFileAttributes.class);
+            size = Long.toString(attributes.size());
+            lastModifiedTime = Long.toString(attributes.lastModifiedTime().toMillis());
+        }
+        append(String.join(FIELD_SEPARATOR, result.getStatus().name(), size, lastModifiedTime,
+                ((bundleFileName != null) ? bundleFileName.toString() : ""), getKey(jarFile)));
+    }
+
+    /**
+     * Closes the journal and deletes it, as its run finished
+     *
+     * @throws IOException if an I/O error occurs when closing or deleting the journal
+     */
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(journalFile);
+    }
+
+    /**
+     * Closes the journal, leaving it for the next run to continue
+     *
+     * @throws IOException if an I/O error occurs when closing the journal
+     */
+    @Override public void close() throws IOException {
+        synchronized (outputStream) {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Appends a line to the journal, writing it through to the file so that it survives the process
+     *
+     * @param line the line to be appended
+     * @throws IOException if an I/O error occurs when appending the line
+     */
+    private void append(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (outputStream) {
+            outputStream.write(bytes);
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Returns true if the file is empty or its last byte is a line separator
+     *
+     * @param file the file
+     * @return true if the file is empty or its last byte is a line separator, else false
+     * @throws IOException if an I/O error occurs when reading the file
+     */
+    private static boolean endsWithLineSeparator(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(lastByte);
+            return (lastByte.get(0) == '\n');
+        }
+    }
+
+    /**
+     * Returns the key under which the JAR file is journaled
+     *
+     * @param jarFile the JAR file
+     * @return the absolute, normalized {@link String} path of the JAR file
+     */
+    private static String getKey(Path jarFile) {
+        return jarFile.toAbsolutePath().normalize().toString();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+/**
+ * a Java class which records the per-stage durations and the counters of a single JAR file to OSGi bundle conversion
+ * <p>
+ * Instances of this class are not thread-safe, as a conversion is performed by a single thread.
+ */
+public class ConversionMetrics {
+
+    /**
+     * the stages of a JAR file to OSGi bundle conversion
+     */
+    public enum Stage {
+        READ, PACKAGE_SCAN, IMPORT_SCAN, MANIFEST_BUILD, METADATA_WRITE, JAR_COPY, ARCHIVE_CLOSE
+    }
+
+    private final long[] stageDurations = new long[Stage.values().length];
+    private long entries;
+    private long packages;
+    private long bytesRead;
+    private long bytesWritten;
+
+    /**
+     * Returns the current value of the timer used to measure the stage durations
+     *
+     * @return the current value of the timer, in nanoseconds
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time elapsed since the specified start time to the duration of the stage
+     *
+     * @param stage     the conversion {@link Stage}
+     * @param startTime the start time of the stage, as returned by {@link #now()}
+     */
+    public void record(Stage stage, long startTime) {
+        stageDurations[stage.ordinal()] += (now() - startTime);
+    }
+
+    /**
+     * Adds the specified duration, such as one measured by another {@code ConversionMetrics}, to the duration of the
+     * stage
+     *
+     * @param stage    the conversion {@link Stage}
+     * @param duration the duration to be added, in nanoseconds
+     */
+    public void addDuration(Stage stage, long duration) {
+        stageDurations[stage.ordinal()] += duration;
+    }
+
+    /**
+     * Adds the stage durations and the counters of another {@code ConversionMetrics}, such as those of a part of the
+     * conversion performed separately, to these
+     *
+     * @param other the {@link ConversionMetrics} to be added
+     */
+    public void addAll(ConversionMetrics other) {
+        for (Stage stage : Stage.values()) {
+            addDuration(stage, other.getDuration(stage));
+        }
+        addEntries(other.getEntries());
+        addPackages(other.getPackages());
+        addBytesRead(other.getBytesRead());
+        addBytesWritten(other.getBytesWritten());
+    }
+
+    /**
+     * Returns the duration of the stage
+     *
+     * @param stage the conversion {@link Stage}
+     * @return the duration of the stage, in nanoseconds
+     */
+    public long getDuration(Stage stage) {
+        return stageDurations[stage.ordinal()];
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public void addEntries(long entries) {
+        this.entries += entries;
+    }
+
+    public long getPackages() {
+        return packages;
+    }
+
+    public void addPackages(long packages) {
+        this.packages += packages;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public void addBytesRead(long bytesRead) {
+        this.bytesRead += bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void addBytesWritten(long bytesWritten) {
+        this.bytesWritten += bytesWritten;
+    }
+
+}
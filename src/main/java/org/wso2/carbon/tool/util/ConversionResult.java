@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.nio.file.Path;
+
+/**
+ * a Java class which represents the outcome of converting a single JAR file to an OSGi bundle
+ */
+public class ConversionResult {
+
+    /**
+     * the possible outcomes of a JAR file to OSGi bundle conversion
+     */
+    public enum Status {
+        CREATED, SKIPPED, FAILED
+    }
+
+    private final Path jarFile;
+    private final Path bundle;
+    private final Status status;
+    private final long elapsedTime;
+    private final String message;
+    private final ConversionMetrics metrics;
+
+    /**
+     * Constructs a new conversion result
+     *
+     * @param jarFile     the JAR file which was converted
+     * @param bundle      the {@link Path} to the OSGi bundle, if known, else {@code null}
+     * @param status      the outcome of the conversion
+     * @param elapsedTime the time taken for the conversion, in milliseconds
+     * @param message     a detail message describing the outcome, if any
+     */
+    public ConversionResult(Path jarFile, Path bundle, Status status, long elapsedTime, String message) {
+        this(jarFile, bundle, status, elapsedTime, message, null);
+    }
+
+    /**
+     * Constructs a new conversion result
+     *
+     * @param jarFile     the JAR file which was converted
+     * @param bundle      the {@link Path} to the OSGi bundle, if known, else {@code null}
+     * @param status      the outcome of the conversion
+     * @param elapsedTime the time taken for the conversion, in milliseconds
+     * @param message     a detail message describing the outcome, if any
+     * @param metrics     the {@link ConversionMetrics} of the conversion, if any
+     */
+    public ConversionResult(Path jarFile, Path bundle, Status status, long elapsedTime, String message,
+            ConversionMetrics metrics) {
+        this.jarFile = jarFile;
+        this.bundle = bundle;
+        this.status = status;
+        this.elapsedTime = elapsedTime;
+        this.message = message;
+        this.metrics = metrics;
+    }
+
+    public Path getJarFile() {
+        return jarFile;
+    }
+
+    public Path getBundle() {
+        return bundle;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override public String toString() {
+        return String.format("%s JAR file[%s], OSGi bundle[%s] in %d ms%s", status, jarFile, bundle, elapsedTime,
+                ((message != null) ? (": " + message) : ""));
+    }
+
+}
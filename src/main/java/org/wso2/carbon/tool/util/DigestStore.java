@@ -0,0 +1,241 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which persists, in the target directory, the content digest of each converted JAR file together with
+ * the conversion settings and the name of the OSGi bundle created for it
+ * <p>
+ * Instances of this class are thread-safe.
+ */
+public class DigestStore {
+    private static final Logger LOGGER = Logger.getLogger(DigestStore.class.getName());
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String RECORD_SEPARATOR = ",";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path storeFile;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+
+    /**
+     * a Java class which represents the digest record of a single converted JAR file
+     */
+    public static class Record {
+        private final String contentDigest;
+        private final String settingsDigest;
+        private final String bundleFileName;
+
+        public Record(String contentDigest, String settingsDigest, String bundleFileName) {
+            this.contentDigest = contentDigest;
+            this.settingsDigest = settingsDigest;
+            this.bundleFileName = bundleFileName;
+        }
+
+        public String getContentDigest() {
+            return contentDigest;
+        }
+
+        public String getSettingsDigest() {
+            return settingsDigest;
+        }
+
+        public String getBundleFileName() {
+            return bundleFileName;
+        }
+    }
+
+    private DigestStore(Path storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Loads the digest store of the target directory, or creates an empty store if none exists
+     *
+     * @param targetDirectory the directory into which the OSGi bundles are placed
+     * @return the {@link DigestStore} of the target directory
+     * @throws IOException if an I/O error occurs when reading the digest store
+     */
+    public static DigestStore load(Path targetDirectory) throws IOException {
+        DigestStore digestStore = new DigestStore(targetDirectory.resolve(Constants.DIGEST_STORE_FILE));
+        if (Files.exists(digestStore.storeFile)) {
+            Properties properties = new Properties();
+            try (InputStream inputStream = Files.newInputStream(digestStore.storeFile)) {
+                properties.load(inputStream);
+            }
+            for (String jarFile : properties.stringPropertyNames()) {
+                String[] values = properties.getProperty(jarFile).split(RECORD_SEPARATOR, 3);
+                if (values.length == 3) {
+                    digestStore.records.put(jarFile, new Record(values[0], values[1], values[2]));
+                } else {
+                    LOGGER.fine(String.format("Ignoring the malformed digest record of JAR file[%s].", jarFile));
+                }
+            }
+        }
+        return digestStore;
+    }
+
+    /**
+     * Returns the digest record of the JAR file, if any
+     *
+     * @param jarFile the JAR file
+     * @return the {@link Record} of the JAR file, or {@code null} if none exists
+     */
+    public Record get(Path jarFile) {
+        return records.get(getKey(jarFile));
+    }
+
+    /**
+     * Records the digests of the JAR file and the name of the OSGi bundle created for it
+     *
+     * @param jarFile the JAR file
+     * @param record  the digest {@link Record} of the JAR file
+     */
+    public void put(Path jarFile, Record record) {
+        records.put(getKey(jarFile), record);
+    }
+
+    /**
+     * Returns whether any digest record refers to the OSGi bundle of the specified name
+     *
+     * @param bundleFileName the file name of the OSGi bundle
+     * @return true if the OSGi bundle is referred to by a digest record, else false
+     */
+    public boolean isReferenced(String bundleFileName) {
+        return records.values().stream().anyMatch(record -> record.bundleFileName.equals(bundleFileName));
+    }
+
+    /**
+     * Removes the digest records of all JAR files not in the specified set and returns them
+     *
+     * @param jarFiles the JAR files whose records are to be retained
+     * @return a {@link Map} of the removed {@link String} JAR file paths and their {@link Record}s
+     */
+    public Map<String, Record> retainAll(Iterable<Path> jarFiles) {
+        Map<String, Record> removed = new HashMap<>(records);
+        for (Path jarFile : jarFiles) {
+            removed.remove(getKey(jarFile));
+        }
+        removed.keySet().forEach(records::remove);
+        return removed;
+    }
+
+    /**
+     * Writes the digest store to the target directory, replacing the previous version atomically
+     *
+     * @throws IOException if an I/O error occurs when writing the digest store
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        records.forEach((jarFile, record) -> properties.setProperty(jarFile,
+                record.contentDigest + RECORD_SEPARATOR + record.settingsDigest + RECORD_SEPARATOR
+                        + record.bundleFileName));
+        Path directory = storeFile.toAbsolutePath().getParent();
+        Path temporaryFile = Files.createTempFile(directory, Constants.DIGEST_STORE_FILE, ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+                properties.store(outputStream, "JAR to OSGi bundle conversion digests");
+            }
+            BundleWriter.moveIntoPlace(temporaryFile, storeFile);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 digest of the content of the file
+     *
+     * @param file the file to be digested
+     * @return the hexadecimal SHA-256 digest of the content of the file
+     * @throws IOException if an I/O error occurs when reading the file
+     */
+    public static String digest(Path file) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 digest of the {@code String} value
+     *
+     * @param value the {@link String} value to be digested
+     * @return the hexadecimal SHA-256 digest of the {@code String} value
+     */
+    public static String digest(String value) {
+        return toHex(newMessageDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns a new SHA-256 {@code MessageDigest} instance
+     *
+     * @return a new SHA-256 {@link MessageDigest} instance
+     */
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implementation is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the lowercase hexadecimal representation of the bytes
+     *
+     * @param bytes the bytes to be represented
+     * @return the lowercase hexadecimal {@link String} representation of the bytes
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte aByte : bytes) {
+            hex.append(Character.forDigit((aByte >> 4) & 0xf, 16)).append(Character.forDigit(aByte & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns the key under which the digest record of the JAR file is stored
+     *
+     * @param jarFile the JAR file
+     * @return the absolute, normalized {@link String} path of the JAR file
+     */
+    private static String getKey(Path jarFile) {
+        return jarFile.toAbsolutePath().normalize().toString();
+    }
+
+}
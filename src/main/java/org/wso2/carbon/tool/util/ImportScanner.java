@@ -0,0 +1,196 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * a Java class which computes the Java packages to be imported by the OSGi bundle of a JAR file, from the constant
+ * pools of its class files
+ * <p>
+ * The class files are decompressed and scanned in parallel, each thread reusing its own
+ * {@code ConstantPoolScanner}.
+ */
+public class ImportScanner {
+    private static final Logger LOGGER = Logger.getLogger(ImportScanner.class.getName());
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private static final String MODULE_INFO_CLASS = "module-info.class";
+    private static final String JAVA_PACKAGE = "java";
+    /**
+     * the number of class files from which the class files of a JAR file are scanned in parallel
+     */
+    private static final int PARALLEL_SCAN_THRESHOLD = 64;
+
+    private static final ThreadLocal<ConstantPoolScanner> SCANNERS = ThreadLocal.withInitial(ConstantPoolScanner::new);
+
+    /**
+     * Returns the Java packages referenced by the class files of the JAR file, in lexicographical order, excluding
+     * the {@code java.*} packages and the specified packages
+     *
+     * @param jarFile          the JAR file whose class files are to be scanned
+     * @param excludedPackages the packages which are not to be imported, such as the packages of the JAR file itself
+     * @return a {@link List} of the {@link String} names of the packages to be imported
+     * @throws IOException if an I/O error occurs when reading the JAR file
+     */
+    public static List<String> listImportedPackages(Path jarFile, Collection<String> excludedPackages)
+            throws IOException {
+        return listImportedPackages(jarFile, Collections.emptyList(), excludedPackages);
+    }
+
+    /**
+     * Returns the Java packages referenced by the class files of the JAR file and of its nested JAR files, in
+     * lexicographical order, excluding the {@code java.*} packages and the specified packages
+     * <p>
+     * Each nested JAR file is streamed out of the JAR file and its class files are scanned in sequence, while the
+     * nested JAR files are scanned in parallel with one another.
+     *
+     * @param jarFile          the JAR file whose class files are to be scanned
+     * @param nestedJars       the entry names of the nested JAR files whose class files are to be scanned
+     * @param excludedPackages the packages which are not to be imported, such as the packages of the JAR file itself
+     * @return a {@link List} of the {@link String} names of the packages to be imported
+     * @throws IOException if an I/O error occurs when reading the JAR file
+     */
+    public static List<String> listImportedPackages(Path jarFile, List<String> nestedJars,
+            Collection<String> excludedPackages) throws IOException {
+        Set<String> referencedPackages = ConcurrentHashMap.newKeySet();
+        try (ZipFile zipFile = new ZipFile(jarFile.toFile())) {
+            List<ZipEntry> classFiles = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (isClassFile(entry)) {
+                    classFiles.add(entry);
+                }
+            }
+
+            Stream<ZipEntry> stream = (classFiles.size() >= PARALLEL_SCAN_THRESHOLD) ?
+                    classFiles.parallelStream() :
+                    classFiles.stream();
+            try {
+                stream.forEach(entry -> {
+                    // collects into a thread-confined set first, so that the shared set is updated once per class
+                    Set<String> packages = new HashSet<>();
+                    if (scan(zipFile, entry, packages)) {
+                        referencedPackages.addAll(packages);
+                    } else {
+                        LOGGER.fine(String.format("Skipped the invalid class file[%s] of JAR file[%s].",
+                                entry.getName(), jarFile));
+                    }
+                });
+
+                Stream<String> nestedJarStream = (nestedJars.size() > 1) ?
+                        nestedJars.parallelStream() :
+                        nestedJars.stream();
+                nestedJarStream.forEach(nestedJar -> scanNestedJar(zipFile, nestedJar, referencedPackages));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        List<String> importedPackages = new ArrayList<>();
+        Set<String> excluded = new HashSet<>(excludedPackages);
+        for (String packageName : referencedPackages) {
+            if ((!excluded.contains(packageName)) && (!isJavaPackage(packageName))) {
+                importedPackages.add(packageName);
+            }
+        }
+        importedPackages.sort(null);
+        return importedPackages;
+    }
+
+    /**
+     * Scans a single class file of the JAR file using the {@code ConstantPoolScanner} of the current thread
+     *
+     * @param zipFile  the {@link ZipFile} of the JAR file
+     * @param entry    the {@link ZipEntry} of the class file
+     * @param packages the {@link Set} to which the referenced package names are to be added
+     * @return true if the class file was parsed, false if it is not a valid class file
+     * @throws UncheckedIOException if an I/O error occurs when reading the class file
+     */
+    private static boolean scan(ZipFile zipFile, ZipEntry entry, Set<String> packages) {
+        try (InputStream inputStream = zipFile.getInputStream(entry)) {
+            return SCANNERS.get().scan(inputStream, packages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scans the class files of a nested JAR file using the {@code ConstantPoolScanner} of the current thread
+     *
+     * @param zipFile            the {@link ZipFile} of the enclosing JAR file
+     * @param nestedJar          the entry name of the nested JAR file
+     * @param referencedPackages the {@link Set} to which the referenced package names are to be added
+     * @throws UncheckedIOException if an I/O error occurs when reading the nested JAR file
+     */
+    private static void scanNestedJar(ZipFile zipFile, String nestedJar, Set<String> referencedPackages) {
+        ConstantPoolScanner scanner = SCANNERS.get();
+        Set<String> packages = new HashSet<>();
+        try {
+            NestedJarReader.read(zipFile, nestedJar, (entry, inputStream) -> {
+                if ((isClassFile(entry)) && (!scanner.scan(inputStream, packages))) {
+                    LOGGER.fine(String.format("Skipped the invalid class file[%s] of nested JAR file[%s].",
+                            entry.getName(), nestedJar));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        referencedPackages.addAll(packages);
+    }
+
+    /**
+     * Returns true if the entry is a class file to be scanned
+     *
+     * @param entry the {@link ZipEntry}
+     * @return true if the entry is a class file other than a module descriptor, else false
+     */
+    private static boolean isClassFile(ZipEntry entry) {
+        String name = entry.getName();
+        return (!entry.isDirectory()) && (name.endsWith(CLASS_FILE_EXTENSION)) && (!name.endsWith(MODULE_INFO_CLASS));
+    }
+
+    /**
+     * Returns true if the package is the {@code java} package or one of its subpackages, which are always provided
+     * by the system bundle and cannot be imported
+     *
+     * @param packageName the package name
+     * @return true if the package is a {@code java.*} package, else false
+     */
+    private static boolean isJavaPackage(String packageName) {
+        return (packageName.startsWith(JAVA_PACKAGE)) && ((packageName.length() == JAVA_PACKAGE.length()) || (
+                packageName.charAt(JAVA_PACKAGE.length()) == '.'));
+    }
+
+}
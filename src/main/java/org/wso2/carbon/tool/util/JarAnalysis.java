@@ -0,0 +1,112 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a Java class which holds the outcome of analyzing the content of a JAR file, from which the manifest of its OSGi
+ * bundle is generated
+ * <p>
+ * The {@link JarMetadata} of the JAR file is read during the same central directory scan as its packages.
+ * <p>
+ * Instances of this class are immutable, hence the analysis of a JAR file may be reused by any number of
+ * conversions of the same content.
+ */
+public class JarAnalysis {
+
+    private final List<String> packages;
+    private final List<String> importedPackages;
+    private final List<String> nestedJars;
+    private final JarMetadata metadata;
+
+    /**
+     * Constructs a new JAR file analysis
+     *
+     * @param packages         the Java packages of the JAR file and its nested JAR files, in lexicographical order
+     * @param importedPackages the Java packages to be imported by the OSGi bundle, in lexicographical order
+     * @param nestedJars       the entry names of the nested JAR files to be placed in the OSGi bundle
+     */
+    public JarAnalysis(List<String> packages, List<String> importedPackages, List<String> nestedJars) {
+        this(packages, importedPackages, nestedJars, JarMetadata.EMPTY);
+    }
+
+    /**
+     * Constructs a new JAR file analysis
+     *
+     * @param packages         the Java packages of the JAR file and its nested JAR files, in lexicographical order
+     * @param importedPackages the Java packages to be imported by the OSGi bundle, in lexicographical order
+     * @param nestedJars       the entry names of the nested JAR files to be placed in the OSGi bundle
+     * @param metadata         the {@link JarMetadata} of the JAR file
+     */
+    public JarAnalysis(List<String> packages, List<String> importedPackages, List<String> nestedJars,
+            JarMetadata metadata) {
+        this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+        this.importedPackages = Collections.unmodifiableList(new ArrayList<>(importedPackages));
+        this.nestedJars = Collections.unmodifiableList(new ArrayList<>(nestedJars));
+        this.metadata = metadata;
+    }
+
+    /**
+     * Analyzes the JAR file, recording the durations of the package and import scans
+     * <p>
+     * The metadata of the JAR file is read during the package scan.
+     *
+     * @param jarFile the JAR file to be analyzed
+     * @param metrics the {@link ConversionMetrics} into which the stage durations and counters are to be recorded
+     * @return the {@link JarAnalysis} of the JAR file
+     * @throws IOException if an I/O error occurs when reading the JAR file
+     */
+    public static JarAnalysis analyze(Path jarFile, ConversionMetrics metrics) throws IOException {
+        long stageStartTime = ConversionMetrics.now();
+        List<String> nestedJars = new ArrayList<>();
+        JarMetadata.Collector metadataCollector = new JarMetadata.Collector();
+        List<String> packages = BundleGeneratorUtils.indexPackages(jarFile, nestedJars, metadataCollector, metrics)
+                .getPackages();
+        Path jarFileName = jarFile.getFileName();
+        JarMetadata metadata = metadataCollector.toMetadata((jarFileName != null) ? jarFileName.toString() : "");
+        metrics.record(ConversionMetrics.Stage.PACKAGE_SCAN, stageStartTime);
+
+        stageStartTime = ConversionMetrics.now();
+        List<String> importedPackages = ImportScanner.listImportedPackages(jarFile, nestedJars, packages);
+        metrics.record(ConversionMetrics.Stage.IMPORT_SCAN, stageStartTime);
+        return new JarAnalysis(packages, importedPackages, nestedJars, metadata);
+    }
+
+    public List<String> getPackages() {
+        return packages;
+    }
+
+    public List<String> getImportedPackages() {
+        return importedPackages;
+    }
+
+    public List<String> getNestedJars() {
+        return nestedJars;
+    }
+
+    public JarMetadata getMetadata() {
+        return metadata;
+    }
+
+}
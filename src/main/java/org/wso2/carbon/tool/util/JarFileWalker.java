@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which discovers the JAR files within a directory tree, optionally filtered by include and exclude
+ * glob patterns
+ * <p>
+ * The patterns are matched against the path of each file relative to the root directory, for example
+ * {@code repository/components/*&#47;*.jar}. A JAR file is passed on if it matches any include pattern and no exclude
+ * pattern, and a directory matching an exclude pattern is not entered.
+ */
+public class JarFileWalker {
+    private static final Logger LOGGER = Logger.getLogger(JarFileWalker.class.getName());
+    private static final String GLOB_SYNTAX = "glob:";
+    private static final String DEFAULT_INCLUDE_PATTERN = "**.jar";
+
+    private final Path root;
+    private final int maxDepth;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final List<Path> skippedDirectories = new ArrayList<>();
+
+    /**
+     * Constructs a new JAR file walker
+     *
+     * @param root             the root directory of the walk
+     * @param recursive        true if the subdirectories are to be walked, else false
+     * @param includePatterns  the glob patterns of the JAR files to be included, or an empty list to include all
+     * @param excludePatterns  the glob patterns of the JAR files and directories to be excluded
+     */
+    public JarFileWalker(Path root, boolean recursive, List<String> includePatterns, List<String> excludePatterns) {
+        this.root = root;
+        this.maxDepth = (recursive) ? Integer.MAX_VALUE : 1;
+        this.includes = toPathMatchers(root.getFileSystem(), (includePatterns.isEmpty()) ?
+                Collections.singletonList(DEFAULT_INCLUDE_PATTERN) : includePatterns);
+        this.excludes = toPathMatchers(root.getFileSystem(), excludePatterns);
+    }
+
+    /**
+     * Excludes the specified directory, such as a target directory nested within the root, from the walk
+     *
+     * @param directory the directory to be excluded
+     */
+    public void skipDirectory(Path directory) {
+        skippedDirectories.add(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Walks the directory tree and passes each matching JAR file to the {@code Consumer} as soon as it is visited
+     *
+     * @param consumer the {@link Consumer} to which each matching JAR file is to be passed
+     * @throws IOException if an I/O error occurs when walking the directory tree
+     */
+    public void walk(Consumer<Path> consumer) throws IOException {
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) {
+                if (!directory.equals(root) && ((skippedDirectories
+                        .contains(directory.toAbsolutePath().normalize())) || (matches(excludes, directory)))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if ((attrs.isRegularFile()) && (file.toString().endsWith(".jar")) && (matches(includes, file)) && (
+                        !matches(excludes, file))) {
+                    consumer.accept(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // an unreadable file or directory should not abort the discovery of the others
+                LOGGER.info(String.format("Failed to visit %s: %s", file, e.getMessage()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns true if the path, relative to the root directory, matches any of the {@code PathMatcher}s
+     *
+     * @param pathMatchers the {@link PathMatcher}s
+     * @param path         the {@link Path} to be matched
+     * @return true if the relative path matches any of the {@link PathMatcher}s, else false
+     */
+    private boolean matches(List<PathMatcher> pathMatchers, Path path) {
+        Path relativePath = root.relativize(path);
+        for (PathMatcher pathMatcher : pathMatchers) {
+            if (pathMatcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the glob {@code PathMatcher}s of the patterns
+     *
+     * @param fileSystem the {@link FileSystem} of the paths to be matched
+     * @param patterns   the glob patterns
+     * @return a {@link List} of {@link PathMatcher}s
+     */
+    private static List<PathMatcher> toPathMatchers(FileSystem fileSystem, List<String> patterns) {
+        List<PathMatcher> pathMatchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            pathMatchers.add(fileSystem.getPathMatcher(GLOB_SYNTAX + pattern));
+        }
+        return pathMatchers;
+    }
+
+}
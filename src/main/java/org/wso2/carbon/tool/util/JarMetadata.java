@@ -0,0 +1,282 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which holds the identity of a JAR file as declared by its own metadata, that is the Maven coordinates
+ * of its {@code META-INF/maven/<groupId>/<artifactId>/pom.properties} file and the headers of its manifest
+ * <p>
+ * The metadata entries are read during the central directory scan which indexes the packages of the JAR file, hence
+ * the JAR file is not opened again. Instances of this class are immutable.
+ */
+public class JarMetadata {
+
+    private static final Logger LOGGER = Logger.getLogger(JarMetadata.class.getName());
+    private static final String MAVEN_DIRECTORY = "META-INF/maven/";
+    private static final String POM_PROPERTIES_FILE = "/pom.properties";
+    private static final String IMPLEMENTATION_VERSION = "Implementation-Version";
+    /**
+     * the maximum size of a metadata entry to be read, beyond which the entry is deemed not to be genuine metadata
+     */
+    private static final long MAXIMUM_ENTRY_SIZE = 64 * 1024;
+    private static final int MAXIMUM_VERSION_NUMBER_DIGITS = 9;
+
+    public static final JarMetadata EMPTY = new JarMetadata(null, null, null, null, null, null);
+
+    private final String groupId;
+    private final String artifactId;
+    private final String mavenVersion;
+    private final String manifestSymbolicName;
+    private final String manifestBundleVersion;
+    private final String implementationVersion;
+
+    /**
+     * Constructs a new JAR file metadata
+     *
+     * @param groupId               the Maven group ID, if any, else {@code null}
+     * @param artifactId            the Maven artifact ID, if any, else {@code null}
+     * @param mavenVersion          the Maven version, if any, else {@code null}
+     * @param manifestSymbolicName  the {@code Bundle-SymbolicName} of the manifest, if any, else {@code null}
+     * @param manifestBundleVersion the {@code Bundle-Version} of the manifest, if any, else {@code null}
+     * @param implementationVersion the {@code Implementation-Version} of the manifest, if any, else {@code null}
+     */
+    public JarMetadata(String groupId, String artifactId, String mavenVersion, String manifestSymbolicName,
+            String manifestBundleVersion, String implementationVersion) {
+        this.groupId = trim(groupId);
+        this.artifactId = trim(artifactId);
+        this.mavenVersion = trim(mavenVersion);
+        this.manifestSymbolicName = trim(manifestSymbolicName);
+        this.manifestBundleVersion = trim(manifestBundleVersion);
+        this.implementationVersion = trim(implementationVersion);
+    }
+
+    /**
+     * a Java class which collects the metadata entries of a JAR file as they are read, and selects the Maven
+     * coordinates of the JAR file among those of any shaded artifacts
+     * <p>
+     * Instances of this class are not thread-safe.
+     */
+    static class Collector {
+        private final List<Properties> pomProperties = new ArrayList<>();
+        private Attributes manifestAttributes;
+
+        /**
+         * Adds the content of a metadata entry of the JAR file, ignoring it if malformed
+         *
+         * @param entryName the name of the entry
+         * @param content   the uncompressed content of the entry
+         */
+        void add(String entryName, byte[] content) {
+            try {
+                if (entryName.equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                    manifestAttributes = new Manifest(new ByteArrayInputStream(content)).getMainAttributes();
+                } else {
+                    Properties properties = new Properties();
+                    properties.load(new ByteArrayInputStream(content));
+                    pomProperties.add(properties);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.fine(String.format("Ignoring the malformed metadata entry[%s]: %s", entryName,
+                        e.getMessage()));
+            }
+        }
+
+        /**
+         * Returns the metadata collected for the JAR file
+         * <p>
+         * Of several {@code pom.properties} files, the one whose artifact ID and version prefix the JAR file name is
+         * selected, as the others belong to the artifacts shaded into the JAR file.
+         *
+         * @param jarFileName the file name of the JAR file
+         * @return the {@link JarMetadata} of the JAR file
+         */
+        JarMetadata toMetadata(String jarFileName) {
+            Properties selected = (pomProperties.size() == 1) ? pomProperties.get(0) : null;
+            for (Properties properties : pomProperties) {
+                String artifactId = properties.getProperty("artifactId");
+                String version = properties.getProperty("version");
+                if ((artifactId != null) && ((jarFileName.equals(artifactId + ".jar")) || ((version != null)
+                        && (jarFileName.startsWith(artifactId + "-" + version))))) {
+                    selected = properties;
+                    break;
+                }
+            }
+            if ((selected == null) && (manifestAttributes == null)) {
+                return EMPTY;
+            }
+            return new JarMetadata((selected != null) ? selected.getProperty("groupId") : null,
+                    (selected != null) ? selected.getProperty("artifactId") : null,
+                    (selected != null) ? selected.getProperty("version") : null,
+                    (manifestAttributes != null) ? manifestAttributes.getValue(Constants.BUNDLE_SYMBOLIC_NAME) : null,
+                    (manifestAttributes != null) ? manifestAttributes.getValue(Constants.BUNDLE_VERSION) : null,
+                    (manifestAttributes != null) ? manifestAttributes.getValue(IMPLEMENTATION_VERSION) : null);
+        }
+    }
+
+    /**
+     * Returns true if the entry of a JAR file holds metadata from which the identity of the JAR file is derived
+     *
+     * @param entry the central directory {@link ZipCentralDirectoryReader.Entry} of the entry
+     * @return true if the entry is the manifest or a {@code pom.properties} file of a reasonable size, else false
+     */
+    static boolean isMetadataEntry(ZipCentralDirectoryReader.Entry entry) {
+        String name = entry.getName();
+        if ((entry.getSize() > MAXIMUM_ENTRY_SIZE) || (entry.isDirectory())) {
+            return false;
+        }
+        if (name.equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+            return true;
+        }
+        // META-INF/maven/<groupId>/<artifactId>/pom.properties
+        if (!(name.startsWith(MAVEN_DIRECTORY)) || !(name.endsWith(POM_PROPERTIES_FILE))) {
+            return false;
+        }
+        int groupEnd = name.indexOf('/', MAVEN_DIRECTORY.length());
+        return ((groupEnd > MAVEN_DIRECTORY.length()) && (name.indexOf('/', groupEnd + 1) == name.length()
+                - POM_PROPERTIES_FILE.length()) && (name.length() - POM_PROPERTIES_FILE.length() > groupEnd + 1));
+    }
+
+    /**
+     * Returns the symbolic name declared by the metadata, which is the {@code Bundle-SymbolicName} of a JAR file
+     * which is already an OSGi bundle, else derived from the Maven coordinates
+     *
+     * @return the symbolic name, without directives, or {@code null} if the metadata declares none
+     */
+    public String getSymbolicName() {
+        if (manifestSymbolicName != null) {
+            int directivesIndex = manifestSymbolicName.indexOf(';');
+            String symbolicName = trim((directivesIndex != -1) ?
+                    manifestSymbolicName.substring(0, directivesIndex) :
+                    manifestSymbolicName);
+            if (symbolicName != null) {
+                return symbolicName;
+            }
+        }
+        if (artifactId == null) {
+            return null;
+        }
+        if ((groupId == null) || (artifactId.startsWith(groupId))) {
+            return artifactId;
+        }
+        return groupId + "." + artifactId;
+    }
+
+    /**
+     * Returns the OSGi version declared by the metadata, which is the Maven version if any, else the
+     * {@code Bundle-Version} or {@code Implementation-Version} of the manifest
+     *
+     * @return the OSGi version, or {@code null} if the metadata declares none
+     */
+    public String getVersion() {
+        for (String version : new String[] { mavenVersion, manifestBundleVersion, implementationVersion }) {
+            String osgiVersion = toOsgiVersion(version);
+            if (osgiVersion != null) {
+                return osgiVersion;
+            }
+        }
+        return null;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * Converts a version, such as a Maven version, to a valid OSGi version of the form
+     * {@code major.minor.micro[.qualifier]}
+     * <p>
+     * The leading numbers of the version, of which missing ones default to zero, are followed by the remainder of the
+     * version as the qualifier, in which characters other than letters, digits, '_' and '-' are replaced by '_'.
+     * For example, {@code 2.0-SNAPSHOT} is converted to {@code 2.0.0.SNAPSHOT}.
+     *
+     * @param version the version to be converted
+     * @return the OSGi version, or {@code null} if the version is {@code null} or blank
+     */
+    public static String toOsgiVersion(String version) {
+        version = trim(version);
+        if (version == null) {
+            return null;
+        }
+        String[] numbers = { "0", "0", "0" };
+        int count = 0;
+        int index = 0;
+        while (count < numbers.length) {
+            int end = index;
+            while ((end < version.length()) && (Character.isDigit(version.charAt(end))) && (end - index
+                    < MAXIMUM_VERSION_NUMBER_DIGITS)) {
+                end++;
+            }
+            if ((end == index) || ((end < version.length()) && (Character.isDigit(version.charAt(end))))) {
+                break;
+            }
+            numbers[count++] = Integer.toString(Integer.parseInt(version.substring(index, end)));
+            index = end;
+            if ((count < numbers.length) && (index + 1 < version.length()) && (version.charAt(index) == '.')
+                    && (Character.isDigit(version.charAt(index + 1)))) {
+                index++;
+            } else {
+                break;
+            }
+        }
+
+        String qualifier = version.substring(index);
+        if ((count > 0) && (!qualifier.isEmpty()) && ("._-".indexOf(qualifier.charAt(0)) != -1)) {
+            qualifier = qualifier.substring(1);
+        }
+        StringBuilder osgiVersion = new StringBuilder(String.join(".", numbers));
+        if (!qualifier.isEmpty()) {
+            osgiVersion.append('.');
+            for (char character : qualifier.toCharArray()) {
+                boolean valid = ((character < 0x80) && ((Character.isLetterOrDigit(character)) || (character == '_')
+                        || (character == '-')));
+                osgiVersion.append((valid) ? character : '_');
+            }
+        }
+        return osgiVersion.toString();
+    }
+
+    /**
+     * Returns the trimmed value, or {@code null} if the value is {@code null} or blank
+     *
+     * @param value the value to be trimmed
+     * @return the trimmed value, or {@code null} if the value is {@code null} or blank
+     */
+    private static String trim(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return (trimmed.isEmpty()) ? null : trimmed;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * a Java class which selects between memory-mapped and streamed I/O for reading .zip and .jar files, by file size
+ * <p>
+ * Files of at least the threshold size are memory-mapped, so that their central directory and content are read from
+ * the page cache rather than copied into heap buffers, which keeps very large JAR files from causing long garbage
+ * collection pauses. Smaller files are read using streamed I/O, for which the cost of mapping is not recovered.
+ */
+public class MappedFileReader {
+
+    /**
+     * the largest region mapped at once, as a {@link MappedByteBuffer} is indexed by an int
+     */
+    private static final long MAXIMUM_REGION_SIZE = Integer.MAX_VALUE;
+
+    private static volatile long threshold = Long.getLong(Constants.MAPPED_IO_THRESHOLD_PROPERTY,
+            Constants.DEFAULT_MAPPED_IO_THRESHOLD);
+
+    /**
+     * Sets the size from which files are memory-mapped
+     *
+     * @param mappedIoThreshold the size from which files are memory-mapped, in bytes
+     */
+    public static void setThreshold(long mappedIoThreshold) {
+        if (mappedIoThreshold < 0) {
+            throw new IllegalArgumentException("The memory-mapped I/O threshold must not be negative.");
+        }
+        threshold = mappedIoThreshold;
+    }
+
+    public static long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns true if a file of the specified size is to be memory-mapped
+     *
+     * @param fileSize the size of the file, in bytes
+     * @return true if the file is to be memory-mapped, else false
+     */
+    public static boolean isMapped(long fileSize) {
+        return fileSize >= threshold;
+    }
+
+    /**
+     * Maps a region of the file into memory, read-only
+     *
+     * @param channel  the {@link FileChannel} of the file
+     * @param position the file position at which the region starts
+     * @param size     the size of the region, in bytes
+     * @return a little-endian {@link MappedByteBuffer} of the region
+     * @throws IOException if an I/O error occurs when mapping the region
+     */
+    public static MappedByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Copies all bytes of the file to the {@code OutputStream}, memory-mapping the file if it is at least the
+     * threshold size, else reading it through the buffer
+     *
+     * @param file         the {@link Path} of the file to be copied
+     * @param outputStream the {@link OutputStream} to write to
+     * @param buffer       the buffer through which the bytes are passed to the {@link OutputStream}
+     * @return the number of bytes copied
+     * @throws IOException if an I/O error occurs when reading the file or writing to the {@link OutputStream}
+     */
+    public static long copy(Path file, OutputStream outputStream, byte[] buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (!isMapped(fileSize)) {
+                ByteBuffer bufferView = ByteBuffer.wrap(buffer);
+                long copied = 0;
+                int read;
+                while ((read = channel.read(bufferView)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                    copied += read;
+                    bufferView.clear();
+                }
+                return copied;
+            }
+
+            long position = 0;
+            while (position < fileSize) {
+                MappedByteBuffer region = map(channel, position, (int) Math.min(MAXIMUM_REGION_SIZE,
+                        fileSize - position));
+                while (region.hasRemaining()) {
+                    int length = Math.min(buffer.length, region.remaining());
+                    region.get(buffer, 0, length);
+                    outputStream.write(buffer, 0, length);
+                }
+                position += region.capacity();
+            }
+            return fileSize;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * a Java class which reads the entries of a JAR file nested within another JAR file, such as {@code lib/*.jar} of a
+ * fat JAR file, by streaming the nested JAR file out of the enclosing one, without extracting it to disk
+ */
+public class NestedJarReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * a consumer of the entries of a nested JAR file, which may read the content of each entry from the stream
+     */
+    public interface EntryConsumer {
+
+        /**
+         * Accepts an entry of the nested JAR file
+         *
+         * @param entry       the {@link ZipEntry} of the nested JAR file
+         * @param inputStream the {@link InputStream} of the entry content, which must not be closed
+         * @throws IOException if an I/O error occurs when reading the entry content
+         */
+        void accept(ZipEntry entry, InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * Returns true if the entry of a JAR file is a nested JAR file
+     *
+     * @param entryName the name of the JAR file entry
+     * @return true if the entry is a nested JAR file, else false
+     */
+    public static boolean isNestedJar(String entryName) {
+        return (entryName.endsWith(".jar")) && (entryName.lastIndexOf('/') < entryName.length() - 5);
+    }
+
+    /**
+     * Passes each entry of the nested JAR file to the {@code EntryConsumer}, in the order in which the entries are
+     * stored
+     *
+     * @param jarFile   the {@link ZipFile} of the enclosing JAR file
+     * @param nestedJar the name of the nested JAR file entry
+     * @param consumer  the {@link EntryConsumer} to which each entry is to be passed
+     * @return the number of entries of the nested JAR file
+     * @throws IOException if an I/O error occurs or if the nested JAR file does not exist
+     */
+    public static long read(ZipFile jarFile, String nestedJar, EntryConsumer consumer) throws IOException {
+        ZipEntry nestedJarEntry = jarFile.getEntry(nestedJar);
+        if (nestedJarEntry == null) {
+            throw new ZipException(String.format("Nested JAR file[%s] not found in %s", nestedJar,
+                    jarFile.getName()));
+        }
+        long entries = 0;
+        try (InputStream inputStream = jarFile.getInputStream(nestedJarEntry);
+                ZipInputStream nestedInputStream = new ZipInputStream(
+                        new BufferedInputStream(inputStream, BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = nestedInputStream.getNextEntry()) != null) {
+                entries++;
+                consumer.accept(entry, nestedInputStream);
+            }
+        }
+        return entries;
+    }
+
+}
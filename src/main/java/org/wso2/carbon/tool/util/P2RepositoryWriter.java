@@ -0,0 +1,332 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+
+/**
+ * a Java class which writes the p2 artifact and metadata repository of the OSGi bundles of a directory, as the
+ * {@code artifacts.jar} and {@code content.jar} files of the directory
+ * <p>
+ * The artifact and the installable unit of each bundle are streamed into the compressed repository files as the
+ * bundle is added, from the manifest computed for the bundle, hence the bundles are not read again by a separate p2
+ * publishing pass. The repository files are written to temporary files, which are moved into place once the
+ * repository is finished, hence the repository of a run which did not finish is never visible. As the number of
+ * bundles is unknown while streaming, the artifact and unit lists carry no size hint, which p2 treats as optional.
+ * Instances of this class are thread-safe.
+ */
+public class P2RepositoryWriter implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(P2RepositoryWriter.class.getName());
+    private static final String INDENT = "  ";
+
+    private final Path repositoryDirectory;
+    private final Path artifactsFile;
+    private final Path contentFile;
+    private final Writer artifactsWriter;
+    private final Writer contentWriter;
+    private final Set<String> units = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * Starts the p2 repository of the OSGi bundles of the directory
+     *
+     * @param repositoryDirectory the directory which holds the OSGi bundles
+     * @param repositoryName      the name of the repository
+     * @throws IOException if an I/O error occurs when creating the repository files
+     */
+    public P2RepositoryWriter(Path repositoryDirectory, String repositoryName) throws IOException {
+        this.repositoryDirectory = repositoryDirectory;
+        this.artifactsFile = Files.createTempFile(repositoryDirectory, "." + Constants.P2_ARTIFACTS_FILE, ".tmp");
+        this.contentFile = Files.createTempFile(repositoryDirectory, "." + Constants.P2_CONTENT_FILE, ".tmp");
+        this.artifactsWriter = open(artifactsFile, "artifacts.xml");
+        this.contentWriter = open(contentFile, "content.xml");
+
+        String timestamp = Long.toString(System.currentTimeMillis());
+        artifactsWriter.write(String.format("<?xml version='1.0' encoding='UTF-8'?>%n"
+                + "<?artifactRepository version='1.1.0'?>%n"
+                + "<repository name='%s' type='org.eclipse.equinox.p2.artifact.repository.simpleRepository' "
+                + "version='1'>%n"
+                + "  <properties size='2'>%n"
+                + "    <property name='p2.timestamp' value='%s'/>%n"
+                + "    <property name='p2.compressed' value='true'/>%n"
+                + "  </properties>%n"
+                + "  <mappings size='1'>%n"
+                + "    <rule filter='(&amp; (classifier=osgi.bundle))' output='${repoUrl}/${id}_${version}.jar'/>%n"
+                + "  </mappings>%n"
+                + "  <artifacts>%n", escape(repositoryName), timestamp));
+        contentWriter.write(String.format("<?xml version='1.0' encoding='UTF-8'?>%n"
+                + "<?metadataRepository version='1.2.0'?>%n"
+                + "<repository name='%s' "
+                + "type='org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository' version='1'>%n"
+                + "  <properties size='2'>%n"
+                + "    <property name='p2.timestamp' value='%s'/>%n"
+                + "    <property name='p2.compressed' value='true'/>%n"
+                + "  </properties>%n"
+                + "  <units>%n", escape(repositoryName), timestamp));
+    }
+
+    /**
+     * Adds an OSGi bundle to the repository, reading its manifest from the bundle
+     *
+     * @param bundle the {@link Path} of the OSGi bundle
+     * @throws IOException if an I/O error occurs when reading the bundle or writing the repository
+     */
+    public void add(Path bundle) throws IOException {
+        Manifest manifest;
+        try (JarFile jarFile = new JarFile(bundle.toFile())) {
+            manifest = jarFile.getManifest();
+        }
+        if (manifest == null) {
+            throw new IOException(String.format("OSGi bundle[%s] has no manifest.", bundle));
+        }
+        add(bundle, manifest);
+    }
+
+    /**
+     * Adds an OSGi bundle of the specified manifest to the repository
+     *
+     * @param bundle   the {@link Path} of the OSGi bundle
+     * @param manifest the {@link Manifest} of the OSGi bundle
+     * @throws IOException if the manifest has no symbolic name or version, or if an I/O error occurs when writing the
+     *                     repository
+     */
+    public void add(Path bundle, Manifest manifest) throws IOException {
+        Attributes attributes = manifest.getMainAttributes();
+        List<String> symbolicNames = getHeaderValues(attributes.getValue(Constants.BUNDLE_SYMBOLIC_NAME));
+        String version = attributes.getValue(Constants.BUNDLE_VERSION);
+        if ((symbolicNames.isEmpty()) || (version == null)) {
+            throw new IOException(String.format("OSGi bundle[%s] has no symbolic name or version.", bundle));
+        }
+        String symbolicName = symbolicNames.get(0);
+        String name = attributes.getValue(Constants.BUNDLE_NAME);
+        long size = Files.size(bundle);
+        String id = escape(symbolicName);
+        String escapedVersion = escape(version);
+
+        StringBuilder artifact = new StringBuilder();
+        artifact.append(String.format("    <artifact classifier='osgi.bundle' id='%s' version='%s'>%n", id,
+                escapedVersion));
+        artifact.append(String.format("      <properties size='2'>%n"
+                + "        <property name='artifact.size' value='%d'/>%n"
+                + "        <property name='download.size' value='%d'/>%n"
+                + "      </properties>%n"
+                + "    </artifact>%n", size, size));
+
+        List<String> exportedPackages = getHeaderValues(attributes.getValue(Constants.EXPORT_PACKAGE));
+        List<String> importedPackages = getHeaderValues(attributes.getValue(Constants.IMPORT_PACKAGE));
+        StringBuilder unit = new StringBuilder();
+        unit.append(String.format("    <unit id='%s' version='%s'>%n", id, escapedVersion));
+        unit.append(String.format("      <update id='%s' range='[0.0.0,%s)' severity='0'/>%n", id, escapedVersion));
+        if (name != null) {
+            unit.append(String.format("      <properties size='1'>%n"
+                    + "        <property name='org.eclipse.equinox.p2.name' value='%s'/>%n"
+                    + "      </properties>%n", escape(name)));
+        }
+        unit.append(String.format("      <provides size='%d'>%n", (3 + exportedPackages.size())));
+        unit.append(String.format("        <provided namespace='org.eclipse.equinox.p2.iu' name='%s' version='%s'/>%n",
+                id, escapedVersion));
+        unit.append(String.format("        <provided namespace='osgi.bundle' name='%s' version='%s'/>%n", id,
+                escapedVersion));
+        for (String exportedPackage : exportedPackages) {
+            unit.append(String.format("        <provided namespace='java.package' name='%s' version='0.0.0'/>%n",
+                    escape(exportedPackage)));
+        }
+        unit.append(String.format("        <provided namespace='org.eclipse.equinox.p2.eclipse.type' name='bundle' "
+                + "version='1.0.0'/>%n"));
+        unit.append(String.format("      </provides>%n"));
+        if (!importedPackages.isEmpty()) {
+            unit.append(String.format("      <requires size='%d'>%n", importedPackages.size()));
+            for (String importedPackage : importedPackages) {
+                // the imports of the converted bundles are optional
+                unit.append(String.format("        <required namespace='java.package' name='%s' range='0.0.0' "
+                        + "optional='true'/>%n", escape(importedPackage)));
+            }
+            unit.append(String.format("      </requires>%n"));
+        }
+        unit.append(String.format("      <artifacts size='1'>%n"
+                + "        <artifact classifier='osgi.bundle' id='%s' version='%s'/>%n"
+                + "      </artifacts>%n"
+                + "      <touchpoint id='org.eclipse.equinox.p2.osgi' version='1.0.0'/>%n"
+                + "      <touchpointData size='1'>%n"
+                + "        <instructions size='2'>%n"
+                + "          <instruction key='manifest'>%s</instruction>%n"
+                + "          <instruction key='configure'>%s</instruction>%n"
+                + "        </instructions>%n"
+                + "      </touchpointData>%n"
+                + "    </unit>%n", id, escapedVersion,
+                escape(Constants.BUNDLE_SYMBOLIC_NAME + ": " + symbolicName + "\n" + Constants.BUNDLE_VERSION + ": "
+                        + version + "\n"), escape(Constants.P2_INF_CONTENT.substring(
+                        Constants.P2_INF_CONTENT.indexOf('=') + 1))));
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The p2 repository is closed.");
+            }
+            // JAR files of the same name share their OSGi bundle
+            if (units.add(symbolicName + "_" + version)) {
+                artifactsWriter.write(artifact.toString());
+                contentWriter.write(unit.toString());
+            }
+        }
+    }
+
+    /**
+     * Finishes the repository and moves its files into place in the repository directory
+     *
+     * @throws IOException if an I/O error occurs when writing or moving the repository files
+     */
+    public synchronized void finish() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The p2 repository is closed.");
+        }
+        artifactsWriter.write(String.format("  </artifacts>%n</repository>%n"));
+        contentWriter.write(String.format("  </units>%n</repository>%n"));
+        closeWriters();
+        BundleWriter.moveIntoPlace(artifactsFile, repositoryDirectory.resolve(Constants.P2_ARTIFACTS_FILE));
+        BundleWriter.moveIntoPlace(contentFile, repositoryDirectory.resolve(Constants.P2_CONTENT_FILE));
+        LOGGER.info(String.format("Wrote the p2 repository of %d OSGi bundle(s) to directory[%s].", units.size(),
+                repositoryDirectory));
+    }
+
+    /**
+     * Closes the repository files, deleting them unless the repository was finished
+     *
+     * @throws IOException if an I/O error occurs when closing or deleting the repository files
+     */
+    @Override public synchronized void close() throws IOException {
+        closeWriters();
+        Files.deleteIfExists(artifactsFile);
+        Files.deleteIfExists(contentFile);
+    }
+
+    /**
+     * Closes the repository files, unless already closed
+     *
+     * @throws IOException if an I/O error occurs when closing the repository files
+     */
+    private void closeWriters() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                artifactsWriter.close();
+            } finally {
+                contentWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a compressed repository file which holds a single XML entry
+     *
+     * @param file      the repository file
+     * @param entryName the name of the XML entry
+     * @return a {@link Writer} of the XML entry
+     * @throws IOException if an I/O error occurs when opening the repository file
+     */
+    private static Writer open(Path file, String entryName) throws IOException {
+        JarOutputStream outputStream = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        outputStream.putNextEntry(new ZipEntry(entryName));
+        return new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the names of the clauses of a manifest header, without their parameters
+     *
+     * @param header the manifest header value, if any
+     * @return a {@link List} of the names of the clauses of the header, empty if the header is {@code null}
+     */
+    static List<String> getHeaderValues(String header) {
+        List<String> values = new ArrayList<>();
+        if (header == null) {
+            return values;
+        }
+        boolean quoted = false;
+        int clauseStart = 0;
+        for (int index = 0; index <= header.length(); index++) {
+            char character = (index < header.length()) ? header.charAt(index) : ',';
+            if (character == '"') {
+                quoted = !quoted;
+            } else if ((character == ',') && (!quoted)) {
+                String clause = header.substring(clauseStart, index);
+                int parametersIndex = clause.indexOf(';');
+                String value = ((parametersIndex != -1) ? clause.substring(0, parametersIndex) : clause).trim();
+                if (!value.isEmpty()) {
+                    values.add(value);
+                }
+                clauseStart = index + 1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value escaped for an XML attribute or element
+     *
+     * @param value the value to be escaped
+     * @return the escaped value
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char character : value.toCharArray()) {
+            switch (character) {
+            case '&':
+                escaped.append("&amp;");
+                break;
+            case '<':
+                escaped.append("&lt;");
+                break;
+            case '>':
+                escaped.append("&gt;");
+                break;
+            case '\'':
+                escaped.append("&apos;");
+                break;
+            case '"':
+                escaped.append("&quot;");
+                break;
+            default:
+                if (character < 0x20) {
+                    escaped.append(String.format(Locale.ROOT, "&#x%X;", (int) character));
+                } else {
+                    escaped.append(character);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+}
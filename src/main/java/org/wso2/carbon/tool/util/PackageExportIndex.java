@@ -0,0 +1,279 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which indexes the packages exported by the OSGi bundles of a batch, and writes the index as a JSON
+ * file alongside the bundles
+ * <p>
+ * The index maps each exported package to the bundles which export it, so that the packages of the bundles may be
+ * looked up without opening them. A package exported by bundles of different symbolic names is reported as a split
+ * package, and a package exported by several bundles of the same symbolic name, such as several versions of the same
+ * library, is reported as a duplicate export. Either leaves the OSGi resolver with several candidates to choose from.
+ * <p>
+ * Each bundle is added as it is produced, from the manifest computed for it. The index file is written to a temporary
+ * file, which is moved into place, hence a partially written index is never visible. Instances of this class are
+ * thread-safe.
+ */
+public class PackageExportIndex {
+    private static final Logger LOGGER = Logger.getLogger(PackageExportIndex.class.getName());
+
+    /**
+     * the bundles of the index, by bundle file name
+     */
+    private final Map<String, Exporter> bundles = new ConcurrentHashMap<>();
+    /**
+     * the file names of the bundles which export each package, by package name
+     */
+    private final Map<String, Set<String>> exporters = new ConcurrentHashMap<>();
+
+    /**
+     * a Java class which holds the identity and exported packages of a bundle of the index
+     */
+    private static class Exporter {
+        private final String symbolicName;
+        private final String version;
+        private final List<String> packages;
+
+        private Exporter(String symbolicName, String version, List<String> packages) {
+            this.symbolicName = symbolicName;
+            this.version = version;
+            this.packages = packages;
+        }
+    }
+
+    /**
+     * Adds an OSGi bundle to the index, reading its manifest from the bundle, unless a bundle of the same file name
+     * was already added
+     *
+     * @param bundle the {@link Path} of the OSGi bundle
+     * @throws IOException if an I/O error occurs when reading the bundle, or if the bundle has no manifest
+     */
+    public void add(Path bundle) throws IOException {
+        if (bundles.containsKey(getBundleFileName(bundle))) {
+            return;
+        }
+        Manifest manifest;
+        try (JarFile jarFile = new JarFile(bundle.toFile())) {
+            manifest = jarFile.getManifest();
+        }
+        if (manifest == null) {
+            throw new IOException(String.format("OSGi bundle[%s] has no manifest.", bundle));
+        }
+        add(bundle, manifest);
+    }
+
+    /**
+     * Adds an OSGi bundle of the specified manifest to the index, unless a bundle of the same file name was already
+     * added
+     *
+     * @param bundle   the {@link Path} of the OSGi bundle
+     * @param manifest the {@link Manifest} of the OSGi bundle
+     * @throws IOException if the manifest has no symbolic name
+     */
+    public void add(Path bundle, Manifest manifest) throws IOException {
+        Attributes attributes = manifest.getMainAttributes();
+        List<String> symbolicNames = P2RepositoryWriter.getHeaderValues(
+                attributes.getValue(Constants.BUNDLE_SYMBOLIC_NAME));
+        if (symbolicNames.isEmpty()) {
+            throw new IOException(String.format("OSGi bundle[%s] has no symbolic name.", bundle));
+        }
+        List<String> packages = P2RepositoryWriter.getHeaderValues(attributes.getValue(Constants.EXPORT_PACKAGE));
+        Collections.sort(packages);
+        String bundleFileName = getBundleFileName(bundle);
+        Exporter exporter = new Exporter(symbolicNames.get(0), attributes.getValue(Constants.BUNDLE_VERSION),
+                packages);
+        if (bundles.putIfAbsent(bundleFileName, exporter) == null) {
+            for (String packageName : packages) {
+                exporters.computeIfAbsent(packageName, name -> ConcurrentHashMap.newKeySet()).add(bundleFileName);
+            }
+        }
+    }
+
+    /**
+     * Returns the packages exported by bundles of different symbolic names
+     *
+     * @return a {@link Map} of the file names of the exporting bundles, in lexicographical order, by package name
+     */
+    public Map<String, List<String>> getSplitPackages() {
+        return getConflicts(true);
+    }
+
+    /**
+     * Returns the packages exported by several bundles, all of the same symbolic name
+     *
+     * @return a {@link Map} of the file names of the exporting bundles, in lexicographical order, by package name
+     */
+    public Map<String, List<String>> getDuplicateExports() {
+        return getConflicts(false);
+    }
+
+    /**
+     * Writes the index as a JSON file, replacing any previous index
+     * <p>
+     * The file holds the bundles along with their symbolic names, versions and exported packages, the bundles which
+     * export each package, and the split packages and duplicate exports.
+     *
+     * @param indexFile the {@link Path} of the index file
+     * @throws IOException if an I/O error occurs when writing the index file
+     */
+    public void write(Path indexFile) throws IOException {
+        Map<String, List<String>> splitPackages = getSplitPackages();
+        Map<String, List<String>> duplicateExports = getDuplicateExports();
+        Path parent = indexFile.toAbsolutePath().getParent();
+        Path temporaryFile = Files.createTempFile(parent, "." + indexFile.getFileName(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                writer.write("{\n  \"bundles\": {");
+                String separator = "\n";
+                for (Map.Entry<String, Exporter> bundle : new TreeMap<>(bundles).entrySet()) {
+                    Exporter exporter = bundle.getValue();
+                    writer.write(String.format("%s    %s: {\"symbolicName\": %s, \"version\": %s, \"packages\": ",
+                            separator, RunReport.quote(bundle.getKey()), RunReport.quote(exporter.symbolicName),
+                            RunReport.quote(exporter.version)));
+                    writeArray(writer, exporter.packages);
+                    writer.write("}");
+                    separator = ",\n";
+                }
+                writer.write("\n  },\n  \"packages\": ");
+                writeObject(writer, getExporters(bundleFileNames -> true));
+                writer.write(",\n  \"splitPackages\": ");
+                writeObject(writer, splitPackages);
+                writer.write(",\n  \"duplicateExports\": ");
+                writeObject(writer, duplicateExports);
+                writer.write("\n}\n");
+            }
+            try {
+                Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        LOGGER.info(String.format("Wrote the package index[%s] of %d OSGi bundle(s), with %d split package(s) and %d "
+                + "duplicate export(s).", indexFile, bundles.size(), splitPackages.size(), duplicateExports.size()));
+    }
+
+    /**
+     * Returns the packages exported by several bundles, either of different symbolic names or all of the same
+     * symbolic name
+     *
+     * @param split true if the packages exported by bundles of different symbolic names are to be returned, false if
+     *              the packages exported by several bundles of the same symbolic name are to be returned
+     * @return a {@link Map} of the file names of the exporting bundles, in lexicographical order, by package name
+     */
+    private Map<String, List<String>> getConflicts(boolean split) {
+        return getExporters(bundleFileNames -> {
+            if (bundleFileNames.size() < 2) {
+                return false;
+            }
+            long symbolicNames = bundleFileNames.stream().map(name -> bundles.get(name).symbolicName).distinct()
+                    .count();
+            return (split) ? (symbolicNames > 1) : (symbolicNames == 1);
+        });
+    }
+
+    /**
+     * Returns the exporting bundles of the packages whose exporting bundles satisfy the filter
+     *
+     * @param filter the {@link Predicate} which the sorted file names of the exporting bundles of
+     *               a package must satisfy
+     * @return a {@link Map} of the file names of the exporting bundles, in lexicographical order, by package name, in
+     * lexicographical order
+     */
+    private Map<String, List<String>> getExporters(Predicate<List<String>> filter) {
+        Map<String, List<String>> packageExporters = new TreeMap<>();
+        for (Map.Entry<String, Set<String>> entry : exporters.entrySet()) {
+            List<String> bundleFileNames = new ArrayList<>(entry.getValue());
+            Collections.sort(bundleFileNames);
+            if (filter.test(bundleFileNames)) {
+                packageExporters.put(entry.getKey(), bundleFileNames);
+            }
+        }
+        return packageExporters;
+    }
+
+    /**
+     * Writes the lists of values as a JSON object of arrays, one property per line
+     *
+     * @param writer the {@link Writer} to write to
+     * @param values the lists of values, by property name
+     * @throws IOException if an I/O error occurs when writing
+     */
+    private static void writeObject(Writer writer, Map<String, List<String>> values) throws IOException {
+        writer.write("{");
+        String separator = "\n";
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            writer.write(separator + "    " + RunReport.quote(entry.getKey()) + ": ");
+            writeArray(writer, entry.getValue());
+            separator = ",\n";
+        }
+        writer.write((values.isEmpty()) ? "}" : "\n  }");
+    }
+
+    /**
+     * Writes the values as a JSON array of strings
+     *
+     * @param writer the {@link Writer} to write to
+     * @param values the values to be written
+     * @throws IOException if an I/O error occurs when writing
+     */
+    private static void writeArray(Writer writer, List<String> values) throws IOException {
+        writer.write("[");
+        for (int index = 0; index < values.size(); index++) {
+            writer.write(((index == 0) ? "" : ", ") + RunReport.quote(values.get(index)));
+        }
+        writer.write("]");
+    }
+
+    /**
+     * Returns the file name of the bundle, by which it is indexed
+     *
+     * @param bundle the {@link Path} of the OSGi bundle
+     * @return the file name of the bundle
+     */
+    private static String getBundleFileName(Path bundle) {
+        Path fileName = bundle.getFileName();
+        return (fileName != null) ? fileName.toString() : bundle.toString();
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a Java class which indexes the distinct Java packages of the class file entries of a JAR file
+ * <p>
+ * Entry names are hashed and compared in place, hence no substring or regular expression is evaluated per entry and
+ * each package name is allocated only once. Instances of this class are not thread-safe.
+ */
+public class PackageIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] directories = new String[INITIAL_CAPACITY];
+    private String[] packages = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // JAR file entries are usually grouped by directory, hence the most recently matched directory is checked first
+    private String lastDirectory;
+    private String lastPackage;
+
+    /**
+     * Adds the package of the specified JAR file entry to the index, if the entry is a class file within a package
+     *
+     * @param entryName the name of the JAR file entry
+     * @return the {@link String} package name of the entry, or {@code null} if the entry is not a class file within a
+     * package
+     */
+    public String add(String entryName) {
+        if (!entryName.endsWith(".class")) {
+            return null;
+        }
+        int length = entryName.lastIndexOf('/');
+        if (length <= 0) {
+            return null;
+        }
+
+        if ((lastDirectory != null) && (lastDirectory.length() == length) && (startsWith(entryName, lastDirectory))) {
+            return lastPackage;
+        }
+
+        int hash = 0;
+        for (int index = 0; index < length; index++) {
+            hash = 31 * hash + entryName.charAt(index);
+        }
+        int mask = directories.length - 1;
+        int slot = mix(hash) & mask;
+        while (directories[slot] != null) {
+            String directory = directories[slot];
+            if ((hashes[slot] == hash) && (directory.length() == length) && (startsWith(entryName, directory))) {
+                lastDirectory = directory;
+                lastPackage = packages[slot];
+                return lastPackage;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        char[] characters = new char[length];
+        entryName.getChars(0, length, characters, 0);
+        String directory = new String(characters);
+        for (int index = 0; index < length; index++) {
+            if (characters[index] == '/') {
+                characters[index] = '.';
+            }
+        }
+        String packageName = new String(characters);
+
+        directories[slot] = directory;
+        packages[slot] = packageName;
+        hashes[slot] = hash;
+        lastDirectory = directory;
+        lastPackage = packageName;
+        if (++size * 2 > directories.length) {
+            resize();
+        }
+        return packageName;
+    }
+
+    /**
+     * Returns the number of distinct packages in the index
+     *
+     * @return the number of distinct packages in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the distinct package names in the index, in lexicographical order
+     *
+     * @return a {@link List} of {@link String} package names, in lexicographical order
+     */
+    public List<String> getPackages() {
+        String[] sorted = new String[size];
+        int count = 0;
+        for (String packageName : packages) {
+            if (packageName != null) {
+                sorted[count++] = packageName;
+            }
+        }
+        Arrays.sort(sorted);
+        return new ArrayList<>(Arrays.asList(sorted));
+    }
+
+    /**
+     * Returns the comma separated {@code Export-Package} header value for the packages in the index, in
+     * lexicographical order
+     *
+     * @return the comma separated {@link String} of package names
+     */
+    public String toExportPackageHeader() {
+        return (size == 0) ? "" : String.join(",", getPackages());
+    }
+
+    /**
+     * Doubles the capacity of the hash table
+     */
+    private void resize() {
+        String[] oldDirectories = directories;
+        String[] oldPackages = packages;
+        int[] oldHashes = hashes;
+        directories = new String[oldDirectories.length * 2];
+        packages = new String[oldDirectories.length * 2];
+        hashes = new int[oldDirectories.length * 2];
+        int mask = directories.length - 1;
+        for (int index = 0; index < oldDirectories.length; index++) {
+            if (oldDirectories[index] != null) {
+                int slot = mix(oldHashes[index]) & mask;
+                while (directories[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                directories[slot] = oldDirectories[index];
+                packages[slot] = oldPackages[index];
+                hashes[slot] = oldHashes[index];
+            }
+        }
+    }
+
+    /**
+     * Returns true if the entry name starts with the directory
+     * <p>
+     * Unlike {@code String.regionMatches}, which is not intrinsified, the characters are compared from the end, as
+     * the directories of a JAR file mostly share their leading characters.
+     *
+     * @param entryName the name of the JAR file entry
+     * @param directory the directory
+     * @return true if the entry name starts with the directory, else false
+     */
+    private static boolean startsWith(String entryName, String directory) {
+        for (int index = directory.length() - 1; index >= 0; index--) {
+            if (entryName.charAt(index) != directory.charAt(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the higher bits of the hash code to the lower bits used for the slot selection
+     *
+     * @param hash the hash code
+     * @return the mixed hash code
+     */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * a Java class which collects the {@code ConversionResult}s of a run and writes them as a machine-readable report
+ * <p>
+ * The JSON report holds the per-JAR file records along with a summary of the outcome counts and the percentiles of
+ * the total and per-stage durations. The CSV report holds one row per JAR file. Instances of this class are
+ * thread-safe.
+ */
+public class RunReport {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 100 };
+    private static final double NANOSECONDS_PER_MILLISECOND = 1000000.0;
+
+    private final Collection<ConversionResult> results = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * Adds the {@code ConversionResult} of a JAR file to the report
+     *
+     * @param result the {@link ConversionResult} of a JAR file
+     */
+    public void add(ConversionResult result) {
+        results.add(result);
+    }
+
+    /**
+     * Adds the {@code ConversionResult}s of several JAR files to the report
+     *
+     * @param results the {@link ConversionResult}s of the JAR files
+     */
+    public void addAll(Collection<ConversionResult> results) {
+        this.results.addAll(results);
+    }
+
+    /**
+     * Returns the {@code ConversionResult}s added to the report
+     *
+     * @return a {@link List} of the {@link ConversionResult}s added to the report
+     */
+    public List<ConversionResult> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Writes the report in JSON format
+     *
+     * @param reportFile the {@link Path} of the report file
+     * @throws IOException if an I/O error occurs when writing the report
+     */
+    public void writeJson(Path reportFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writeJson(writer);
+        }
+    }
+
+    /**
+     * Writes the report in JSON format
+     *
+     * @param writer the {@link Writer} to which the report is to be written, which is left open
+     * @throws IOException if an I/O error occurs when writing the report
+     */
+    public void writeJson(Writer writer) throws IOException {
+        List<ConversionResult> snapshot = new ArrayList<>(results);
+        writer.write("{\n  \"summary\": {\n");
+        writer.write(String.format(Locale.ROOT, "    \"wallClockMillis\": %d,%n",
+                (System.currentTimeMillis() - startTime)));
+        writer.write(String.format(Locale.ROOT, "    \"jarFiles\": %d,%n", snapshot.size()));
+        for (ConversionResult.Status status : ConversionResult.Status.values()) {
+            writer.write(String.format(Locale.ROOT, "    \"%s\": %d,%n", status.name().toLowerCase(Locale.ROOT),
+                    count(snapshot, status)));
+        }
+        writer.write(String.format(Locale.ROOT, "    \"bytesRead\": %d,%n", sum(snapshot, true)));
+        writer.write(String.format(Locale.ROOT, "    \"bytesWritten\": %d,%n", sum(snapshot, false)));
+
+        writer.write("    \"totalMillis\": ");
+        writePercentiles(writer, totalDurations(snapshot));
+        for (ConversionMetrics.Stage stage : ConversionMetrics.Stage.values()) {
+            writer.write(String.format(",%n    \"%sMillis\": ", toCamelCase(stage)));
+            writePercentiles(writer, stageDurations(snapshot, stage));
+        }
+        writer.write("\n  },\n  \"jarFiles\": [");
+
+        for (int index = 0; index < snapshot.size(); index++) {
+            ConversionResult result = snapshot.get(index);
+            ConversionMetrics metrics = result.getMetrics();
+            writer.write((index == 0) ? "\n" : ",\n");
+            writer.write(String.format(Locale.ROOT, "    {\"jarFile\": %s, \"bundle\": %s, \"status\": \"%s\", "
+                            + "\"totalMillis\": %d, \"message\": %s", quote(result.getJarFile()),
+                    quote(result.getBundle()), result.getStatus(), result.getElapsedTime(),
+                    quote(result.getMessage())));
+            if (metrics != null) {
+                writer.write(String.format(Locale.ROOT, ", \"entries\": %d, \"packages\": %d, "
+                                + "\"bytesRead\": %d, \"bytesWritten\": %d", metrics.getEntries(),
+                        metrics.getPackages(), metrics.getBytesRead(), metrics.getBytesWritten()));
+                for (ConversionMetrics.Stage stage : ConversionMetrics.Stage.values()) {
+                    writer.write(String.format(Locale.ROOT, ", \"%sMillis\": %.3f", toCamelCase(stage),
+                            (metrics.getDuration(stage) / NANOSECONDS_PER_MILLISECOND)));
+                }
+            }
+            writer.write("}");
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    /**
+     * Writes the report in CSV format, one row per JAR file
+     *
+     * @param reportFile the {@link Path} of the report file
+     * @throws IOException if an I/O error occurs when writing the report
+     */
+    public void writeCsv(Path reportFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write("jarFile,bundle,status,totalMillis,entries,packages,bytesRead,bytesWritten");
+            for (ConversionMetrics.Stage stage : ConversionMetrics.Stage.values()) {
+                writer.write("," + toCamelCase(stage) + "Millis");
+            }
+            writer.write(",message\n");
+
+            for (ConversionResult result : results) {
+                ConversionMetrics metrics = result.getMetrics();
+                writer.write(String.format(Locale.ROOT, "%s,%s,%s,%d", escapeCsv(result.getJarFile()),
+                        escapeCsv(result.getBundle()), result.getStatus(), result.getElapsedTime()));
+                if (metrics != null) {
+                    writer.write(String.format(Locale.ROOT, ",%d,%d,%d,%d", metrics.getEntries(),
+                            metrics.getPackages(), metrics.getBytesRead(), metrics.getBytesWritten()));
+                    for (ConversionMetrics.Stage stage : ConversionMetrics.Stage.values()) {
+                        writer.write(String.format(Locale.ROOT, ",%.3f",
+                                (metrics.getDuration(stage) / NANOSECONDS_PER_MILLISECOND)));
+                    }
+                } else {
+                    for (int column = 0; column < 4 + ConversionMetrics.Stage.values().length; column++) {
+                        writer.write(",");
+                    }
+                }
+                writer.write("," + escapeCsv(result.getMessage()) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the nearest-rank percentiles of the durations as a JSON object
+     *
+     * @param writer    the {@link Writer} to write to
+     * @param durations the durations, in nanoseconds
+     * @throws IOException if an I/O error occurs when writing
+     */
+    private static void writePercentiles(Writer writer, long[] durations) throws IOException {
+        Arrays.sort(durations);
+        writer.write("{");
+        for (int index = 0; index < PERCENTILES.length; index++) {
+            double percentile = PERCENTILES[index];
+            double value = 0;
+            if (durations.length > 0) {
+                int rank = (int) Math.ceil((percentile / 100) * durations.length);
+                value = durations[Math.max(rank, 1) - 1] / NANOSECONDS_PER_MILLISECOND;
+            }
+            String name = (percentile == 100) ? "max" : String.format(Locale.ROOT, "p%.0f", percentile);
+            writer.write(String.format(Locale.ROOT, "%s\"%s\": %.3f", ((index == 0) ? "" : ", "), name, value));
+        }
+        writer.write("}");
+    }
+
+    /**
+     * Returns the number of results of the specified status
+     *
+     * @param results the {@link ConversionResult}s
+     * @param status  the {@link ConversionResult.Status} to be counted
+     * @return the number of results of the specified status
+     */
+    private static long count(List<ConversionResult> results, ConversionResult.Status status) {
+        return results.stream().filter(result -> result.getStatus() == status).count();
+    }
+
+    /**
+     * Returns the total of the bytes read or written by the conversions
+     *
+     * @param results   the {@link ConversionResult}s
+     * @param bytesRead true if the bytes read are to be summed, false if the bytes written are to be summed
+     * @return the total of the bytes read or written
+     */
+    private static long sum(List<ConversionResult> results, boolean bytesRead) {
+        return results.stream().filter(result -> result.getMetrics() != null)
+                .mapToLong(result -> (bytesRead) ? result.getMetrics().getBytesRead() :
+                        result.getMetrics().getBytesWritten()).sum();
+    }
+
+    /**
+     * Returns the total durations of the conversions
+     *
+     * @param results the {@link ConversionResult}s
+     * @return the total durations of the conversions, in nanoseconds
+     */
+    private static long[] totalDurations(List<ConversionResult> results) {
+        return results.stream().mapToLong(result -> (long) (result.getElapsedTime() * NANOSECONDS_PER_MILLISECOND))
+                .toArray();
+    }
+
+    /**
+     * Returns the durations of the specified stage of the conversions which recorded metrics
+     *
+     * @param results the {@link ConversionResult}s
+     * @param stage   the conversion {@link ConversionMetrics.Stage}
+     * @return the durations of the stage, in nanoseconds
+     */
+    private static long[] stageDurations(List<ConversionResult> results, ConversionMetrics.Stage stage) {
+        return results.stream().filter(result -> result.getMetrics() != null)
+                .mapToLong(result -> result.getMetrics().getDuration(stage)).toArray();
+    }
+
+    /**
+     * Returns the camel case name of the stage, used as a JSON property and CSV column name
+     *
+     * @param stage the conversion {@link ConversionMetrics.Stage}
+     * @return the camel case name of the stage
+     */
+    private static String toCamelCase(ConversionMetrics.Stage stage) {
+        StringBuilder name = new StringBuilder();
+        for (String word : stage.name().toLowerCase(Locale.ROOT).split("_")) {
+            name.append((name.length() == 0) ? word : (Character.toUpperCase(word.charAt(0)) + word.substring(1)));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the value as a quoted and escaped JSON string
+     *
+     * @param value the value to be quoted
+     * @return the quoted and escaped JSON string, or {@code null} if the value is {@code null}
+     */
+    static String quote(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char character : value.toString().toCharArray()) {
+            switch (character) {
+            case '"':
+                quoted.append("\\\"");
+                break;
+            case '\\':
+                quoted.append("\\\\");
+                break;
+            default:
+                if (character < 0x20) {
+                    quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) character));
+                } else {
+                    quoted.append(character);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Returns the value as a CSV field, quoted if required
+     *
+     * @param value the value to be escaped
+     * @return the CSV field
+     */
+    private static String escapeCsv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if ((text.indexOf(',') != -1) || (text.indexOf('"') != -1) || (text.indexOf('\n') != -1)) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which passes items through a sequence of stages, each of which is run by its own number of worker
+ * threads and takes its items from a bounded queue
+ * <p>
+ * As the queues are bounded, a stage which falls behind blocks the stages before it, and ultimately the producer,
+ * rather than letting the queued items accumulate. The worker threads are virtual threads if the Java runtime
+ * supports them, else daemon platform threads.
+ *
+ * @param <T> the type of the items passed through the pipeline
+ */
+public class StagedPipeline<T> {
+    private static final Logger LOGGER = Logger.getLogger(StagedPipeline.class.getName());
+    /**
+     * the marker which is queued once per worker of a stage, to end the stage once all items have been queued
+     */
+    private static final Object END_OF_INPUT = new Object();
+
+    private final String name;
+    private final List<StageWorkers> stages = new ArrayList<>();
+    private boolean started;
+
+    /**
+     * the worker threads of a single stage, along with their input queue
+     */
+    private class StageWorkers {
+        private final String stageName;
+        private final int workers;
+        private final Consumer<T> stage;
+        private final BlockingQueue<Object> queue;
+        private final CountDownLatch completion;
+        private final List<Thread> threads = new ArrayList<>();
+
+        private StageWorkers(String stageName, int workers, int queueCapacity, Consumer<T> stage) {
+            this.stageName = stageName;
+            this.workers = workers;
+            this.stage = stage;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.completion = new CountDownLatch(workers);
+        }
+    }
+
+    /**
+     * Constructs a new staged pipeline
+     *
+     * @param name the name of the pipeline, used to name its worker threads
+     */
+    public StagedPipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Appends a stage to the pipeline
+     *
+     * @param stageName     the name of the stage, used to name its worker threads
+     * @param workers       the number of worker threads of the stage
+     * @param queueCapacity the number of items which may wait for the stage
+     * @param stage         the {@link Consumer} which processes each item, which is expected to capture its own
+     *                      failures in the item
+     * @return this pipeline
+     */
+    public StagedPipeline<T> addStage(String stageName, int workers, int queueCapacity, Consumer<T> stage) {
+        if ((workers < 1) || (queueCapacity < 1)) {
+            throw new IllegalArgumentException("The workers and the queue capacity of a stage must be positive.");
+        }
+        if (started) {
+            throw new IllegalStateException("Stages cannot be added to a started pipeline.");
+        }
+        stages.add(new StageWorkers(stageName, workers, queueCapacity, stage));
+        return this;
+    }
+
+    /**
+     * Starts the worker threads of the stages
+     */
+    public void start() {
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("The pipeline has no stages.");
+        }
+        started = true;
+        for (int index = 0; index < stages.size(); index++) {
+            StageWorkers stageWorkers = stages.get(index);
+            StageWorkers next = (index + 1 < stages.size()) ? stages.get(index + 1) : null;
+            ThreadFactory threadFactory = newThreadFactory(name + "-" + stageWorkers.stageName);
+            for (int worker = 0; worker < stageWorkers.workers; worker++) {
+                Thread thread = threadFactory.newThread(() -> runWorker(stageWorkers, next));
+                stageWorkers.threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Queues an item for the first stage, blocking while the queue of the first stage is full
+     *
+     * @param item the item to be processed
+     * @throws InterruptedException if interrupted while waiting for the queue of the first stage
+     */
+    public void put(T item) throws InterruptedException {
+        stages.get(0).queue.put(item);
+    }
+
+    /**
+     * Waits for all queued items to pass through all stages, and stops the worker threads
+     *
+     * @throws InterruptedException if interrupted while waiting, in which case the worker threads are interrupted
+     */
+    public void finish() throws InterruptedException {
+        try {
+            // every item is passed on before a worker ends, hence a stage ends only after its predecessor
+            for (StageWorkers stageWorkers : stages) {
+                for (int worker = 0; worker < stageWorkers.workers; worker++) {
+                    stageWorkers.queue.put(END_OF_INPUT);
+                }
+                stageWorkers.completion.await();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Interrupts the worker threads of all stages, abandoning any queued items
+     */
+    public void cancel() {
+        for (StageWorkers stageWorkers : stages) {
+            stageWorkers.threads.forEach(Thread::interrupt);
+        }
+    }
+
+    /**
+     * Runs a worker of a stage, which processes the items of the stage queue and passes them to the next stage
+     *
+     * @param stageWorkers the {@link StageWorkers} of the stage
+     * @param next         the {@link StageWorkers} of the next stage, or {@code null} if this is the last stage
+     */
+    @SuppressWarnings("unchecked") private void runWorker(StageWorkers stageWorkers, StageWorkers next) {
+        try {
+            while (true) {
+                Object item = stageWorkers.queue.take();
+                if (item == END_OF_INPUT) {
+                    return;
+                }
+                try {
+                    stageWorkers.stage.accept((T) item);
+                } catch (RuntimeException e) {
+                    // the item is still passed on, so that the later stages can report it
+                    LOGGER.info(String.format("Stage[%s] failed to process %s: %s", stageWorkers.stageName, item,
+                            e.getMessage()));
+                }
+                if (next != null) {
+                    next.queue.put(item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stageWorkers.completion.countDown();
+        }
+    }
+
+    /**
+     * Returns a {@code ThreadFactory} of virtual threads if the Java runtime supports them, else of daemon platform
+     * threads
+     *
+     * @param threadName the name prefix of the threads
+     * @return a {@link ThreadFactory} of the worker threads
+     */
+    public static ThreadFactory newThreadFactory(String threadName) {
+        try {
+            // virtual threads are looked up reflectively, as this project targets Java 8
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, threadName + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.finest(String.format("Virtual threads are unavailable: %s", e));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * a Java class which represents the scratch directory of a single run of the converter, in which OSGi bundles are
+ * staged before being moved into their target directory
+ * <p>
+ * The workspace is created lazily, on first use, as a uniquely named directory under the workspace root, hence
+ * concurrent processes never share a workspace. Each workspace holds a lock on its lock file for the lifetime of its
+ * process and is deleted on exit. The workspaces of processes which exited without deleting theirs are deleted in the
+ * background when a new workspace is created.
+ */
+public class Workspace {
+    private static final Logger LOGGER = Logger.getLogger(Workspace.class.getName());
+    /**
+     * the visitor which deletes a file tree, created along with this class so that a workspace can be deleted by the
+     * shutdown hook even once the class loader of the converter is closed, as it is within a Maven build
+     */
+    private static final FileVisitor<Path> TREE_DELETER = new SimpleFileVisitor<Path>() {
+        @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Files.deleteIfExists(file);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override public FileVisitResult postVisitDirectory(Path visitedDirectory, IOException e) throws IOException {
+            if (e != null) {
+                throw e;
+            }
+            Files.deleteIfExists(visitedDirectory);
+            return FileVisitResult.CONTINUE;
+        }
+    };
+    private static final String WORKSPACE_PREFIX = "run-";
+    private static final String LOCK_FILE = ".lock";
+    /**
+     * the age from which a workspace without a lock file is considered stale, as it may have been created an instant
+     * ago by a concurrent process which is yet to create its lock file
+     */
+    private static final long UNLOCKED_WORKSPACE_MINIMUM_AGE = 60 * 1000;
+
+    private static volatile Path root = Paths.get(System.getProperty(Constants.WORKSPACE_ROOT_PROPERTY,
+            Paths.get(System.getProperty("java.io.tmpdir"), Constants.DEFAULT_WORKSPACE_ROOT).toString()));
+    private static Workspace workspace;
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    // the directory in which the bundles of each target directory are staged, as staging must not cross file stores
+    private final Map<Path, Path> stagingDirectories = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new workspace, creating its directory and locking its lock file
+     *
+     * @param directory the workspace directory
+     * @throws IOException if an I/O error occurs when creating the lock file
+     */
+    private Workspace(Path directory) throws IOException {
+        this.directory = directory;
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        this.lock = lockChannel.lock();
+    }
+
+    /**
+     * Sets the root directory under which the workspaces are created
+     *
+     * @param workspaceRoot the root directory of the workspaces
+     * @throws IllegalStateException if the workspace of this run has already been created
+     */
+    public static synchronized void setRoot(Path workspaceRoot) {
+        if (workspace != null) {
+            throw new IllegalStateException("The workspace of this run has already been created.");
+        }
+        root = workspaceRoot;
+    }
+
+    public static Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the workspace of this run, creating it, and starting the background deletion of stale workspaces, on
+     * first use
+     *
+     * @return the {@link Workspace} of this run
+     * @throws IOException if an I/O error occurs when creating the workspace
+     */
+    public static synchronized Workspace get() throws IOException {
+        if (workspace == null) {
+            Path workspaceRoot = root;
+            Files.createDirectories(workspaceRoot);
+            Path directory = Files.createTempDirectory(workspaceRoot, WORKSPACE_PREFIX);
+            try {
+                workspace = new Workspace(directory);
+            } catch (IOException e) {
+                deleteTree(directory);
+                throw e;
+            }
+            LOGGER.fine(String.format("Created the workspace[%s].", directory));
+
+            Workspace created = workspace;
+            Runtime.getRuntime().addShutdownHook(new Thread(created::delete, "jar-to-bundle-workspace-deleter"));
+            Thread cleaner = new Thread(() -> deleteStaleWorkspaces(workspaceRoot, directory),
+                    "jar-to-bundle-workspace-cleaner");
+            cleaner.setDaemon(true);
+            cleaner.start();
+        }
+        return workspace;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the directory in which a file to be moved into the target directory is to be staged, which is this
+     * workspace if it is on the same file store as the target directory, so that the file can be moved atomically,
+     * else the target directory itself
+     *
+     * @param targetDirectory the directory into which the staged file is to be moved
+     * @return the staging directory for the target directory
+     */
+    public Path getStagingDirectory(Path targetDirectory) {
+        return stagingDirectories.computeIfAbsent(targetDirectory.toAbsolutePath().normalize(), target -> {
+            try {
+                if (Files.getFileStore(directory).equals(Files.getFileStore(target))) {
+                    return directory;
+                }
+            } catch (IOException e) {
+                LOGGER.fine(String.format("Failed to compare the file stores of %s and %s: %s", directory, target,
+                        e.getMessage()));
+            }
+            return target;
+        });
+    }
+
+    /**
+     * Returns the staging directory for the target directory, falling back to the target directory itself if the
+     * workspace cannot be created
+     *
+     * @param targetDirectory the directory into which the staged file is to be moved
+     * @return the staging directory for the target directory
+     */
+    public static Path stagingDirectoryOf(Path targetDirectory) {
+        try {
+            return get().getStagingDirectory(targetDirectory);
+        } catch (IOException e) {
+            LOGGER.fine(String.format("Failed to create the workspace under %s: %s", root, e.getMessage()));
+            return targetDirectory;
+        }
+    }
+
+    /**
+     * Releases the lock of this workspace and deletes its directory
+     */
+    private void delete() {
+        try {
+            lock.release();
+            lockChannel.close();
+            deleteTree(directory);
+        } catch (IOException e) {
+            LOGGER.fine(String.format("Failed to delete the workspace[%s]: %s", directory, e.getMessage()));
+        }
+    }
+
+    /**
+     * Deletes the workspaces under the root directory which are not locked by a live process
+     *
+     * @param workspaceRoot    the root directory of the workspaces
+     * @param currentWorkspace the workspace of this run, which is not to be deleted
+     */
+    public static void deleteStaleWorkspaces(Path workspaceRoot, Path currentWorkspace) {
+        try (DirectoryStream<Path> workspaces = Files.newDirectoryStream(workspaceRoot, WORKSPACE_PREFIX + "*")) {
+            for (Path candidate : workspaces) {
+                if ((!candidate.equals(currentWorkspace)) && (Files.isDirectory(candidate))) {
+                    deleteIfStale(candidate);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.fine(String.format("Failed to list the workspaces under %s: %s", workspaceRoot, e.getMessage()));
+        }
+    }
+
+    /**
+     * Deletes the workspace if its lock file is not locked by a live process
+     *
+     * @param candidate the workspace directory
+     * @throws IOException if an I/O error occurs when deleting the workspace
+     */
+    private static void deleteIfStale(Path candidate) throws IOException {
+        Path lockFile = candidate.resolve(LOCK_FILE);
+        if (!Files.exists(lockFile)) {
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(candidate).toMillis()
+                    >= UNLOCKED_WORKSPACE_MINIMUM_AGE) {
+                deleteTree(candidate);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock staleLock = channel.tryLock();
+            if (staleLock == null) {
+                return;
+            }
+            staleLock.release();
+        } catch (OverlappingFileLockException | NoSuchFileException e) {
+            // locked within this process, or deleted by its owner meanwhile
+            return;
+        }
+        LOGGER.fine(String.format("Deleting the stale workspace[%s].", candidate));
+        deleteTree(candidate);
+    }
+
+    /**
+     * Deletes the directory and its content, walking the file tree iteratively rather than recursing per directory
+     *
+     * @param directory the directory to be deleted
+     * @throws IOException if an I/O error occurs during the deletion
+     */
+    static void deleteTree(Path directory) throws IOException {
+        Files.walkFileTree(directory, TREE_DELETER);
+    }
+
+}
@@ -0,0 +1,633 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * a Java class which writes a .zip or .jar file entry by entry, with control over how each entry is compressed
+ * <p>
+ * Unlike a {@link java.util.zip.ZipOutputStream}, entries may be written as already compressed data, such as stored
+ * entries whose CRC and size are precomputed or deflated entries copied from another archive, and large entries may be
+ * deflated in parallel, as independently compressed blocks which are concatenated into a single deflate stream. The
+ * ZIP64 extensions are written when sizes, offsets or the number of entries exceed the limits of the original format.
+ * Instances of this class are not thread-safe.
+ */
+public class ZipArchiveWriter implements Closeable {
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EXTRA_FIELD_HEADER_ID = 0x0001;
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+    private static final int UTF8_FLAG = 0x800;
+    private static final long ZIP64_MAGIC_VALUE = 0xffffffffL;
+    private static final int ZIP64_MAGIC_COUNT = 0xffff;
+    /**
+     * the size of the blocks of input which are deflated in parallel
+     */
+    private static final int PARALLEL_BLOCK_SIZE = 128 * 1024;
+    /**
+     * the size of the deflate window, which is the size of the preset dictionary of a block deflated in parallel
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final CountingOutputStream outputStream;
+    private final List<EntryRecord> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final int dosTime;
+    private boolean closed;
+
+    /**
+     * a functional interface which writes the content of an entry
+     */
+    public interface Content {
+        /**
+         * Writes the content of an entry
+         *
+         * @param outputStream the {@link OutputStream} of the entry
+         * @throws IOException if an I/O error occurs when writing the content
+         */
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * the central directory record of a written entry
+     */
+    private static class EntryRecord {
+        private final byte[] name;
+        private final int method;
+        private final int flags;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private EntryRecord(byte[] name, int method, int flags, long crc, long compressedSize, long size,
+                long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.flags = flags;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    /**
+     * Constructs a new writer of a .zip or .jar file
+     *
+     * @param outputStream the {@link OutputStream} of the file, which is expected to be buffered
+     */
+    public ZipArchiveWriter(OutputStream outputStream) {
+        this.outputStream = new CountingOutputStream(outputStream);
+        this.dosTime = toDosTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Writes an entry of the specified content, deflated at the specified level or stored if the level is zero
+     *
+     * @param name    the name of the entry
+     * @param content the content of the entry
+     * @param level   the deflate level, from 0 to 9, or -1 for the default level
+     * @throws IOException if an I/O error occurs when writing the entry
+     */
+    public void putEntry(String name, byte[] content, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        if (level == Deflater.NO_COMPRESSION) {
+            putStored(name, content.length, crc.getValue(), entryStream -> entryStream.write(content));
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        deflate(content, 0, content.length, null, 0, level, true, compressed);
+        putRaw(name, ZipEntry.DEFLATED, crc.getValue(), compressed.size(), content.length,
+                entryStream -> compressed.writeTo(entryStream));
+    }
+
+    /**
+     * Writes a stored entry of the specified CRC and size, whose content is written uncompressed
+     *
+     * @param name    the name of the entry
+     * @param size    the size of the content, in bytes
+     * @param crc     the CRC-32 of the content
+     * @param content the {@link Content} which writes exactly {@code size} bytes
+     * @throws IOException if an I/O error occurs when writing the entry, or if the content is not of the specified
+     *                     size
+     */
+    public void putStored(String name, long size, long crc, Content content) throws IOException {
+        putRaw(name, ZipEntry.STORED, crc, size, size, content);
+    }
+
+    /**
+     * Writes an entry of already compressed data, such as an entry copied from another archive without being
+     * decompressed
+     *
+     * @param name           the name of the entry
+     * @param method         the compression method of the data, {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param crc            the CRC-32 of the uncompressed content
+     * @param compressedSize the size of the compressed data, in bytes
+     * @param size           the size of the uncompressed content, in bytes
+     * @param content        the {@link Content} which writes exactly {@code compressedSize} bytes of compressed data
+     * @throws IOException if an I/O error occurs when writing the entry, or if the data is not of the specified size
+     */
+    public void putRaw(String name, int method, long crc, long compressedSize, long size, Content content)
+            throws IOException {
+        byte[] nameBytes = startEntry(name);
+        boolean zip64 = (compressedSize >= ZIP64_MAGIC_VALUE) || (size >= ZIP64_MAGIC_VALUE);
+        long localHeaderOffset = outputStream.count;
+        writeLocalFileHeader(nameBytes, method, UTF8_FLAG, crc, compressedSize, size, zip64);
+
+        long dataOffset = outputStream.count;
+        content.writeTo(new EntryOutputStream(outputStream));
+        long written = outputStream.count - dataOffset;
+        if (written != compressedSize) {
+            throw new ZipException(String.format("Entry[%s] has %d bytes of data rather than %d.", name, written,
+                    compressedSize));
+        }
+        entries.add(new EntryRecord(nameBytes, method, UTF8_FLAG, crc, compressedSize, size, localHeaderOffset));
+    }
+
+    /**
+     * Writes a deflated entry, whose content is written uncompressed and deflated as it is written, followed by a data
+     * descriptor of its CRC and sizes
+     * <p>
+     * A parallel entry is split into blocks, each of which is deflated by the common {@link ForkJoinPool} with the end
+     * of the previous block as its dictionary, and flushed to a byte boundary so that the compressed blocks form a
+     * single deflate stream when concatenated.
+     *
+     * @param name     the name of the entry
+     * @param level    the deflate level, from 0 to 9, or -1 for the default level
+     * @param parallel true if the content is to be deflated in parallel, else false
+     * @param content  the {@link Content} which writes the uncompressed content
+     * @throws IOException if an I/O error occurs when writing the entry
+     */
+    public void putDeflated(String name, int level, boolean parallel, Content content) throws IOException {
+        byte[] nameBytes = startEntry(name);
+        int flags = UTF8_FLAG | DATA_DESCRIPTOR_FLAG;
+        long localHeaderOffset = outputStream.count;
+        writeLocalFileHeader(nameBytes, ZipEntry.DEFLATED, flags, 0, 0, 0, false);
+
+        long dataOffset = outputStream.count;
+        DeflatingOutputStream deflatingOutputStream = new DeflatingOutputStream(new EntryOutputStream(outputStream),
+                level, parallel);
+        try {
+            content.writeTo(deflatingOutputStream);
+            deflatingOutputStream.finish();
+        } finally {
+            deflatingOutputStream.release();
+        }
+        long compressedSize = outputStream.count - dataOffset;
+        long size = deflatingOutputStream.size;
+        long crc = deflatingOutputStream.crc.getValue();
+
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(crc);
+        if ((compressedSize >= ZIP64_MAGIC_VALUE) || (size >= ZIP64_MAGIC_VALUE)) {
+            writeLong(compressedSize);
+            writeLong(size);
+        } else {
+            writeInt(compressedSize);
+            writeInt(size);
+        }
+        entries.add(new EntryRecord(nameBytes, ZipEntry.DEFLATED, flags, crc, compressedSize, size,
+                localHeaderOffset));
+    }
+
+    /**
+     * Returns the number of bytes written so far
+     *
+     * @return the number of bytes written so far
+     */
+    public long getBytesWritten() {
+        return outputStream.count;
+    }
+
+    /**
+     * Writes the central directory and closes the underlying {@code OutputStream}
+     *
+     * @throws IOException if an I/O error occurs when writing the central directory
+     */
+    @Override public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long centralDirectoryOffset = outputStream.count;
+            for (EntryRecord entry : entries) {
+                writeCentralDirectoryHeader(entry);
+            }
+            long centralDirectorySize = outputStream.count - centralDirectoryOffset;
+
+            if ((entries.size() >= ZIP64_MAGIC_COUNT) || (centralDirectoryOffset >= ZIP64_MAGIC_VALUE)
+                    || (centralDirectorySize >= ZIP64_MAGIC_VALUE)) {
+                long zip64EndOffset = outputStream.count;
+                writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+                writeLong(44);
+                writeShort(ZIP64_VERSION);
+                writeShort(ZIP64_VERSION);
+                writeInt(0);
+                writeInt(0);
+                writeLong(entries.size());
+                writeLong(entries.size());
+                writeLong(centralDirectorySize);
+                writeLong(centralDirectoryOffset);
+
+                writeInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+                writeInt(0);
+                writeLong(zip64EndOffset);
+                writeInt(1);
+            }
+
+            writeInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            writeShort(0);
+            writeShort(0);
+            writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+            writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+            writeInt(Math.min(centralDirectorySize, ZIP64_MAGIC_VALUE));
+            writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC_VALUE));
+            writeShort(0);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Validates the name of a new entry and returns its UTF-8 encoding
+     *
+     * @param name the name of the entry
+     * @return the UTF-8 encoded name
+     * @throws IOException if the writer is closed, or if an entry of the same name was written
+     */
+    private byte[] startEntry(String name) throws IOException {
+        if (closed) {
+            throw new IOException("The archive is closed.");
+        }
+        if (!names.add(name)) {
+            throw new ZipException(String.format("Duplicate entry[%s].", name));
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > ZIP64_MAGIC_COUNT) {
+            throw new ZipException(String.format("Entry name[%s] is too long.", name));
+        }
+        return nameBytes;
+    }
+
+    /**
+     * Writes the local file header of an entry
+     *
+     * @param name           the UTF-8 encoded name of the entry
+     * @param method         the compression method of the entry
+     * @param flags          the general purpose flags of the entry
+     * @param crc            the CRC-32 of the content, or zero if written in a data descriptor
+     * @param compressedSize the size of the compressed data, or zero if written in a data descriptor
+     * @param size           the size of the uncompressed content, or zero if written in a data descriptor
+     * @param zip64          true if the sizes are written in a ZIP64 extra field
+     * @throws IOException if an I/O error occurs when writing the header
+     */
+    private void writeLocalFileHeader(byte[] name, int method, int flags, long crc, long compressedSize, long size,
+            boolean zip64) throws IOException {
+        writeInt(LOCAL_FILE_HEADER_SIGNATURE);
+        writeShort((zip64) ? ZIP64_VERSION : VERSION);
+        writeShort(flags);
+        writeShort(method);
+        writeInt(dosTime);
+        writeInt(crc);
+        writeInt((zip64) ? ZIP64_MAGIC_VALUE : compressedSize);
+        writeInt((zip64) ? ZIP64_MAGIC_VALUE : size);
+        writeShort(name.length);
+        writeShort((zip64) ? 20 : 0);
+        outputStream.write(name);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_FIELD_HEADER_ID);
+            writeShort(16);
+            writeLong(size);
+            writeLong(compressedSize);
+        }
+    }
+
+    /**
+     * Writes the central directory header of an entry
+     *
+     * @param entry the {@link EntryRecord} of the entry
+     * @throws IOException if an I/O error occurs when writing the header
+     */
+    private void writeCentralDirectoryHeader(EntryRecord entry) throws IOException {
+        boolean zip64Size = entry.size >= ZIP64_MAGIC_VALUE;
+        boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC_VALUE;
+        boolean zip64Offset = entry.localHeaderOffset >= ZIP64_MAGIC_VALUE;
+        int extraLength = ((zip64Size) ? 8 : 0) + ((zip64CompressedSize) ? 8 : 0) + ((zip64Offset) ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+
+        writeInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+        writeShort((zip64) ? ZIP64_VERSION : VERSION);
+        writeShort((zip64) ? ZIP64_VERSION : VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(dosTime);
+        writeInt(entry.crc);
+        writeInt((zip64CompressedSize) ? ZIP64_MAGIC_VALUE : entry.compressedSize);
+        writeInt((zip64Size) ? ZIP64_MAGIC_VALUE : entry.size);
+        writeShort(entry.name.length);
+        writeShort((zip64) ? (extraLength + 4) : 0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt((zip64Offset) ? ZIP64_MAGIC_VALUE : entry.localHeaderOffset);
+        outputStream.write(entry.name);
+        if (zip64) {
+            // the fields are present only for the values which do not fit, in this order
+            writeShort(ZIP64_EXTRA_FIELD_HEADER_ID);
+            writeShort(extraLength);
+            if (zip64Size) {
+                writeLong(entry.size);
+            }
+            if (zip64CompressedSize) {
+                writeLong(entry.compressedSize);
+            }
+            if (zip64Offset) {
+                writeLong(entry.localHeaderOffset);
+            }
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        outputStream.write(value & 0xff);
+        outputStream.write((value >>> 8) & 0xff);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xffff));
+        writeShort((int) ((value >>> 16) & 0xffff));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & ZIP64_MAGIC_VALUE);
+        writeInt(value >>> 32);
+    }
+
+    /**
+     * Deflates a block of input into a raw deflate stream
+     *
+     * @param input            the buffer holding the block
+     * @param offset           the offset of the block in the buffer
+     * @param length           the length of the block
+     * @param dictionary       the buffer ending with the preset dictionary of the block, or {@code null} if none
+     * @param dictionaryLength the length of the dictionary buffer
+     * @param level            the deflate level
+     * @param last             true if the block ends the deflate stream, else false, in which case the block is
+     *                         flushed to a byte boundary
+     * @param outputStream     the {@link OutputStream} to which the compressed block is written
+     * @throws IOException if an I/O error occurs when writing the compressed block
+     */
+    private static void deflate(byte[] input, int offset, int length, byte[] dictionary, int dictionaryLength,
+            int level, boolean last, OutputStream outputStream) throws IOException {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                int size = Math.min(DICTIONARY_SIZE, dictionaryLength);
+                deflater.setDictionary(dictionary, dictionaryLength - size, size);
+            }
+            deflater.setInput(input, offset, length);
+            byte[] buffer = new byte[Math.max(512, (length / 2) + 64)];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    outputStream.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int deflated;
+                do {
+                    deflated = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    outputStream.write(buffer, 0, deflated);
+                } while (deflated == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the MS-DOS date and time of the specified time
+     *
+     * @param time the time, in milliseconds since the epoch
+     * @return the MS-DOS time in the low and the MS-DOS date in the high 16 bits
+     */
+    private static int toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25) | ((calendar.get(Calendar.MONTH) + 1) << 21) | (calendar
+                .get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar
+                .get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    /**
+     * an {@code OutputStream} which counts the bytes written through it
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override public void write(int value) throws IOException {
+            out.write(value);
+            count++;
+        }
+
+        @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+
+    /**
+     * an {@code OutputStream} of the data of a single entry, which cannot close the archive
+     */
+    private static class EntryOutputStream extends FilterOutputStream {
+
+        private EntryOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override public void close() {
+            // the entry ends when its content is written
+        }
+    }
+
+    /**
+     * an {@code OutputStream} which deflates the content of an entry, computing its CRC-32 and size
+     */
+    private static class DeflatingOutputStream extends OutputStream {
+        private final OutputStream outputStream;
+        private final int level;
+        private final boolean parallel;
+        private final CRC32 crc = new CRC32();
+        private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+        private final Deflater deflater;
+        private final byte[] buffer = new byte[64 * 1024];
+        private byte[] block;
+        private byte[] previousBlock;
+        private int blockLength;
+        private long size;
+
+        private DeflatingOutputStream(OutputStream outputStream, int level, boolean parallel) {
+            this.outputStream = outputStream;
+            this.level = level;
+            this.parallel = parallel;
+            this.deflater = (parallel) ? null : new Deflater(level, true);
+            this.block = (parallel) ? new byte[PARALLEL_BLOCK_SIZE] : null;
+        }
+
+        @Override public void write(int value) throws IOException {
+            write(new byte[] { (byte) value }, 0, 1);
+        }
+
+        @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+            crc.update(bytes, offset, length);
+            size += length;
+            if (!parallel) {
+                deflater.setInput(bytes, offset, length);
+                while (!deflater.needsInput()) {
+                    outputStream.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return;
+            }
+            while (length > 0) {
+                int copied = Math.min(length, block.length - blockLength);
+                System.arraycopy(bytes, offset, block, blockLength, copied);
+                blockLength += copied;
+                offset += copied;
+                length -= copied;
+                if (blockLength == block.length) {
+                    submitBlock(false);
+                }
+            }
+        }
+
+        /**
+         * Deflates the remaining content and ends the deflate stream
+         *
+         * @throws IOException if an I/O error occurs when writing the compressed content
+         */
+        private void finish() throws IOException {
+            if (!parallel) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    outputStream.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return;
+            }
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Releases the native memory of the deflater and cancels the blocks still pending, whether or not the entry
+         * was written completely
+         */
+        private void release() {
+            if (deflater != null) {
+                deflater.end();
+            }
+            pendingBlocks.forEach(future -> future.cancel(true));
+            pendingBlocks.clear();
+        }
+
+        /**
+         * Submits the current block for deflation, writing the oldest compressed blocks while too many are pending
+         *
+         * @param last true if the block ends the content, else false
+         * @throws IOException if an I/O error occurs when writing a compressed block
+         */
+        private void submitBlock(boolean last) throws IOException {
+            byte[] input = block;
+            int inputLength = blockLength;
+            byte[] dictionary = previousBlock;
+            pendingBlocks.add(ForkJoinPool.commonPool().submit(() -> {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream((inputLength / 2) + 64);
+                deflate(input, 0, inputLength, dictionary, (dictionary != null) ? dictionary.length : 0, level,
+                        last, compressed);
+                return compressed.toByteArray();
+            }));
+            previousBlock = input;
+            block = new byte[PARALLEL_BLOCK_SIZE];
+            blockLength = 0;
+            while (pendingBlocks.size() > 2 * ForkJoinPool.getCommonPoolParallelism()) {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Waits for the oldest pending block to be deflated and writes it
+         *
+         * @throws IOException if the block could not be deflated or written
+         */
+        private void writeBlock() throws IOException {
+            Future<byte[]> pendingBlock = pendingBlocks.remove();
+            try {
+                outputStream.write(pendingBlock.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while deflating an entry.", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to deflate an entry.", e.getCause());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,457 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * a Java class which reads the entries of a .zip or .jar file directly from its central directory, without
+ * creating a zip {@code FileSystem} or decompressing any entry other than those whose content is requested
+ * <p>
+ * The central directory of a file of at least the {@link MappedFileReader} threshold size is memory-mapped rather
+ * than read into a heap buffer.
+ */
+public class ZipCentralDirectoryReader {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+    private static final int ZIP64_EXTRA_FIELD_HEADER_ID = 0x0001;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int MAXIMUM_COMMENT_LENGTH = 0xffff;
+    private static final long ZIP64_MAGIC_VALUE = 0xffffffffL;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    /**
+     * the length assumed for the extra field of a local file header when reading it along with the entry data
+     */
+    private static final int EXTRA_FIELD_ALLOWANCE = 64;
+    private static final int CONTENT_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * a Java class which represents the central directory record of a single .zip or .jar file entry
+     */
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    /**
+     * Returns the names of the entries in the .zip or .jar file, in central directory order
+     *
+     * @param zipFile the {@link Path} to the .zip or .jar file
+     * @return a {@link List} of {@link String} entry names
+     * @throws IOException if an I/O error occurs or if the file is not a valid .zip or .jar file
+     */
+    public static List<String> listEntryNames(Path zipFile) throws IOException {
+        List<String> names = new ArrayList<>();
+        read(zipFile, entry -> names.add(entry.getName()));
+        return names;
+    }
+
+    /**
+     * Reads the central directory of the .zip or .jar file and passes each entry to the {@code Consumer}, in central
+     * directory order
+     *
+     * @param zipFile  the {@link Path} to the .zip or .jar file
+     * @param consumer the {@link Consumer} to which each {@link Entry} is to be passed
+     * @return the size of the central directory, in bytes
+     * @throws IOException if an I/O error occurs or if the file is not a valid .zip or .jar file
+     */
+    public static long read(Path zipFile, Consumer<Entry> consumer) throws IOException {
+        return read(zipFile, consumer, entry -> false, (entry, content) -> {
+        });
+    }
+
+    /**
+     * Reads the central directory of the .zip or .jar file and passes each entry to the {@code Consumer}, in central
+     * directory order, and then passes the uncompressed content of each selected entry to the {@code BiConsumer}
+     * <p>
+     * The content of the selected entries is read through the same file channel as the central directory, hence
+     * small metadata entries may be read without opening the file again.
+     *
+     * @param zipFile         the {@link Path} to the .zip or .jar file
+     * @param consumer        the {@link Consumer} to which each {@link Entry} is to be passed
+     * @param contentFilter   the {@link Predicate} which selects the entries whose content is to be read
+     * @param contentConsumer the {@link BiConsumer} to which each selected {@link Entry} and its content is to be
+     *                        passed
+     * @return the total size of the central directory and of the compressed content read, in bytes
+     * @throws IOException if an I/O error occurs, if the file is not a valid .zip or .jar file or if a selected entry
+     *                     is of an unsupported compression method
+     */
+    public static long read(Path zipFile, Consumer<Entry> consumer, Predicate<Entry> contentFilter,
+            BiConsumer<Entry, byte[]> contentConsumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ)) {
+            List<Entry> selectedEntries = new ArrayList<>();
+            ByteBuffer centralDirectory = readCentralDirectory(channel);
+            while (centralDirectory.remaining() >= CENTRAL_DIRECTORY_HEADER_SIZE) {
+                int position = centralDirectory.position();
+                if (centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                    throw new ZipException(String.format("Invalid central directory header in %s", zipFile));
+                }
+                int method = centralDirectory.getShort(position + 10) & 0xffff;
+                long crc = centralDirectory.getInt(position + 16) & ZIP64_MAGIC_VALUE;
+                long compressedSize = centralDirectory.getInt(position + 20) & ZIP64_MAGIC_VALUE;
+                long size = centralDirectory.getInt(position + 24) & ZIP64_MAGIC_VALUE;
+                int nameLength = centralDirectory.getShort(position + 28) & 0xffff;
+                int extraLength = centralDirectory.getShort(position + 30) & 0xffff;
+                int commentLength = centralDirectory.getShort(position + 32) & 0xffff;
+                long localHeaderOffset = centralDirectory.getInt(position + 42) & ZIP64_MAGIC_VALUE;
+
+                int namePosition = position + CENTRAL_DIRECTORY_HEADER_SIZE;
+                int extraPosition = namePosition + nameLength;
+                int nextPosition = extraPosition + extraLength + commentLength;
+                if (nextPosition > centralDirectory.limit()) {
+                    throw new ZipException(String.format("Truncated central directory in %s", zipFile));
+                }
+                String name = decodeName(centralDirectory, namePosition, nameLength);
+
+                if ((size == ZIP64_MAGIC_VALUE) || (compressedSize == ZIP64_MAGIC_VALUE) || (localHeaderOffset
+                        == ZIP64_MAGIC_VALUE)) {
+                    // the actual values are held in the ZIP64 extended information extra field, in this order
+                    int extraFieldPosition = findExtraField(centralDirectory, extraPosition, extraLength);
+                    if (extraFieldPosition != -1) {
+                        int valuePosition = extraFieldPosition + 4;
+                        if (size == ZIP64_MAGIC_VALUE) {
+                            size = centralDirectory.getLong(valuePosition);
+                            valuePosition += 8;
+                        }
+                        if (compressedSize == ZIP64_MAGIC_VALUE) {
+                            compressedSize = centralDirectory.getLong(valuePosition);
+                            valuePosition += 8;
+                        }
+                        if (localHeaderOffset == ZIP64_MAGIC_VALUE) {
+                            localHeaderOffset = centralDirectory.getLong(valuePosition);
+                        }
+                    }
+                }
+
+                Entry entry = new Entry(name, method, crc, compressedSize, size, localHeaderOffset);
+                consumer.accept(entry);
+                if (contentFilter.test(entry)) {
+                    selectedEntries.add(entry);
+                }
+                centralDirectory.position(nextPosition);
+            }
+
+            long bytesRead = centralDirectory.limit();
+            if (!selectedEntries.isEmpty()) {
+                byte[] buffer = new byte[CONTENT_BUFFER_SIZE];
+                for (Entry entry : selectedEntries) {
+                    contentConsumer.accept(entry, readContent(channel, entry, buffer));
+                    bytesRead += entry.getCompressedSize();
+                }
+            }
+            return bytesRead;
+        }
+    }
+
+    /**
+     * Reads and, if compressed, inflates the data of the entry of the .zip or .jar file
+     *
+     * @param channel the {@link FileChannel} of the .zip or .jar file
+     * @param entry   the central directory {@link Entry} of the entry
+     * @param buffer  the buffer through which the data is read
+     * @return the uncompressed data of the entry
+     * @throws IOException if an I/O error occurs, or if the entry is of an unsupported compression method
+     */
+    static byte[] readContent(FileChannel channel, Entry entry, byte[] buffer) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        copyEntryData(channel, entry, data, buffer);
+        if (entry.getMethod() == ZipEntry.STORED) {
+            return data.toByteArray();
+        }
+        if (entry.getMethod() != ZipEntry.DEFLATED) {
+            throw new ZipException(String.format("Entry[%s] is of the unsupported compression method %d.",
+                    entry.getName(), entry.getMethod()));
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Inflater inflater = new Inflater(true);
+        try (InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(data.toByteArray()),
+                inflater)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+        } finally {
+            inflater.end();
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * Copies the compressed data of the entry of the .zip or .jar file, which follows its local file header
+     * <p>
+     * The local file header is read along with the data, so that the data of a small entry is read at once.
+     *
+     * @param channel      the {@link FileChannel} of the .zip or .jar file
+     * @param entry        the central directory {@link Entry} of the entry
+     * @param outputStream the {@link OutputStream} to which the compressed data is to be written
+     * @param buffer       the buffer through which the data is copied
+     * @throws IOException if an I/O error occurs, or if the local file header of the entry is invalid
+     */
+    static void copyEntryData(FileChannel channel, Entry entry, OutputStream outputStream, byte[] buffer)
+            throws IOException {
+        long position = entry.getLocalHeaderOffset();
+        long remaining = entry.getCompressedSize();
+        int length = (int) Math.min(buffer.length, (LOCAL_FILE_HEADER_SIZE + (2L * entry.getName().length())
+                + EXTRA_FIELD_ALLOWANCE + remaining));
+        int read = readAt(channel, position, buffer, length);
+        ByteBuffer header = ByteBuffer.wrap(buffer, 0, read).order(ByteOrder.LITTLE_ENDIAN);
+        if ((read < LOCAL_FILE_HEADER_SIZE) || (header.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE)) {
+            throw new ZipException(String.format("Invalid local file header of entry[%s].", entry.getName()));
+        }
+        int dataIndex = LOCAL_FILE_HEADER_SIZE + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+        position += dataIndex;
+        if (dataIndex < read) {
+            int available = (int) Math.min(remaining, (read - dataIndex));
+            outputStream.write(buffer, dataIndex, available);
+            position += available;
+            remaining -= available;
+        }
+        while (remaining > 0) {
+            read = readAt(channel, position, buffer, (int) Math.min(buffer.length, remaining));
+            if (read == 0) {
+                throw new EOFException(String.format("Unexpected end of the data of entry[%s].", entry.getName()));
+            }
+            outputStream.write(buffer, 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Reads up to the specified number of bytes of the file channel, from the specified position
+     *
+     * @param channel  the {@link FileChannel} to be read
+     * @param position the position from which to read
+     * @param buffer   the buffer into which the bytes are read
+     * @param length   the number of bytes to be read
+     * @return the number of bytes read, which is less than the length only at the end of the file
+     * @throws IOException if an I/O error occurs while reading
+     */
+    private static int readAt(FileChannel channel, long position, byte[] buffer, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+        while (byteBuffer.hasRemaining()) {
+            if (channel.read(byteBuffer, position + byteBuffer.position()) == -1) {
+                break;
+            }
+        }
+        return byteBuffer.position();
+    }
+
+    /**
+     * Locates and reads the complete central directory of the .zip or .jar file
+     *
+     * @param channel the {@link FileChannel} of the .zip or .jar file
+     * @return a little-endian {@link ByteBuffer} holding or mapping the central directory
+     * @throws IOException if an I/O error occurs or if the end of central directory record cannot be found
+     */
+    private static ByteBuffer readCentralDirectory(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new ZipException("Zip END header not found");
+        }
+
+        // the end of central directory record is followed only by an optional comment of at most 64 KB
+        int tailSize = (int) Math.min(fileSize, (MAXIMUM_COMMENT_LENGTH + END_OF_CENTRAL_DIRECTORY_SIZE
+                + ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE));
+        long tailPosition = fileSize - tailSize;
+        ByteBuffer tail = readFully(channel, tailPosition, tailSize);
+
+        // prefers a record whose comment length matches the end of file, as the comment may contain the signature
+        int endPosition = -1;
+        for (int position = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                if (endPosition == -1) {
+                    endPosition = position;
+                }
+                if (position + END_OF_CENTRAL_DIRECTORY_SIZE + (tail.getShort(position + 20) & 0xffff) == tailSize) {
+                    endPosition = position;
+                    break;
+                }
+            }
+        }
+        if (endPosition == -1) {
+            throw new ZipException("Zip END header not found");
+        }
+
+        long centralDirectorySize = tail.getInt(endPosition + 12) & ZIP64_MAGIC_VALUE;
+        long centralDirectoryOffset = tail.getInt(endPosition + 16) & ZIP64_MAGIC_VALUE;
+
+        int locatorPosition = endPosition - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+        if ((locatorPosition >= 0) && (tail.getInt(locatorPosition)
+                == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE)) {
+            long zip64EndOffset = tail.getLong(locatorPosition + 8);
+            ByteBuffer zip64End = readFully(channel, zip64EndOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+            if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new ZipException("Invalid ZIP64 end of central directory record");
+            }
+            centralDirectorySize = zip64End.getLong(40);
+            centralDirectoryOffset = zip64End.getLong(48);
+        }
+
+        if ((centralDirectorySize > Integer.MAX_VALUE) || (centralDirectoryOffset + centralDirectorySize
+                > fileSize)) {
+            throw new ZipException("Invalid central directory size or offset");
+        }
+        if (MappedFileReader.isMapped(fileSize)) {
+            return MappedFileReader.map(channel, centralDirectoryOffset, (int) centralDirectorySize);
+        }
+        return readFully(channel, centralDirectoryOffset, (int) centralDirectorySize);
+    }
+
+    /**
+     * Reads the specified number of bytes from the {@code FileChannel}, starting from the specified position
+     *
+     * @param channel  the {@link FileChannel} to read from
+     * @param position the file position at which the reading is to begin
+     * @param length   the number of bytes to be read
+     * @return a little-endian {@link ByteBuffer} holding the bytes read
+     * @throws IOException if an I/O error occurs or if the end of file is reached prematurely
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of the .zip or .jar file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the position of the ZIP64 extended information extra field within the extra data of an entry
+     *
+     * @param buffer        the {@link ByteBuffer} holding the central directory
+     * @param extraPosition the position of the extra data
+     * @param extraLength   the length of the extra data
+     * @return the position of the ZIP64 extended information extra field header, or -1 if absent
+     */
+    private static int findExtraField(ByteBuffer buffer, int extraPosition, int extraLength) {
+        int position = extraPosition;
+        int end = extraPosition + extraLength;
+        while (position + 4 <= end) {
+            int headerId = buffer.getShort(position) & 0xffff;
+            int dataSize = buffer.getShort(position + 2) & 0xffff;
+            if (headerId == ZIP64_EXTRA_FIELD_HEADER_ID) {
+                return position;
+            }
+            position += 4 + dataSize;
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes an entry name, avoiding the charset decoder for the common case of ASCII names
+     *
+     * @param buffer   the {@link ByteBuffer} holding or mapping the central directory
+     * @param position the position of the entry name
+     * @param length   the length of the entry name, in bytes
+     * @return the decoded entry name
+     */
+    private static String decodeName(ByteBuffer buffer, int position, int length) {
+        byte[] bytes;
+        int offset;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            offset = buffer.arrayOffset() + position;
+        } else {
+            // a mapped central directory has no backing array, hence only the name is copied to the heap
+            bytes = new byte[length];
+            offset = 0;
+            for (int index = 0; index < length; index++) {
+                bytes[index] = buffer.get(position + index);
+            }
+        }
+        for (int index = offset; index < offset + length; index++) {
+            if (bytes[index] < 0) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.BatchBundleGenerator;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionJournal;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchBundleGeneratorTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void convertInParallelTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        for (String name : new String[] { "one.jar", "two.jar", "three.jar" }) {
+            jarFiles.add(TestUtils.copySampleJar(source.resolve(name)));
+        }
+
+        List<ConversionResult> results = new BatchBundleGenerator(target, "", 3).convert(jarFiles);
+
+        assertEquals(jarFiles.size(), results.size());
+        for (ConversionResult result : results) {
+            assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+            assertTrue(Files.exists(result.getBundle()));
+        }
+    }
+
+    @Test public void reportFailurePerJarTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(TestUtils.copySampleJar(source.resolve("valid.jar")));
+        jarFiles.add(source.resolve(TestConstants.NON_EXISTING_JAR_FILE));
+
+        List<ConversionResult> results = new BatchBundleGenerator(target, "", 2).convert(jarFiles);
+
+        assertEquals(ConversionResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(ConversionResult.Status.FAILED, results.get(1).getStatus());
+    }
+
+    @Test public void convertPipelinedTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        for (String name : new String[] { "one.jar", "two.jar", "three.jar", "four.jar" }) {
+            jarFiles.add(TestUtils.copySampleJar(source.resolve(name)));
+        }
+        jarFiles.add(source.resolve(TestConstants.NON_EXISTING_JAR_FILE));
+
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 1);
+        batchBundleGenerator.setPipeline(1, 2, 1);
+        List<ConversionResult> results = batchBundleGenerator.convert(jarFiles::forEach);
+
+        assertEquals(jarFiles.size(), results.size());
+        for (int index = 0; index < results.size(); index++) {
+            ConversionResult result = results.get(index);
+            assertEquals(jarFiles.get(index), result.getJarFile());
+            if (index < 4) {
+                assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+                assertTrue(Files.exists(result.getBundle()));
+            } else {
+                assertEquals(ConversionResult.Status.FAILED, result.getStatus());
+            }
+        }
+    }
+
+    @Test public void resumeUnfinishedBatchTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path done = TestUtils.copySampleJar(source.resolve("done.jar"));
+        Path failed = TestUtils.copySampleJar(source.resolve("failed.jar"));
+        Path pending = TestUtils.copySampleJar(source.resolve("pending.jar"));
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(done);
+        jarFiles.add(failed);
+        jarFiles.add(pending);
+
+        // an unfinished batch which converted one JAR file, failed another and was killed before the last
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 1);
+        batchBundleGenerator.setJournaled(true);
+        batchBundleGenerator.convert(jarFiles.subList(0, 1));
+        Path journalFile = target.resolve(Constants.JOURNAL_FILE);
+        try (ConversionJournal journal = ConversionJournal.open(target, "format=" + Constants.BUNDLE_FORMAT_VERSION
+                + ";prefix=;flatten=false;metadataNaming=false;" + BundleCompression.getDefault().getSettings())) {
+            journal.record(new ConversionResult(done, target.resolve("done_1.0.0.jar"),
+                    ConversionResult.Status.CREATED, 1, null));
+            journal.record(new ConversionResult(failed, null, ConversionResult.Status.FAILED, 1, "Failed."));
+        }
+        Files.write(journalFile, "CREATED\t1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        List<ConversionResult> results = batchBundleGenerator.convert(jarFiles);
+        for (ConversionResult result : results) {
+            if (result.getJarFile().equals(done)) {
+                assertEquals(ConversionResult.Status.SKIPPED, result.getStatus());
+            } else {
+                assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+            }
+        }
+        assertFalse(Files.exists(journalFile));
+    }
+
+    @Test public void resumeTruncatedJournalTest() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = TestUtils.copySampleJar(source.resolve("sample.jar"));
+        Path bundle = Files.createFile(target.resolve("sample_1.0.0.jar"));
+        Path journalFile = target.resolve(Constants.JOURNAL_FILE);
+        ConversionJournal.open(target, "settings").close();
+        // a run killed while appending a line
+        Files.write(journalFile, "CREATED\t1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (ConversionJournal journal = ConversionJournal.open(target, "settings")) {
+            journal.record(new ConversionResult(jarFile, bundle, ConversionResult.Status.CREATED, 1, null));
+        }
+
+        try (ConversionJournal journal = ConversionJournal.open(target, "settings")) {
+            assertEquals(ConversionResult.Status.SKIPPED, journal.getCompleted(jarFile).getStatus());
+        }
+    }
+
+    @Test public void deduplicateIdenticalJarsTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(TestUtils.copySampleJar(Files.createDirectories(source.resolve("first")).resolve("sample.jar")));
+        jarFiles.add(TestUtils.copySampleJar(Files.createDirectories(source.resolve("second")).resolve("sample.jar")));
+        jarFiles.add(TestUtils.copySampleJar(source.resolve("renamed.jar")));
+
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 1);
+        batchBundleGenerator.setDeduplicated(true);
+        List<ConversionResult> results = batchBundleGenerator.convert(jarFiles::forEach);
+
+        assertEquals(ConversionResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(ConversionResult.Status.SKIPPED, results.get(1).getStatus());
+        assertEquals(results.get(0).getBundle(), results.get(1).getBundle());
+        assertEquals(ConversionResult.Status.CREATED, results.get(2).getStatus());
+        assertTrue(Files.exists(target.resolve("renamed_1.0.0.jar")));
+        // the analysis of the first JAR file is reused
+        assertEquals(0, results.get(2).getMetrics().getDuration(ConversionMetrics.Stage.PACKAGE_SCAN));
+    }
+
+    @Test public void deduplicateIdenticalJarsConcurrentlyTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        int copies = 6;
+        List<Path> jarFiles = new ArrayList<>();
+        for (int index = 0; index < copies; index++) {
+            jarFiles.add(TestUtils.copySampleJar(source.resolve("copy" + index + ".jar")));
+        }
+
+        for (boolean pipelined : new boolean[] { false, true }) {
+            Path target = temporaryFolder.newFolder("target-" + pipelined).toPath();
+            BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", copies);
+            batchBundleGenerator.setDeduplicated(true);
+            if (pipelined) {
+                batchBundleGenerator.setPipeline(copies, copies, copies);
+            }
+            int scanned = 0;
+            for (ConversionResult result : batchBundleGenerator.convert(jarFiles)) {
+                assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+                if (result.getMetrics().getDuration(ConversionMetrics.Stage.PACKAGE_SCAN) > 0) {
+                    scanned++;
+                }
+            }
+            // the identical JAR files wait for and reuse the analysis of the first of them
+            assertEquals(1, scanned);
+        }
+    }
+
+    @Test public void reportBundleNameClashTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        for (String directory : new String[] { "lib", "components/x", "components/y" }) {
+            Files.createDirectories(source.resolve(directory));
+        }
+        jarFiles.add(TestUtils.copySampleJar(source.resolve("lib/a.jar")));
+        jarFiles.add(TestUtils.createJar(source.resolve("components/x/a.jar"), "x/X.class"));
+        jarFiles.add(TestUtils.copySampleJar(source.resolve("components/y/a.jar")));
+
+        for (boolean pipelined : new boolean[] { false, true }) {
+            Path target = temporaryFolder.newFolder("target-" + pipelined).toPath();
+            BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 3);
+            if (pipelined) {
+                batchBundleGenerator.setPipeline(3, 3, 3);
+            }
+            List<ConversionResult> results = batchBundleGenerator.convert(jarFiles::forEach);
+
+            // the first JAR file discovered owns the bundle name, which an identical JAR file shares without writing
+            assertEquals(ConversionResult.Status.CREATED, results.get(0).getStatus());
+            assertEquals(ConversionResult.Status.FAILED, results.get(1).getStatus());
+            assertTrue(results.get(1).getMessage().contains("clashes"));
+            assertEquals(ConversionResult.Status.SKIPPED, results.get(2).getStatus());
+            assertEquals(results.get(0).getBundle(), results.get(2).getBundle());
+            assertTrue(Files.exists(target.resolve("a_1.0.0.jar")));
+        }
+    }
+
+    @Test public void convertIncrementallyTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path unchanged = TestUtils.copySampleJar(source.resolve("unchanged.jar"));
+        Path changed = TestUtils.copySampleJar(source.resolve("changed.jar"));
+        Path removed = TestUtils.copySampleJar(source.resolve("removed.jar"));
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(unchanged);
+        jarFiles.add(changed);
+        jarFiles.add(removed);
+
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 2);
+        batchBundleGenerator.setIncremental(true);
+        for (ConversionResult result : batchBundleGenerator.convert(jarFiles)) {
+            assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+        }
+
+        TestUtils.createJar(changed, "org/wso2/carbon/changed/Sample.class");
+        jarFiles.remove(removed);
+        Files.delete(removed);
+        for (ConversionResult result : batchBundleGenerator.convert(jarFiles)) {
+            if (result.getJarFile().equals(changed)) {
+                assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+            } else {
+                assertEquals(ConversionResult.Status.SKIPPED, result.getStatus());
+            }
+        }
+        assertTrue(Files.exists(target.resolve("unchanged_1.0.0.jar")));
+        assertTrue(Files.exists(target.resolve("changed_1.0.0.jar")));
+        assertFalse(Files.exists(target.resolve("removed_1.0.0.jar")));
+    }
+
+}
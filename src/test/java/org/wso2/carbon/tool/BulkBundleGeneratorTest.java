@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.BulkBundleGenerator;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class BulkBundleGeneratorTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void convertListedJarsTest() throws IOException, InterruptedException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path other = temporaryFolder.getRoot().toPath().resolve("other");
+        Path one = TestUtils.copySampleJar(source.resolve("one.jar"));
+        Path two = TestUtils.copySampleJar(source.resolve("two.jar"));
+        Path three = TestUtils.copySampleJar(source.resolve("three.jar"));
+        String list = "# changed JAR files\n" + one + "\n\n" + two + "\t" + other + "\n" + three + "\t\tprefix."
+                + "\n" + source.resolve(TestConstants.NON_EXISTING_JAR_FILE) + "\n";
+
+        List<ConversionResult> results = new CopyOnWriteArrayList<>();
+        long jarFiles = new BulkBundleGenerator(target, "", 2).convert(new BufferedReader(new StringReader(list)),
+                results::add);
+
+        assertEquals(4, jarFiles);
+        assertEquals(4, results.size());
+        assertEquals(1, results.stream().filter(result -> result.getStatus() == ConversionResult.Status.FAILED)
+                .count());
+        assertTrue(Files.exists(target.resolve("one_1.0.0.jar")));
+        assertTrue(Files.exists(other.resolve("two_1.0.0.jar")));
+        assertTrue(Files.exists(target.resolve("prefix.three_1.0.0.jar")));
+    }
+
+    @Test public void rejectLineWithoutDestinationTest() throws IOException, InterruptedException {
+        Path jarFile = TestUtils.copySampleJar(temporaryFolder.newFolder("source").toPath().resolve("one.jar"));
+
+        List<ConversionResult> results = new CopyOnWriteArrayList<>();
+        new BulkBundleGenerator(null, "", 1).convert(new BufferedReader(new StringReader(jarFile.toString())),
+                results::add);
+
+        assertEquals(1, results.size());
+        assertEquals(ConversionResult.Status.FAILED, results.get(0).getStatus());
+    }
+
+}
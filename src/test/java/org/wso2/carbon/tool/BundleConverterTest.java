@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.BundleConverter;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+public class BundleConverterTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void convertAllTest() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path one = TestUtils.createJar(source.resolve("one.jar"), "org/example/one/A.class");
+        Path missing = source.resolve("missing.jar");
+        Path two = TestUtils.createJar(source.resolve("two-lib.jar"), "org/example/two/B.class");
+
+        Manifest template = new Manifest();
+        template.getMainAttributes().putValue("Bundle-Vendor", "WSO2");
+        try (BundleConverter converter = new BundleConverter("ext_", "2.1.0", template, 2)) {
+            List<CompletableFuture<ConversionResult>> futures = converter
+                    .convertAll(Arrays.asList(one, missing, two), target, false);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            assertEquals(ConversionResult.Status.CREATED, futures.get(0).join().getStatus());
+            assertEquals(ConversionResult.Status.FAILED, futures.get(1).join().getStatus());
+            assertEquals(ConversionResult.Status.CREATED, futures.get(2).join().getStatus());
+            assertEquals(target.resolve("ext_two_lib_2.1.0.jar"), futures.get(2).join().getBundle());
+
+            try (JarFile bundle = new JarFile(futures.get(0).join().getBundle().toFile())) {
+                Attributes attributes = bundle.getManifest().getMainAttributes();
+                assertEquals("WSO2", attributes.getValue("Bundle-Vendor"));
+                assertEquals("2.1.0", attributes.getValue(Constants.BUNDLE_VERSION));
+                assertEquals("ext_one", attributes.getValue(Constants.BUNDLE_SYMBOLIC_NAME));
+            }
+        }
+    }
+
+    @Test public void cachedAnalysisTest() throws IOException, JarToBundleConverterException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = TestUtils.createJar(source.resolve("cached.jar"), "org/example/cached/A.class");
+
+        try (BundleConverter converter = new BundleConverter()) {
+            ConversionResult first = converter.convert(jarFile, target, true);
+            ConversionResult second = converter.convert(jarFile, target, true);
+            assertEquals(ConversionResult.Status.CREATED, second.getStatus());
+            assertTrue(first.getMetrics().getEntries() > 0);
+            // the unchanged JAR file is not rescanned
+            assertEquals(0, second.getMetrics().getEntries());
+            assertEquals(0, second.getMetrics().getDuration(ConversionMetrics.Stage.PACKAGE_SCAN));
+        }
+    }
+
+    @Test public void flattenPerConverterTest() throws IOException, JarToBundleConverterException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path embeddedTarget = temporaryFolder.newFolder("embedded").toPath();
+        Path flattenedTarget = temporaryFolder.newFolder("flattened").toPath();
+        Path jarFile = TestUtils.createJar(source.resolve("layout.jar"), "org/example/layout/A.class");
+
+        try (BundleConverter embedding = new BundleConverter("", "1.0.0", new Manifest(), 1, false, false);
+                BundleConverter flattening = new BundleConverter("", "1.0.0", new Manifest(), 1, false, true)) {
+            // the converters of different layouts are used side by side
+            ConversionResult embedded = embedding.convert(jarFile, embeddedTarget, true);
+            ConversionResult flattened = flattening.convert(jarFile, flattenedTarget, true);
+
+            try (JarFile bundle = new JarFile(embedded.getBundle().toFile())) {
+                assertNotNull(bundle.getEntry("layout.jar"));
+                assertNull(bundle.getEntry("org/example/layout/A.class"));
+            }
+            try (JarFile bundle = new JarFile(flattened.getBundle().toFile())) {
+                assertNull(bundle.getEntry("layout.jar"));
+                assertNotNull(bundle.getEntry("org/example/layout/A.class"));
+                assertEquals(".", bundle.getManifest().getMainAttributes().getValue(Constants.BUNDLE_CLASSPATH));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void invalidBundleVersionTest() {
+        new BundleConverter("", "1.0.0-SNAPSHOT", new Manifest(), 1).close();
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.BundleWriter;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class BundleWriterTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void writeBundleTest() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = TestUtils.copySampleJar(source.resolve("sample.jar"));
+        Path bundle = target.resolve("sample_1.0.0.jar");
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue(Constants.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLIC_NAME, "sample");
+        BundleWriter.write(jarFile, bundle, manifest);
+
+        List<String> entries = new ArrayList<>();
+        byte[] embeddedJar = null;
+        try (InputStream inputStream = Files.newInputStream(bundle);
+                JarInputStream jarInputStream = new JarInputStream(inputStream)) {
+            assertNotNull(jarInputStream.getManifest());
+            assertEquals("sample", jarInputStream.getManifest().getMainAttributes()
+                    .getValue(Constants.BUNDLE_SYMBOLIC_NAME));
+            JarEntry entry;
+            while ((entry = jarInputStream.getNextJarEntry()) != null) {
+                entries.add(entry.getName());
+                if (entry.getName().equals("sample.jar")) {
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = jarInputStream.read(buffer)) != -1) {
+                        content.write(buffer, 0, read);
+                    }
+                    embeddedJar = content.toByteArray();
+                }
+            }
+        }
+
+        assertEquals(Arrays.asList(Constants.P2_INF_ENTRY, "sample.jar"), entries);
+        assertArrayEquals(Files.readAllBytes(jarFile), embeddedJar);
+        // only the bundle remains, without any temporary file
+        assertEquals(1, BundleGeneratorUtils.listFiles(target).size());
+    }
+
+    @Test public void writeFlattenedBundleTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = source.resolve("sample.jar");
+        byte[] data = "stored entry of the sample JAR file".getBytes(StandardCharsets.UTF_8);
+        Manifest jarManifest = new Manifest();
+        jarManifest.getMainAttributes().putValue(Constants.MANIFEST_VERSION, "1.0");
+        jarManifest.getMainAttributes().putValue("Implementation-Title", "sample");
+        jarManifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLIC_NAME, "original");
+        try (OutputStream outputStream = Files.newOutputStream(jarFile);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, jarManifest)) {
+            jarOutputStream.putNextEntry(new JarEntry("org/sample/Sample.class"));
+            jarOutputStream.write(new byte[1024]);
+            JarEntry storedEntry = new JarEntry("org/sample/data.bin");
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(data.length);
+            storedEntry.setCrc(crc.getValue());
+            jarOutputStream.putNextEntry(storedEntry);
+            jarOutputStream.write(data);
+            jarOutputStream.putNextEntry(new JarEntry("META-INF/SIGNER.SF"));
+            jarOutputStream.putNextEntry(new JarEntry("META-INF/SIGNER.RSA"));
+        }
+
+        ConversionResult result = BundleGeneratorUtils
+                .convertFromJarToBundle(jarFile, target, new Manifest(), "", true, false, true,
+                        BundleCompression.getDefault());
+
+        assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+        try (ZipFile bundle = new ZipFile(result.getBundle().toFile());
+                ZipFile jar = new ZipFile(jarFile.toFile())) {
+            List<String> entries = new ArrayList<>();
+            bundle.stream().forEach(entry -> entries.add(entry.getName()));
+            assertEquals(Arrays.asList("META-INF/", JarFile.MANIFEST_NAME, Constants.P2_INF_ENTRY,
+                    "org/sample/Sample.class", "org/sample/data.bin"), entries);
+            assertNull(bundle.getEntry("sample.jar"));
+            for (String name : new String[] { "org/sample/Sample.class", "org/sample/data.bin" }) {
+                ZipEntry bundleEntry = bundle.getEntry(name);
+                ZipEntry jarEntry = jar.getEntry(name);
+                // the compressed data is copied as-is
+                assertEquals(jarEntry.getMethod(), bundleEntry.getMethod());
+                assertEquals(jarEntry.getCompressedSize(), bundleEntry.getCompressedSize());
+                assertArrayEquals(read(jar.getInputStream(jarEntry)), read(bundle.getInputStream(bundleEntry)));
+            }
+
+            Manifest manifest = new Manifest(bundle.getInputStream(bundle.getEntry(JarFile.MANIFEST_NAME)));
+            assertEquals("sample", manifest.getMainAttributes().getValue("Implementation-Title"));
+            assertEquals("sample", manifest.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLIC_NAME));
+            assertEquals(".", manifest.getMainAttributes().getValue(Constants.BUNDLE_CLASSPATH));
+            assertEquals("org.sample", manifest.getMainAttributes().getValue(Constants.EXPORT_PACKAGE));
+        }
+    }
+
+    @Test public void reportConcurrentWriteTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = TestUtils.copySampleJar(source.resolve("sample.jar"));
+        int conversions = 16;
+        List<Callable<ConversionResult>> tasks = new ArrayList<>();
+        for (int index = 0; index < conversions; index++) {
+            tasks.add(() -> BundleGeneratorUtils.convertFromJarToBundle(jarFile, target, new Manifest(), "", true));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(conversions);
+        try {
+            int created = 0;
+            for (Future<ConversionResult> future : executorService.invokeAll(tasks)) {
+                ConversionResult result = future.get();
+                // as the bundle is overwritten, a conversion is only skipped while another one writes the bundle
+                if (result.getStatus() == ConversionResult.Status.SKIPPED) {
+                    assertTrue(result.getMessage().contains("is being written by a concurrent conversion"));
+                } else {
+                    assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+                    created++;
+                }
+            }
+            assertTrue(created > 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static byte[] read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.ConversionClient;
+import org.wso2.carbon.tool.components.ConversionServer;
+import org.wso2.carbon.tool.util.Constants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConversionServerTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before public void setTokenDirectory() throws IOException {
+        System.setProperty(Constants.SERVER_TOKEN_DIRECTORY_PROPERTY, temporaryFolder.newFolder("tokens").toString());
+    }
+
+    @After public void clearTokenDirectory() {
+        System.clearProperty(Constants.SERVER_TOKEN_DIRECTORY_PROPERTY);
+    }
+
+    @Test public void convertRequestTest() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        TestUtils.copySampleJar(source.resolve("one.jar"));
+        TestUtils.copySampleJar(source.resolve("two.jar"));
+
+        try (ConversionServer server = new ConversionServer(0, 2)) {
+            server.start();
+            String report = ConversionClient.convert(server.getPort(), Arrays.asList(source.toString(),
+                    target.toString(), "--workers=2"));
+
+            assertTrue(report.contains("\"created\": 2"));
+            assertTrue(Files.exists(target.resolve("one_1.0.0.jar")));
+            assertTrue(Files.exists(target.resolve("two_1.0.0.jar")));
+            assertTrue(get(server.getPort(), Constants.SERVER_HEALTH_PATH).contains("\"status\": \"UP\""));
+            String metrics = get(server.getPort(), Constants.SERVER_METRICS_PATH);
+            assertTrue(metrics.contains("\"requests\": 1"));
+            assertTrue(metrics.contains("\"createdJarFiles\": 2"));
+        }
+    }
+
+    @Test public void rejectInvalidRequestTest() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+
+        try (ConversionServer server = new ConversionServer(0, 1)) {
+            server.start();
+            for (String option : new String[] { "--workers=0", "--mapped-io-threshold=1", "--watch" }) {
+                try {
+                    ConversionClient.convert(server.getPort(), Arrays.asList(source.toString(), target.toString(),
+                            option));
+                    fail(String.format("Option[%s] should have been rejected.", option));
+                } catch (IOException e) {
+                    assertTrue(e.getMessage().contains("status 400"));
+                }
+            }
+            assertTrue(get(server.getPort(), Constants.SERVER_METRICS_PATH).contains("\"failedRequests\": 3"));
+        }
+    }
+
+    @Test public void rejectUnauthorizedRequestTest() throws IOException {
+        try (ConversionServer server = new ConversionServer(0, 1)) {
+            server.start();
+            assertTrue(Files.exists(ConversionServer.getTokenFile(server.getPort())));
+            String token = ConversionClient.readToken(server.getPort());
+
+            assertEquals(403, request(server.getPort(), "GET", Constants.SERVER_METRICS_PATH, null, null));
+            assertEquals(403, request(server.getPort(), "GET", Constants.SERVER_METRICS_PATH, "wrong", null));
+            assertEquals(403, request(server.getPort(), "POST", Constants.SERVER_CONVERT_PATH, token,
+                    "http://example.com"));
+            assertEquals(405, request(server.getPort(), "POST", Constants.SERVER_HEALTH_PATH, token, null));
+            assertEquals(200, request(server.getPort(), "GET", Constants.SERVER_HEALTH_PATH, token, null));
+            assertTrue(get(server.getPort(), Constants.SERVER_METRICS_PATH).contains("\"requests\": 0"));
+        }
+    }
+
+    @Test public void retryBusyServerTest() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Constants.SERVER_CONVERT_PATH, exchange -> {
+            byte[] body = ((requests.incrementAndGet() <= 2) ? "busy" : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Retry-After", "0");
+            exchange.sendResponseHeaders((requests.get() <= 2) ? 503 : 200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        try {
+            Files.write(ConversionServer.getTokenFile(server.getAddress().getPort()),
+                    "token".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("{}", ConversionClient.convert(server.getAddress().getPort(), Arrays.asList("a", "b")));
+            assertEquals(3, requests.get());
+
+            requests.set(0);
+            try {
+                ConversionClient.convert(server.getAddress().getPort(), Arrays.asList("a", "b"), 1);
+                fail("The conversion should have been rejected after a single retry.");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("status 503"));
+                assertEquals(2, requests.get());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static int request(int port, String method, String path, String token, String origin)
+            throws IOException {
+        // the Origin header is restricted by HttpURLConnection, hence the request is written to a socket
+        StringBuilder request = new StringBuilder(String.format("%s %s HTTP/1.1\r\nHost: localhost\r\n"
+                + "Content-Length: 0\r\nConnection: close\r\n", method, path));
+        if (token != null) {
+            request.append(Constants.SERVER_TOKEN_HEADER).append(": ").append(token).append("\r\n");
+        }
+        if (origin != null) {
+            request.append("Origin: ").append(origin).append("\r\n");
+        }
+        request.append("\r\n");
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                Scanner scanner = new Scanner(socket.getInputStream(), StandardCharsets.US_ASCII.name())) {
+            socket.getOutputStream().write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            scanner.next();
+            return scanner.nextInt();
+        }
+    }
+
+    private static String get(int port, String path) throws IOException {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty(Constants.SERVER_TOKEN_HEADER, ConversionClient.readToken(port));
+        try (InputStream inputStream = connection.getInputStream();
+                Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
+            assertEquals(200, connection.getResponseCode());
+            return scanner.hasNext() ? scanner.next() : "";
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.BundleGenerator;
+import org.wso2.carbon.tool.util.ConstantPoolScanner;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.ImportScanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.ConstructorProperties;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+public class ImportScannerTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void scanDescriptorsTest() throws IOException {
+        Set<String> packages = new HashSet<>();
+        try (InputStream classFile = readClassFile(ConversionResult.class)) {
+            assertTrue(new ConstantPoolScanner().scan(classFile, packages));
+        }
+        // java.nio.file.Path is referenced only by the field and method descriptors
+        assertTrue(packages.contains("java.nio.file"));
+        assertTrue(packages.contains("org.wso2.carbon.tool.util"));
+    }
+
+    @Test public void scanInvalidClassFileTest() {
+        byte[] invalidClassFile = "not a class file".getBytes(StandardCharsets.UTF_8);
+        assertFalse(new ConstantPoolScanner().scan(invalidClassFile, invalidClassFile.length, new HashSet<>()));
+    }
+
+    @Test public void scanAnnotationsTest() throws IOException {
+        Set<String> packages = new HashSet<>();
+        try (InputStream classFile = readClassFile(Annotated.class)) {
+            assertTrue(new ConstantPoolScanner().scan(classFile, packages));
+        }
+        // the types referenced only by the annotations of the class, its constructor and its parameter
+        assertTrue(packages.contains("java.beans"));
+        assertTrue(packages.contains("java.util.concurrent"));
+        assertTrue(packages.contains("java.util.logging"));
+    }
+
+    @Test public void scanTruncatedClassFileTest() throws IOException {
+        byte[] classFile;
+        try (InputStream inputStream = readClassFile(ConversionResult.class)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            classFile = content.toByteArray();
+        }
+        ConstantPoolScanner scanner = new ConstantPoolScanner();
+        assertTrue(scanner.scan(classFile, classFile.length, new HashSet<>()));
+        // the bytes beyond the length, such as those of a previous class file in a reused buffer, are not read
+        assertFalse(scanner.scan(classFile, classFile.length - 1, new HashSet<>()));
+        assertFalse(scanner.scan(classFile, classFile.length / 2, new HashSet<>()));
+    }
+
+    @Test public void listImportedPackagesTest() throws IOException {
+        Path jarFile = createJar(temporaryFolder.getRoot().toPath().resolve("imports.jar"), 1);
+        List<String> importedPackages = ImportScanner
+                .listImportedPackages(jarFile, Collections.singletonList("org.wso2.carbon.tool.components"));
+        assertEquals(Arrays.asList("org.wso2.carbon.tool.exceptions", "org.wso2.carbon.tool.util"),
+                importedPackages);
+    }
+
+    @Test public void listImportedPackagesInParallelTest() throws IOException {
+        Path jarFile = createJar(temporaryFolder.getRoot().toPath().resolve("imports.jar"), 100);
+        List<String> importedPackages = ImportScanner
+                .listImportedPackages(jarFile, Collections.singletonList("org.wso2.carbon.tool.components"));
+        assertEquals(Arrays.asList("org.wso2.carbon.tool.exceptions", "org.wso2.carbon.tool.util"),
+                importedPackages);
+    }
+
+    private static Path createJar(Path destination, int copies) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(destination);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, new Manifest())) {
+            for (int copy = 0; copy < copies; copy++) {
+                jarOutputStream.putNextEntry(new JarEntry("org/wso2/carbon/tool/components/Copy" + copy + ".class"));
+                try (InputStream classFile = readClassFile(BundleGenerator.class)) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = classFile.read(buffer)) != -1) {
+                        jarOutputStream.write(buffer, 0, read);
+                    }
+                }
+                jarOutputStream.closeEntry();
+            }
+            jarOutputStream.putNextEntry(new JarEntry("org/example/Invalid.class"));
+            jarOutputStream.write("not a class file".getBytes(StandardCharsets.UTF_8));
+            jarOutputStream.closeEntry();
+        }
+        return destination;
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    private @interface Marker {
+        TimeUnit unit() default TimeUnit.SECONDS;
+
+        Class<?> type() default Object.class;
+    }
+
+    @Marker(unit = TimeUnit.MINUTES)
+    private static class Annotated {
+        @ConstructorProperties({ "value" })
+        Annotated(@Marker(type = Logger.class) Object value) {
+        }
+    }
+
+    private static InputStream readClassFile(Class<?> type) {
+        return type.getClassLoader().getResourceAsStream(type.getName().replace('.', '/') + ".class");
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.util.JarFileWalker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class JarFileWalkerTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path source;
+
+    @Before public void createSourceTree() throws IOException {
+        source = temporaryFolder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("lib"));
+        Files.createDirectories(source.resolve("modules/a/lib"));
+        Files.createDirectories(source.resolve("modules/test/lib"));
+        Files.createFile(source.resolve("top.jar"));
+        Files.createFile(source.resolve("notes.txt"));
+        Files.createFile(source.resolve("lib/one.jar"));
+        Files.createFile(source.resolve("modules/a/lib/two.jar"));
+        Files.createFile(source.resolve("modules/a/lib/two-sources.jar"));
+        Files.createFile(source.resolve("modules/test/lib/three.jar"));
+    }
+
+    @Test public void walkNonRecursiveTest() throws IOException {
+        JarFileWalker walker = new JarFileWalker(source, false, Collections.emptyList(), Collections.emptyList());
+        assertEquals(Collections.singletonList("top.jar"), walk(walker));
+    }
+
+    @Test public void walkRecursiveTest() throws IOException {
+        JarFileWalker walker = new JarFileWalker(source, true, Collections.emptyList(), Collections.emptyList());
+        assertEquals(Arrays.asList("lib/one.jar", "modules/a/lib/two-sources.jar", "modules/a/lib/two.jar",
+                "modules/test/lib/three.jar", "top.jar"), walk(walker));
+    }
+
+    @Test public void walkFilteredTest() throws IOException {
+        JarFileWalker walker = new JarFileWalker(source, true, Collections.singletonList("**/lib/*.jar"),
+                Arrays.asList("modules/test", "**-sources.jar"));
+        assertEquals(Collections.singletonList("modules/a/lib/two.jar"), walk(walker));
+    }
+
+    @Test public void walkSkippedDirectoryTest() throws IOException {
+        JarFileWalker walker = new JarFileWalker(source, true, Collections.emptyList(), Collections.emptyList());
+        walker.skipDirectory(source.resolve("modules"));
+        assertEquals(Arrays.asList("lib/one.jar", "top.jar"), walk(walker));
+    }
+
+    private List<String> walk(JarFileWalker walker) throws IOException {
+        List<String> jarFiles = new ArrayList<>();
+        walker.walk(jarFile -> jarFiles.add(source.relativize(jarFile).toString().replace('\\', '/')));
+        Collections.sort(jarFiles);
+        return jarFiles;
+    }
+
+}
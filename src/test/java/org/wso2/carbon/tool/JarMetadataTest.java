@@ -0,0 +1,152 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.BundleConverter;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.JarAnalysis;
+import org.wso2.carbon.tool.util.JarMetadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+public class JarMetadataTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void toOsgiVersionTest() {
+        assertEquals("1.0.0", JarMetadata.toOsgiVersion("1"));
+        assertEquals("1.2.3", JarMetadata.toOsgiVersion("1.2.3"));
+        assertEquals("2.0.0.SNAPSHOT", JarMetadata.toOsgiVersion("2.0-SNAPSHOT"));
+        assertEquals("1.2.3.Final", JarMetadata.toOsgiVersion("1.2.3.Final"));
+        assertEquals("31.1.0.jre", JarMetadata.toOsgiVersion("31.1-jre"));
+        assertEquals("1.2.3.rc_1", JarMetadata.toOsgiVersion("1.2.3-rc.1"));
+        assertEquals("0.0.0.v1", JarMetadata.toOsgiVersion("v1"));
+        assertNull(JarMetadata.toOsgiVersion(" "));
+    }
+
+    @Test public void analyzeMetadataTest() throws Exception {
+        Path jarFile = temporaryFolder.getRoot().toPath().resolve("library-2.1-SNAPSHOT.jar");
+        writeJarFile(jarFile, "Implementation-Version", "9.9");
+        JarMetadata metadata = JarAnalysis.analyze(jarFile, new ConversionMetrics()).getMetadata();
+
+        // the coordinates of the artifact shaded into the JAR file are ignored
+        assertEquals("org.example", metadata.getGroupId());
+        assertEquals("library", metadata.getArtifactId());
+        assertEquals("org.example.library", metadata.getSymbolicName());
+        assertEquals("2.1.0.SNAPSHOT", metadata.getVersion());
+    }
+
+    @Test public void metadataNamingTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = source.resolve("library-2.1-SNAPSHOT.jar");
+        writeJarFile(jarFile, Constants.BUNDLE_SYMBOLIC_NAME, "org.example.library.core;singleton:=true");
+
+        ConversionResult defaultResult = BundleGeneratorUtils
+                .convertFromJarToBundle(jarFile, target, new Manifest(), "", true);
+        assertEquals("library_2.1_SNAPSHOT_1.0.0.jar", defaultResult.getBundle().getFileName().toString());
+
+        ConversionResult result = BundleGeneratorUtils
+                .convertFromJarToBundle(jarFile, target, new Manifest(), "ext.", true, true);
+        assertEquals("ext.org.example.library.core_2.1.0.SNAPSHOT.jar", result.getBundle().getFileName().toString());
+        try (JarFile bundle = new JarFile(result.getBundle().toFile())) {
+            assertEquals("ext.org.example.library.core",
+                    bundle.getManifest().getMainAttributes().getValue(Constants.BUNDLE_SYMBOLIC_NAME));
+            assertEquals("2.1.0.SNAPSHOT", bundle.getManifest().getMainAttributes().getValue(Constants.BUNDLE_VERSION));
+        }
+
+        // a JAR file without metadata falls back to its file name and the requested version
+        Path plainJar = source.resolve("plain.jar");
+        writePlainJarFile(plainJar);
+        assertEquals("plain_1.0.0.jar", BundleGeneratorUtils
+                .convertFromJarToBundle(plainJar, target, new Manifest(), "", true, true).getBundle().getFileName()
+                .toString());
+    }
+
+    @Test public void metadataNamingConverterTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = source.resolve("library-2.1-SNAPSHOT.jar");
+        writeJarFile(jarFile, Constants.BUNDLE_SYMBOLIC_NAME, "org.example.library.core");
+
+        // the naming of one converter does not affect that of another
+        try (BundleConverter metadataConverter = new BundleConverter("", Constants.DEFAULT_BUNDLE_VERSION,
+                new Manifest(), 1, true); BundleConverter converter = new BundleConverter()) {
+            assertEquals("org.example.library.core_2.1.0.SNAPSHOT.jar", metadataConverter.getBundleFileName(jarFile));
+            assertEquals("library_2.1_SNAPSHOT_1.0.0.jar", converter.getBundleFileName(jarFile));
+            assertEquals(target.resolve(metadataConverter.getBundleFileName(jarFile)),
+                    metadataConverter.convert(jarFile, target, true).getBundle());
+            assertEquals(target.resolve(converter.getBundleFileName(jarFile)),
+                    converter.convert(jarFile, target, true).getBundle());
+        }
+
+        // the name of an OSGi bundle named after its metadata is not derived from the JAR file name alone
+        try {
+            BundleGeneratorUtils.getBundleFileName(jarFile.getFileName().toString(), "",
+                    Constants.DEFAULT_BUNDLE_VERSION, true, null);
+            fail("The bundle file name should require the analysis of the JAR file.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("analysis"));
+        }
+    }
+
+    private static void writeJarFile(Path jarFile, String manifestHeader, String manifestValue) throws Exception {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue(Constants.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(manifestHeader, manifestValue);
+        try (OutputStream outputStream = Files.newOutputStream(jarFile);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, manifest)) {
+            jarOutputStream.putNextEntry(new JarEntry("org/example/Library.class"));
+            jarOutputStream.write(new byte[16]);
+            jarOutputStream.putNextEntry(new JarEntry("META-INF/maven/org.example/library/pom.properties"));
+            jarOutputStream.write("groupId=org.example\nartifactId=library\nversion=2.1-SNAPSHOT\n"
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            jarOutputStream.putNextEntry(new JarEntry("META-INF/maven/org.shaded/dependency/pom.properties"));
+            jarOutputStream.write("groupId=org.shaded\nartifactId=dependency\nversion=3.0\n"
+                    .getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static void writePlainJarFile(Path jarFile) throws Exception {
+        try (OutputStream outputStream = Files.newOutputStream(jarFile);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            jarOutputStream.putNextEntry(new JarEntry("org/example/Plain.class"));
+            jarOutputStream.write(new byte[16]);
+        }
+    }
+
+}
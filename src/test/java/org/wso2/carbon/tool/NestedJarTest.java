@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+public class NestedJarTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void listNestedPackagesTest() throws IOException, JarToBundleConverterException {
+        Path jarFile = createFatJar();
+        assertEquals(Arrays.asList("org.example.inner", "org.example.outer"),
+                BundleGeneratorUtils.listPackages(jarFile));
+    }
+
+    @Test public void convertFatJarTest() throws IOException, JarToBundleConverterException {
+        Path jarFile = createFatJar();
+        Path target = temporaryFolder.newFolder("target").toPath();
+
+        ConversionResult result = BundleGeneratorUtils.convertFromJarToBundle(jarFile, target, new Manifest(), "");
+        assertEquals(ConversionResult.Status.CREATED, result.getStatus());
+
+        try (JarFile bundle = new JarFile(result.getBundle().toFile())) {
+            Attributes attributes = bundle.getManifest().getMainAttributes();
+            assertEquals("org.example.inner,org.example.outer", attributes.getValue(Constants.EXPORT_PACKAGE));
+            assertEquals(".,fat.jar,lib/inner.jar", attributes.getValue(Constants.BUNDLE_CLASSPATH));
+
+            JarEntry nestedJar = bundle.getJarEntry("lib/inner.jar");
+            assertNotNull(nestedJar);
+            try (InputStream inputStream = bundle.getInputStream(nestedJar)) {
+                assertArrayEquals(Files.readAllBytes(temporaryFolder.getRoot().toPath().resolve("inner.jar")),
+                        readAllBytes(inputStream));
+            }
+        }
+    }
+
+    @Test public void ignoreNestedJarOfSameNameTest() throws IOException, JarToBundleConverterException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path innerJar = TestUtils.createJar(root.resolve("inner.jar"), "org/example/inner/A.class");
+        Path jarFile = root.resolve("source").resolve("fat.jar");
+        Files.createDirectories(jarFile.getParent());
+        try (OutputStream outputStream = Files.newOutputStream(jarFile);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, new Manifest())) {
+            jarOutputStream.putNextEntry(new JarEntry("org/example/outer/B.class"));
+            jarOutputStream.closeEntry();
+            jarOutputStream.putNextEntry(new JarEntry("fat.jar"));
+            Files.copy(innerJar, jarOutputStream);
+            jarOutputStream.closeEntry();
+        }
+        Path target = temporaryFolder.newFolder("target").toPath();
+
+        // the nested JAR file of the name of the embedded JAR file is not on the class path of the bundle, hence its
+        // packages are not exported
+        assertEquals(Collections.singletonList("org.example.outer"), BundleGeneratorUtils.listPackages(jarFile));
+        ConversionResult result = BundleGeneratorUtils.convertFromJarToBundle(jarFile, target, new Manifest(), "");
+        try (JarFile bundle = new JarFile(result.getBundle().toFile())) {
+            Attributes attributes = bundle.getManifest().getMainAttributes();
+            assertEquals("org.example.outer", attributes.getValue(Constants.EXPORT_PACKAGE));
+            assertEquals(".,fat.jar", attributes.getValue(Constants.BUNDLE_CLASSPATH));
+        }
+    }
+
+    private Path createFatJar() throws IOException {
+        Path root = temporaryFolder.getRoot().toPath();
+        Path innerJar = TestUtils.createJar(root.resolve("inner.jar"), "org/example/inner/A.class");
+        Path fatJar = root.resolve("source").resolve("fat.jar");
+        Files.createDirectories(fatJar.getParent());
+        try (OutputStream outputStream = Files.newOutputStream(fatJar);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, new Manifest())) {
+            jarOutputStream.putNextEntry(new JarEntry("org/example/outer/B.class"));
+            jarOutputStream.closeEntry();
+            jarOutputStream.putNextEntry(new JarEntry("lib/inner.jar"));
+            Files.copy(innerJar, jarOutputStream);
+            jarOutputStream.closeEntry();
+        }
+        return fatJar;
+    }
+
+    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.wso2.carbon.tool.components.BatchBundleGenerator;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarFile;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+public class P2RepositoryWriterTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void writeRepositoryTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(TestUtils.createJar(source.resolve("first-library.jar"), "org/wso2/carbon/first/First.class"));
+        jarFiles.add(TestUtils.createJar(source.resolve("second.jar"), "org/wso2/carbon/second/Second.class"));
+
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 2);
+        batchBundleGenerator.setIncremental(true);
+        batchBundleGenerator.setP2Repository(true);
+        batchBundleGenerator.convert(jarFiles);
+        assertUnits(target);
+
+        // the bundles which are not written again are read to obtain their manifests
+        for (ConversionResult result : batchBundleGenerator.convert(jarFiles)) {
+            assertEquals(ConversionResult.Status.SKIPPED, result.getStatus());
+        }
+        assertUnits(target);
+    }
+
+    @Test public void skipIdenticalCopiesTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Files.createDirectories(source.resolve("lib"));
+        Files.createDirectories(source.resolve("components"));
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(TestUtils.createJar(source.resolve("lib/first-library.jar"), "org/wso2/carbon/first/First.class"));
+        jarFiles.add(Files.copy(jarFiles.get(0), source.resolve("components/first-library.jar")));
+        jarFiles.add(TestUtils.createJar(source.resolve("second.jar"), "org/wso2/carbon/second/Second.class"));
+
+        // the identical copy neither waits for nor repeats the bundle of the JAR file which owns it
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 3);
+        batchBundleGenerator.setP2Repository(true);
+        List<ConversionResult> results = batchBundleGenerator.convert(jarFiles::forEach);
+        assertEquals(ConversionResult.Status.SKIPPED, results.get(1).getStatus());
+        assertUnits(target);
+    }
+
+    private static void assertUnits(Path target) throws Exception {
+        Document artifacts = parse(target.resolve(Constants.P2_ARTIFACTS_FILE), "artifacts.xml");
+        assertEquals(2, artifacts.getElementsByTagName("artifact").getLength());
+        Element artifact = (Element) artifacts.getElementsByTagName("artifact").item(0);
+        assertTrue(Files.exists(target.resolve(artifact.getAttribute("id") + "_" + artifact.getAttribute("version")
+                + ".jar")));
+
+        Document content = parse(target.resolve(Constants.P2_CONTENT_FILE), "content.xml");
+        NodeList units = content.getElementsByTagName("unit");
+        assertEquals(2, units.getLength());
+        List<String> providedPackages = new ArrayList<>();
+        NodeList provided = content.getElementsByTagName("provided");
+        for (int index = 0; index < provided.getLength(); index++) {
+            Element capability = (Element) provided.item(index);
+            if (capability.getAttribute("namespace").equals("java.package")) {
+                providedPackages.add(capability.getAttribute("name"));
+            }
+        }
+        assertTrue(providedPackages.contains("org.wso2.carbon.first"));
+        assertTrue(providedPackages.contains("org.wso2.carbon.second"));
+    }
+
+    private static Document parse(Path repositoryFile, String entryName) throws Exception {
+        try (JarFile jarFile = new JarFile(repositoryFile.toFile());
+                InputStream inputStream = jarFile.getInputStream(jarFile.getEntry(entryName))) {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inputStream);
+        }
+    }
+
+}
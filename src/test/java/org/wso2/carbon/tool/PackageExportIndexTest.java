@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.components.BatchBundleGenerator;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.PackageExportIndex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Manifest;
+
+public class PackageExportIndexTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void writeBatchPackageIndexTest() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        List<Path> jarFiles = new ArrayList<>();
+        jarFiles.add(TestUtils.createJar(source.resolve("first.jar"), "org/wso2/carbon/shared/First.class",
+                "org/wso2/carbon/first/First.class"));
+        jarFiles.add(TestUtils.createJar(source.resolve("second.jar"), "org/wso2/carbon/shared/Second.class"));
+
+        BatchBundleGenerator batchBundleGenerator = new BatchBundleGenerator(target, "", 2);
+        batchBundleGenerator.setIncremental(true);
+        batchBundleGenerator.setPackageIndex(true);
+        batchBundleGenerator.convert(jarFiles);
+        String index = new String(Files.readAllBytes(target.resolve(Constants.PACKAGE_INDEX_FILE)),
+                StandardCharsets.UTF_8);
+        assertIndex(index);
+
+        // the bundles which are not written again are read to obtain their manifests
+        for (ConversionResult result : batchBundleGenerator.convert(jarFiles)) {
+            assertEquals(ConversionResult.Status.SKIPPED, result.getStatus());
+        }
+        assertEquals(index, new String(Files.readAllBytes(target.resolve(Constants.PACKAGE_INDEX_FILE)),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test public void reportDuplicateExportsTest() throws Exception {
+        PackageExportIndex packageIndex = new PackageExportIndex();
+        packageIndex.add(temporaryFolder.getRoot().toPath().resolve("library_1.0.0.jar"),
+                createManifest("library", "1.0.0", "org.library,org.library.util"));
+        packageIndex.add(temporaryFolder.getRoot().toPath().resolve("library_2.0.0.jar"),
+                createManifest("library;singleton:=true", "2.0.0", "org.library"));
+        packageIndex.add(temporaryFolder.getRoot().toPath().resolve("other_1.0.0.jar"),
+                createManifest("other", "1.0.0", "org.other"));
+
+        assertEquals(Collections.singletonMap("org.library", Arrays.asList("library_1.0.0.jar", "library_2.0.0.jar")),
+                packageIndex.getDuplicateExports());
+        assertTrue(packageIndex.getSplitPackages().isEmpty());
+    }
+
+    private static void assertIndex(String index) {
+        assertTrue(index.contains("\"first_1.0.0.jar\": {\"symbolicName\": \"first\", \"version\": \"1.0.0\", "
+                + "\"packages\": [\"org.wso2.carbon.first\", \"org.wso2.carbon.shared\"]}"));
+        assertTrue(index.contains("\"splitPackages\": {\n    \"org.wso2.carbon.shared\": [\"first_1.0.0.jar\", "
+                + "\"second_1.0.0.jar\"]\n  }"));
+        assertTrue(index.contains("\"duplicateExports\": {}"));
+    }
+
+    private static Manifest createManifest(String symbolicName, String version, String exportedPackages) {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue(Constants.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLIC_NAME, symbolicName);
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_VERSION, version);
+        manifest.getMainAttributes().putValue(Constants.EXPORT_PACKAGE, exportedPackages);
+        return manifest;
+    }
+
+}
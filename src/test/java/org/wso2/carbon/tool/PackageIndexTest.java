@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Test;
+import org.wso2.carbon.tool.util.PackageIndex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PackageIndexTest {
+
+    @Test public void deduplicateAndSortTest() {
+        PackageIndex packageIndex = new PackageIndex();
+        packageIndex.add("org/wso2/carbon/tool/util/Constants.class");
+        packageIndex.add("org/wso2/carbon/tool/components/BundleGenerator.class");
+        packageIndex.add("org/wso2/carbon/tool/util/BundleGeneratorUtils.class");
+        packageIndex.add("org/wso2/carbon/tool/components/BundleGenerator.class");
+
+        assertEquals(Arrays.asList("org.wso2.carbon.tool.components", "org.wso2.carbon.tool.util"),
+                packageIndex.getPackages());
+        assertEquals("org.wso2.carbon.tool.components,org.wso2.carbon.tool.util",
+                packageIndex.toExportPackageHeader());
+    }
+
+    @Test public void ignoreNonPackagedClassesTest() {
+        PackageIndex packageIndex = new PackageIndex();
+        assertNull(packageIndex.add("Main.class"));
+        assertNull(packageIndex.add("META-INF/MANIFEST.MF"));
+        assertNull(packageIndex.add("org/wso2/carbon/tool/"));
+        assertEquals(0, packageIndex.size());
+        assertEquals("", packageIndex.toExportPackageHeader());
+    }
+
+    @Test public void reusePackageNamesTest() {
+        PackageIndex packageIndex = new PackageIndex();
+        String first = packageIndex.add("org/wso2/carbon/tool/util/Constants.class");
+        packageIndex.add("org/wso2/carbon/tool/components/BundleGenerator.class");
+        String second = packageIndex.add("org/wso2/carbon/tool/util/PackageIndex.class");
+        assertSame(first, second);
+    }
+
+    @Test public void indexManyPackagesTest() {
+        PackageIndex packageIndex = new PackageIndex();
+        List<String> expected = new ArrayList<>();
+        for (int packageCount = 0; packageCount < 5000; packageCount++) {
+            packageIndex.add("org/wso2/package" + packageCount + "/Sample.class");
+            packageIndex.add("org/wso2/package" + (packageCount / 2) + "/Other.class");
+            expected.add("org.wso2.package" + packageCount);
+        }
+        expected.sort(null);
+        assertEquals(expected, packageIndex.getPackages());
+    }
+
+    @Test public void compareDirectoriesOfEqualLengthTest() {
+        PackageIndex packageIndex = new PackageIndex();
+        // directories differing only in their last or first character are checked against the last matched one
+        assertEquals("org.wso2.a", packageIndex.add("org/wso2/a/Sample.class"));
+        assertEquals("org.wso2.b", packageIndex.add("org/wso2/b/Sample.class"));
+        assertEquals("xrg.wso2.b", packageIndex.add("xrg/wso2/b/Sample.class"));
+        assertEquals("org.wso2.a", packageIndex.add("org/wso2/a/Other.class"));
+        // "Aa" and "BB" share their hash code, hence they are told apart by comparing the characters
+        assertEquals("Aa", packageIndex.add("Aa/Sample.class"));
+        assertEquals("BB", packageIndex.add("BB/Sample.class"));
+        assertEquals("org.Aa", packageIndex.add("org/Aa/Sample.class"));
+        assertEquals("org.BB", packageIndex.add("org/BB/Sample.class"));
+        assertEquals("Aa", packageIndex.add("Aa/Other.class"));
+        assertEquals(Arrays.asList("Aa", "BB", "org.Aa", "org.BB", "org.wso2.a", "org.wso2.b", "xrg.wso2.b"),
+                packageIndex.getPackages());
+    }
+
+}
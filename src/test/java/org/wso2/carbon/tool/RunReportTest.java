@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ConversionResult;
+import org.wso2.carbon.tool.util.RunReport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.Manifest;
+
+public class RunReportTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void recordMetricsTest() throws IOException, JarToBundleConverterException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Path jarFile = TestUtils.copySampleJar(source.resolve("sample.jar"));
+
+        ConversionResult result = BundleGeneratorUtils.convertFromJarToBundle(jarFile, target, new Manifest(), "");
+        ConversionMetrics metrics = result.getMetrics();
+
+        assertEquals(4, metrics.getPackages());
+        assertTrue(metrics.getEntries() >= metrics.getPackages());
+        assertTrue(metrics.getBytesRead() > Files.size(jarFile));
+        assertEquals(Files.size(result.getBundle()), metrics.getBytesWritten());
+        for (ConversionMetrics.Stage stage : ConversionMetrics.Stage.values()) {
+            // the read stage is recorded only by batch conversions
+            if (stage != ConversionMetrics.Stage.READ) {
+                assertTrue(metrics.getDuration(stage) > 0);
+            }
+        }
+    }
+
+    @Test public void writeReportsTest() throws IOException {
+        RunReport report = new RunReport();
+        report.add(new ConversionResult(temporaryFolder.newFile("created.jar").toPath(), null,
+                ConversionResult.Status.CREATED, 10, null, new ConversionMetrics()));
+        report.add(new ConversionResult(temporaryFolder.newFile("failed.jar").toPath(), null,
+                ConversionResult.Status.FAILED, 5, "Failed, with \"quotes\""));
+
+        Path jsonReport = temporaryFolder.newFile("report.json").toPath();
+        report.writeJson(jsonReport);
+        String json = new String(Files.readAllBytes(jsonReport), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"created\": 1"));
+        assertTrue(json.contains("\"failed\": 1"));
+        assertTrue(json.contains("\"totalMillis\": {\"p50\": 5.000, \"p90\": 10.000"));
+        assertTrue(json.contains("Failed, with \\\"quotes\\\""));
+
+        Path csvReport = temporaryFolder.newFile("report.csv").toPath();
+        report.writeCsv(csvReport);
+        List<String> rows = Files.readAllLines(csvReport, StandardCharsets.UTF_8);
+        assertEquals(3, rows.size());
+        assertTrue(rows.get(2).endsWith(",\"Failed, with \"\"quotes\"\"\""));
+    }
+
+}
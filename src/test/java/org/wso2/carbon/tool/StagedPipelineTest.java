@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Test;
+import org.wso2.carbon.tool.util.StagedPipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StagedPipelineTest {
+
+    @Test public void passThroughAllStagesTest() throws InterruptedException {
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        StagedPipeline<StringBuilder> pipeline = new StagedPipeline<StringBuilder>("test")
+                .addStage("first", 2, 1, item -> item.append("-first"))
+                .addStage("second", 3, 2, item -> {
+                    if (item.toString().startsWith("failing")) {
+                        throw new IllegalStateException("Failing item.");
+                    }
+                    item.append("-second");
+                })
+                .addStage("third", 1, 1, item -> processed.add(item.toString()));
+        pipeline.start();
+        for (int index = 0; index < 50; index++) {
+            pipeline.put(new StringBuilder(((index == 7) ? "failing" : "item") + index));
+        }
+        pipeline.finish();
+
+        assertEquals(50, processed.size());
+        assertTrue(processed.contains("item0-first-second"));
+        assertTrue(processed.contains("failing7-first"));
+    }
+
+    @Test public void boundQueuedItemsTest() throws InterruptedException {
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maximumInProgress = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>("test")
+                .addStage("count", 1, 1, item -> maximumInProgress
+                        .accumulateAndGet(inProgress.incrementAndGet(), Math::max))
+                .addStage("slow", 1, 2, item -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inProgress.decrementAndGet();
+                });
+        pipeline.start();
+        for (int index = 0; index < 20; index++) {
+            pipeline.put(index);
+        }
+        pipeline.finish();
+
+        // at most one item in the slow stage, two in its queue and one held by the counting worker
+        assertTrue(maximumInProgress.get() <= 4);
+        assertEquals(0, inProgress.get());
+    }
+
+}
@@ -26,4 +26,5 @@ public class TestConstants {
     protected static final String CHILD_TEST_DIRECTORY_ONE = "sampleOne";
 
     protected static final String NON_EXISTING_JAR_FILE = "test.jar";
+    protected static final String SAMPLE_JAR_FILE = "jar-to-bundle-converter-1.0-SNAPSHOT.jar";
 }
@@ -19,11 +19,16 @@
 package org.wso2.carbon.tool;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 public class TestUtils {
 
@@ -68,6 +73,26 @@ public class TestUtils {
         return paths;
     }
 
+    protected static Path copySampleJar(Path destination) throws IOException {
+        try (InputStream sampleJar = TestUtils.class.getClassLoader()
+                .getResourceAsStream(TestConstants.SAMPLE_JAR_FILE)) {
+            Files.copy(sampleJar, destination);
+        }
+        return destination;
+    }
+
+    protected static Path createJar(Path destination, String... entryNames) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(destination);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream, new Manifest())) {
+            for (String entryName : entryNames) {
+                jarOutputStream.putNextEntry(new JarEntry(entryName));
+                jarOutputStream.write(entryName.getBytes("UTF-8"));
+                jarOutputStream.closeEntry();
+            }
+        }
+        return destination;
+    }
+
     protected static boolean exists(String value, List<String> list) {
         return ((list != null) && (list.contains(value)));
     }
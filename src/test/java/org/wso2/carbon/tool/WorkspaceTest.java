@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.util.Workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class WorkspaceTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void deleteStaleWorkspacesTest() throws IOException {
+        Path root = temporaryFolder.newFolder("workspaces").toPath();
+        Path current = createWorkspace(root, "run-current");
+        Path stale = createWorkspace(root, "run-stale");
+        Files.createDirectories(stale.resolve("a/b/c"));
+        Files.createFile(stale.resolve("a/b/c/bundle.jar.tmp"));
+        Path live = createWorkspace(root, "run-live");
+        Path unlocked = Files.createDirectory(root.resolve("run-unlocked"));
+        Path unrelated = Files.createDirectory(root.resolve("unrelated"));
+
+        try (FileChannel channel = FileChannel.open(live.resolve(".lock"), StandardOpenOption.WRITE);
+                FileLock lock = channel.lock()) {
+            Workspace.deleteStaleWorkspaces(root, current);
+            assertTrue(lock.isValid());
+        }
+
+        assertTrue(Files.exists(current));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(live));
+        // a workspace without a lock file may be in the middle of its creation
+        assertTrue(Files.exists(unlocked));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    @Test public void stagingDirectoryTest() throws IOException {
+        Path target = temporaryFolder.newFolder("target").toPath();
+        Workspace workspace = Workspace.get();
+        assertTrue(Files.isDirectory(workspace.getDirectory()));
+        assertEquals(workspace, Workspace.get());
+
+        Path stagingDirectory = workspace.getStagingDirectory(target);
+        boolean sameFileStore = Files.getFileStore(target).equals(Files.getFileStore(workspace.getDirectory()));
+        assertEquals((sameFileStore) ? workspace.getDirectory() : target.toAbsolutePath(), stagingDirectory);
+    }
+
+    private static Path createWorkspace(Path root, String name) throws IOException {
+        Path workspace = Files.createDirectory(root.resolve(name));
+        Files.createFile(workspace.resolve(".lock"));
+        return workspace;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wso2.carbon.tool.util.BundleCompression;
+import org.wso2.carbon.tool.util.BundleWriter;
+import org.wso2.carbon.tool.util.Constants;
+import org.wso2.carbon.tool.util.ConversionMetrics;
+import org.wso2.carbon.tool.util.ZipArchiveWriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class ZipArchiveWriterTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void writeEntriesTest() throws IOException {
+        Path archive = temporaryFolder.newFile("archive.zip").toPath();
+        byte[] small = "small entry".getBytes(StandardCharsets.UTF_8);
+        byte[] large = createContent(3 * 1024 * 1024 + 17);
+        CRC32 crc = new CRC32();
+        crc.update(large);
+
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(archive))) {
+            writer.putEntry("directory/", new byte[0], Deflater.NO_COMPRESSION);
+            writer.putEntry("small.txt", small, Deflater.BEST_COMPRESSION);
+            writer.putStored("stored.bin", large.length, crc.getValue(), entryStream -> entryStream.write(large));
+            writer.putDeflated("serial.bin", Deflater.DEFAULT_COMPRESSION, false,
+                    entryStream -> entryStream.write(large));
+            writer.putDeflated("parallel.bin", Deflater.BEST_SPEED, true, entryStream -> {
+                for (int offset = 0; offset < large.length; offset += 10000) {
+                    entryStream.write(large, offset, Math.min(10000, large.length - offset));
+                }
+            });
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            assertEquals(5, zipFile.size());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("stored.bin").getMethod());
+            assertArrayEquals(small, read(zipFile.getInputStream(zipFile.getEntry("small.txt"))));
+            for (String name : new String[] { "stored.bin", "serial.bin", "parallel.bin" }) {
+                assertArrayEquals(large, read(zipFile.getInputStream(zipFile.getEntry(name))));
+                assertEquals(crc.getValue(), zipFile.getEntry(name).getCrc());
+            }
+        }
+        try (ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(archive))) {
+            int entries = 0;
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                entries++;
+                if (entry.getName().endsWith(".bin")) {
+                    assertArrayEquals(large, read(zipInputStream));
+                }
+            }
+            assertEquals(5, entries);
+        }
+    }
+
+    @Test(expected = IOException.class) public void rejectWrongSizeTest() throws IOException {
+        Path archive = temporaryFolder.newFile("archive.zip").toPath();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(archive))) {
+            writer.putStored("stored.bin", 10, 0, entryStream -> entryStream.write(new byte[5]));
+        }
+    }
+
+    @Test public void storeEmbeddedJarTest() throws IOException {
+        Path jarFile = TestUtils.copySampleJar(temporaryFolder.newFolder("source").toPath().resolve("sample.jar"));
+        Path bundle = temporaryFolder.newFolder("target").toPath().resolve("sample_1.0.0.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+
+        BundleWriter.write(jarFile, bundle, manifest, Collections.emptyList(), false,
+                new BundleCompression(true, Deflater.DEFAULT_COMPRESSION, 0), new ConversionMetrics());
+
+        try (ZipFile zipFile = new ZipFile(bundle.toFile())) {
+            ZipEntry embeddedJar = zipFile.getEntry("sample.jar");
+            assertEquals(ZipEntry.STORED, embeddedJar.getMethod());
+            assertEquals(Files.size(jarFile), embeddedJar.getCompressedSize());
+            assertArrayEquals(Files.readAllBytes(jarFile), read(zipFile.getInputStream(embeddedJar)));
+        }
+    }
+
+    @Test public void failParallelEntryTest() throws IOException {
+        Path archive = temporaryFolder.newFile("archive.zip").toPath();
+        byte[] large = createContent(3 * 1024 * 1024 + 17);
+
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(Files.newOutputStream(archive))) {
+            writer.putDeflated("parallel.bin", Deflater.BEST_SPEED, true, entryStream -> {
+                entryStream.write(large);
+                throw new IOException("Failed to read the content.");
+            });
+            fail("The failure to write the content of the entry was not propagated.");
+        } catch (IOException e) {
+            assertEquals("Failed to read the content.", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void rejectInvalidDeflateLevelPropertyTest() {
+        System.setProperty(Constants.DEFLATE_LEVEL_PROPERTY, "10");
+        try {
+            BundleCompression.getDefault();
+        } finally {
+            System.clearProperty(Constants.DEFLATE_LEVEL_PROPERTY);
+        }
+    }
+
+    private static byte[] createContent(int length) {
+        // compressible, but not trivially, content
+        Random random = new Random(42);
+        byte[] content = new byte[length];
+        for (int index = 0; index < length; index++) {
+            content[index] = (byte) ('a' + random.nextInt(8) + ((index / 4096) % 3));
+        }
+        return content;
+    }
+
+    private static byte[] read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+
+}
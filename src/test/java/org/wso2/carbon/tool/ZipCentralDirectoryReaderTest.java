@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.tool;
+
+import org.junit.Test;
+import org.wso2.carbon.tool.exceptions.JarToBundleConverterException;
+import org.wso2.carbon.tool.util.BundleGeneratorUtils;
+import org.wso2.carbon.tool.util.MappedFileReader;
+import org.wso2.carbon.tool.util.ZipCentralDirectoryReader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipException;
+
+public class ZipCentralDirectoryReaderTest {
+
+    @Test public void listEntryNamesTest() throws IOException, JarToBundleConverterException {
+        Path jarFile = Paths.get(getClass().getClassLoader().getResource(TestConstants.SAMPLE_JAR_FILE).getFile());
+
+        Set<String> expected = new TreeSet<>();
+        for (Path zipChild : BundleGeneratorUtils.listZipFileContent(jarFile)) {
+            String name = zipChild.toString();
+            if (!name.equals("/")) {
+                expected.add(name.substring(1));
+            }
+        }
+        Set<String> actual = new TreeSet<>();
+        for (String name : ZipCentralDirectoryReader.listEntryNames(jarFile)) {
+            actual.add(name.endsWith("/") ? name.substring(0, name.length() - 1) : name);
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @Test public void mappedReadTest() throws IOException, JarToBundleConverterException {
+        Path jarFile = Paths.get(getClass().getClassLoader().getResource(TestConstants.SAMPLE_JAR_FILE).getFile());
+        List<String> streamedNames = ZipCentralDirectoryReader.listEntryNames(jarFile);
+
+        long threshold = MappedFileReader.getThreshold();
+        MappedFileReader.setThreshold(Long.MAX_VALUE);
+        try {
+            // a file below the threshold is streamed through the buffer
+            ByteArrayOutputStream streamedContent = new ByteArrayOutputStream();
+            assertEquals(Files.size(jarFile), MappedFileReader.copy(jarFile, streamedContent, new byte[7]));
+            assertArrayEquals(Files.readAllBytes(jarFile), streamedContent.toByteArray());
+
+            MappedFileReader.setThreshold(0);
+            assertEquals(streamedNames, ZipCentralDirectoryReader.listEntryNames(jarFile));
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            assertEquals(Files.size(jarFile), MappedFileReader.copy(jarFile, content, new byte[1024]));
+            assertArrayEquals(Files.readAllBytes(jarFile), content.toByteArray());
+        } finally {
+            MappedFileReader.setThreshold(threshold);
+        }
+    }
+
+    @Test public void listMappedZipFileContentTest() throws IOException, JarToBundleConverterException {
+        Path jarFile = Paths.get(getClass().getClassLoader().getResource(TestConstants.SAMPLE_JAR_FILE).getFile());
+        List<Path> streamedContent = BundleGeneratorUtils.listZipFileContent(jarFile);
+
+        long threshold = MappedFileReader.getThreshold();
+        MappedFileReader.setThreshold(Files.size(jarFile) - 1);
+        try {
+            assertTrue(MappedFileReader.isMapped(Files.size(jarFile)));
+            List<Path> mappedContent = BundleGeneratorUtils.listZipFileContent(jarFile);
+
+            // the same paths, of the same file system, in the same order
+            assertEquals(streamedContent, mappedContent);
+            for (int index = 0; index < streamedContent.size(); index++) {
+                assertEquals(streamedContent.get(index).getFileSystem(), mappedContent.get(index).getFileSystem());
+            }
+            assertTrue(streamedContent.contains(Paths.get("/META-INF/MANIFEST.MF")));
+        } finally {
+            MappedFileReader.setThreshold(threshold);
+        }
+    }
+
+    @Test(expected = ZipException.class) public void invalidZipFileTest() throws IOException {
+        Path invalidZipFile = Files.createTempFile("invalid", ".jar");
+        try {
+            Files.write(invalidZipFile, "not a zip file".getBytes("UTF-8"));
+            ZipCentralDirectoryReader.listEntryNames(invalidZipFile);
+        } finally {
+            Files.delete(invalidZipFile);
+        }
+    }
+
+}